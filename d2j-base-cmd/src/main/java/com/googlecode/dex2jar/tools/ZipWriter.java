@@ -0,0 +1,276 @@
+package com.googlecode.dex2jar.tools;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes a zip file as a stream from its own thread, instead of building it in a zipfs {@link java.nio.file.FileSystem}.
+ * <p>
+ * The entries are handed over through a bounded queue, so the producers wait for the disk instead of piling entries up
+ * in memory. Each entry has an order and is written after all the entries of lower order, the zip does not depend on
+ * the order the producers finish in. The entries that arrive ahead of a missing one wait in memory, so a producer also
+ * waits while its order is a queue capacity or more ahead of the first order not written yet; the entry of that order
+ * must be produced by another thread, as when the tasks are run in order. An order without an entry is released with
+ * {@link #skip(long)}, otherwise the entries after it are held back until {@link #close()}, which writes the ones
+ * already added in order. The parent directories of an entry are written before it, and only the first entry of a
+ * name is kept.
+ */
+public class ZipWriter implements Closeable {
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 256;
+
+    private static final Item END = new Item(Long.MAX_VALUE, null, null);
+
+    private final ZipOutputStream zos;
+
+    private final boolean stored;
+
+    private final BlockingQueue<Item> queue;
+
+    private final Thread thread;
+
+    private final CRC32 crc = new CRC32();
+
+    private final Set<String> names = new HashSet<>();
+
+    private final TreeMap<Long, Item> pending = new TreeMap<>();
+
+    private final int window;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * signalled when {@link #next} moves, or when no more entries are written
+     */
+    private final Condition advanced = lock.newCondition();
+
+    /**
+     * the first order not written yet, only moved by the writer thread
+     */
+    private volatile long next;
+
+    private long count;
+
+    private volatile Exception failure;
+
+    private volatile boolean closed;
+
+    public ZipWriter(Path output) throws IOException {
+        this(output, Deflater.DEFAULT_COMPRESSION, false, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param level         the {@link Deflater} level of the entries
+     * @param stored        store the entries without compression, the level is then ignored
+     * @param queueCapacity the number of entries the producers can be ahead of the writer, and of orders ahead of the
+     *                      first one not written yet
+     */
+    public ZipWriter(Path output, int level, boolean stored, int queueCapacity) throws IOException {
+        BaseCmd.createParentDirectories(output);
+        this.zos = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(output), 64 * 1024));
+        this.zos.setLevel(level);
+        this.stored = stored;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.window = queueCapacity;
+        this.thread = new Thread(this::run, "zip-writer " + output.getFileName());
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Adds an entry after the ones added before, for a single producer.
+     */
+    public void put(String name, byte[] data) throws IOException {
+        long order;
+        synchronized (this) {
+            order = count++;
+        }
+        put(order, name, data);
+    }
+
+    /**
+     * Adds an entry to write after all the entries of lower order, the orders start at 0 and must be unique. Blocks
+     * while the queue is full, or while the order is a queue capacity or more ahead of the first order not written.
+     */
+    public void put(long order, String name, byte[] data) throws IOException {
+        offer(new Item(order, name, data));
+    }
+
+    /**
+     * Releases an order that has no entry, as when its content fails to build, so the entries after it are written.
+     */
+    public void skip(long order) throws IOException {
+        offer(new Item(order, null, null));
+    }
+
+    private void offer(Item item) throws IOException {
+        try {
+            if (item.order >= next + window) {
+                awaitWindow(item.order);
+            }
+            Exception failure = this.failure;
+            if (failure != null) {
+                throw new IOException("fail to write the zip", failure);
+            }
+            if (closed) {
+                throw new IOException("the zip is closed");
+            }
+            queue.put(item);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    private void awaitWindow(long order) throws InterruptedException {
+        lock.lock();
+        try {
+            while (order >= next + window && failure == null && !closed) {
+                advanced.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void signalAdvanced() {
+        lock.lock();
+        try {
+            advanced.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void run() {
+        try {
+            for (Item item = queue.take(); item != END; item = queue.take()) {
+                if (failure != null) {
+                    continue; // keep draining, so the producers are not blocked
+                }
+                try {
+                    if (item.order < next) { // an order used twice, the entry before is written already
+                        write(item);
+                        continue;
+                    }
+                    // the first entry of an order is kept, a skip does not drop it
+                    pending.merge(item.order, item, (old, added) -> old.name != null ? old : added);
+                    long from = next;
+                    for (Item p = pending.remove(next); p != null; p = pending.remove(next)) {
+                        next++;
+                        write(p);
+                    }
+                    if (next != from) {
+                        signalAdvanced();
+                    }
+                } catch (IOException | RuntimeException e) {
+                    failure = e;
+                    signalAdvanced();
+                }
+            }
+            if (failure == null) {
+                for (Item p : pending.values()) {
+                    write(p);
+                }
+            }
+        } catch (InterruptedException | IOException | RuntimeException e) {
+            failure = e;
+        }
+        pending.clear();
+        signalAdvanced();
+    }
+
+    private void write(Item item) throws IOException {
+        String name = item.name;
+        if (name == null || !names.add(name)) {
+            return;
+        }
+        for (int i = name.indexOf('/'); i >= 0 && i < name.length() - 1; i = name.indexOf('/', i + 1)) {
+            String dir = name.substring(0, i + 1);
+            if (names.add(dir)) {
+                writeEntry(dir, new byte[0]);
+            }
+        }
+        writeEntry(name, item.data);
+    }
+
+    private void writeEntry(String name, byte[] data) throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        if (stored) {
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(data.length);
+            entry.setCompressedSize(data.length);
+            crc.reset();
+            crc.update(data);
+            entry.setCrc(crc.getValue());
+        }
+        zos.putNextEntry(entry);
+        zos.write(data);
+        zos.closeEntry();
+    }
+
+    /**
+     * Writes the entries left and the central directory.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        signalAdvanced();
+        try {
+            queue.put(END);
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } finally {
+            try {
+                zos.close();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        Exception failure = this.failure;
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        } else if (failure != null) {
+            throw new IOException("fail to write the zip", failure);
+        }
+    }
+
+    private static class Item {
+
+        final long order;
+
+        final String name;
+
+        final byte[] data;
+
+        Item(long order, String name, byte[] data) {
+            this.order = order;
+            this.name = name;
+            this.data = data;
+        }
+
+    }
+
+}
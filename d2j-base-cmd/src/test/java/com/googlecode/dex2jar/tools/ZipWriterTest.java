@@ -0,0 +1,146 @@
+package com.googlecode.dex2jar.tools;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * the entries are written in order, and the producers ahead of a missing order wait for it
+ */
+public class ZipWriterTest {
+
+    private static final int CAPACITY = 4;
+
+    private static final int SIZE = 20;
+
+    @Test
+    public void testFirstOrderLast() throws Exception {
+        Path file = Files.createTempFile("d2j", ".zip");
+        ExecutorService executor = Executors.newFixedThreadPool(SIZE);
+        try {
+            ZipWriter zip = new ZipWriter(file, Deflater.DEFAULT_COMPRESSION, false, CAPACITY);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 1; i < SIZE; i++) {
+                final int order = i;
+                futures.add(executor.submit(() -> {
+                    if (order == SIZE / 2) {
+                        zip.skip(order);
+                    } else {
+                        zip.put(order, name(order), data(order));
+                    }
+                    return null;
+                }));
+            }
+            // the orders within the window are taken, the ones after it wait for order 0
+            for (int i = 1; i < CAPACITY; i++) {
+                futures.get(i - 1).get(10, TimeUnit.SECONDS);
+            }
+            Thread.sleep(200);
+            for (int i = CAPACITY; i < SIZE; i++) {
+                assertFalse(futures.get(i - 1).isDone(), "order " + i + " is ahead of the window");
+            }
+
+            zip.put(0, name(0), data(0));
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+            zip.close();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        try (ZipFile zipFile = new ZipFile(file.toFile())) {
+            List<String> names = new ArrayList<>();
+            for (ZipEntry entry : Collections.list(zipFile.entries())) {
+                if (!entry.isDirectory()) {
+                    names.add(entry.getName());
+                    byte[] expected = data(Integer.parseInt(entry.getName().substring("a/e".length())));
+                    assertArrayEquals(expected, readAll(zipFile, entry));
+                }
+            }
+            List<String> expected = new ArrayList<>();
+            for (int i = 0; i < SIZE; i++) {
+                if (i != SIZE / 2) {
+                    expected.add(name(i));
+                }
+            }
+            assertEquals(expected, names);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testSkipReleasesWaiting() throws Exception {
+        Path file = Files.createTempFile("d2j", ".zip");
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            ZipWriter zip = new ZipWriter(file, Deflater.DEFAULT_COMPRESSION, true, CAPACITY);
+            Future<?> ahead = executor.submit(() -> {
+                zip.put(CAPACITY, name(CAPACITY), data(CAPACITY));
+                return null;
+            });
+            for (int i = 1; i < CAPACITY; i++) {
+                zip.put(i, name(i), data(i));
+            }
+            Thread.sleep(200);
+            assertFalse(ahead.isDone());
+            zip.skip(0);
+            ahead.get(10, TimeUnit.SECONDS);
+            zip.close();
+        } finally {
+            executor.shutdownNow();
+        }
+        try (ZipFile zipFile = new ZipFile(file.toFile())) {
+            List<String> names = new ArrayList<>();
+            for (ZipEntry entry : Collections.list(zipFile.entries())) {
+                if (!entry.isDirectory()) {
+                    names.add(entry.getName());
+                }
+            }
+            List<String> expected = new ArrayList<>();
+            for (int i = 1; i <= CAPACITY; i++) {
+                expected.add(name(i));
+            }
+            assertEquals(expected, names);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static String name(int order) {
+        return "a/e" + order;
+    }
+
+    private static byte[] data(int order) {
+        return ("entry " + order).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readAll(ZipFile zipFile, ZipEntry entry) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[1024];
+        try (InputStream in = zipFile.getInputStream(entry)) {
+            for (int n = in.read(buf); n >= 0; n = in.read(buf)) {
+                out.write(buf, 0, n);
+            }
+        }
+        return out.toByteArray();
+    }
+
+}
@@ -79,11 +79,11 @@ public final class Baksmali {
     }
 
     public static Baksmali from(File in) throws IOException {
-        return from(ZipUtil.readDex(in));
+        return from(in.toPath());
     }
 
     public static Baksmali from(Path in) throws IOException {
-        return from(ZipUtil.readDex(in));
+        return from(ZipUtil.mapDex(in));
     }
 
     public static Baksmali from(InputStream in) throws IOException {
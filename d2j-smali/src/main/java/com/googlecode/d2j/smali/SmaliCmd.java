@@ -1,12 +1,21 @@
 package com.googlecode.d2j.smali;
 
 import com.googlecode.d2j.dex.writer.DexFileWriter;
+import com.googlecode.d2j.dex.writer.MultiDexFileWriter;
 import com.googlecode.d2j.visitors.DexFileVisitor;
 import com.googlecode.dex2jar.tools.BaseCmd;
 import com.googlecode.dex2jar.tools.BaseCmd.Syntax;
+import com.googlecode.dex2jar.tools.ZipWriter;
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 @Syntax(cmd = "d2j-smali", syntax = "[options] [--] [<smali-file>|folder]*", desc = "assembles a set of smali files "
         + "into a dex file", onlineHelp = "https://sourceforge.net/p/dex2jar/wiki/Smali")
@@ -31,6 +40,14 @@ public class SmaliCmd extends BaseCmd {
     @Opt(opt = "-", hasArg = false, description = "read smali from stdin")
     private boolean readSmaliFromStdin;
 
+    @Opt(opt = "m", longOpt = "multi-dex", hasArg = false, description = "write classes.dex, classes2.dex, ... to the"
+            + " zip file given by --output, a dex is full at 65536 method, field or type ids")
+    private boolean multiDex;
+
+    @Opt(longOpt = "main-dex-list", description = "with --multi-dex, the classes to write to classes.dex, one class "
+            + "file per line, as a/b/C.class", argName = "FILE")
+    private Path mainDexList;
+
     public static void main(String... args) {
         new SmaliCmd().doMain(args);
     }
@@ -51,10 +68,10 @@ public class SmaliCmd extends BaseCmd {
         }
 
         if (output == null) {
-            output = new File("out.dex").toPath();
+            output = new File(multiDex ? "out.zip" : "out.dex").toPath();
         }
 
-        DexFileWriter fw = new DexFileWriter();
+        DexFileVisitor fw = multiDex ? new MultiDexFileWriter(readMainDexList()) : new DexFileWriter();
 
         DexFileVisitor fv = new DexFileVisitor(fw) {
             @Override
@@ -78,8 +95,40 @@ public class SmaliCmd extends BaseCmd {
         }
 
         fw.visitEnd();
-        byte[] data = fw.toByteArray();
-        Files.write(output, data);
+        if (multiDex) {
+            ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+            List<byte[]> dexFiles;
+            try {
+                dexFiles = ((MultiDexFileWriter) fw).toByteArrays(executor);
+            } finally {
+                executor.shutdown();
+            }
+            // the dex files are built in parallel, but written in order, so the zip does not depend on which is first
+            try (ZipWriter zip = new ZipWriter(output)) {
+                for (int i = 0; i < dexFiles.size(); i++) {
+                    zip.put(i, MultiDexFileWriter.dexFileName(i), dexFiles.get(i));
+                }
+            }
+        } else {
+            ((DexFileWriter) fw).writeTo(output);
+        }
+    }
+
+    /**
+     * @return the descriptors of the classes in the main dex list, or null if there is no list
+     */
+    private Set<String> readMainDexList() throws IOException {
+        if (mainDexList == null) {
+            return null;
+        }
+        Set<String> classes = new HashSet<>();
+        for (String line : Files.readAllLines(mainDexList, StandardCharsets.UTF_8)) {
+            line = line.trim();
+            if (line.endsWith(".class")) {
+                classes.add("L" + line.substring(0, line.length() - ".class".length()) + ";");
+            }
+        }
+        return classes;
     }
 
 }
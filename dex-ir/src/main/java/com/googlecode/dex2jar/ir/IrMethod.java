@@ -3,6 +3,7 @@ package com.googlecode.dex2jar.ir;
 import com.googlecode.dex2jar.ir.expr.Local;
 import com.googlecode.dex2jar.ir.stmt.LabelStmt;
 import com.googlecode.dex2jar.ir.stmt.StmtList;
+import com.googlecode.dex2jar.ir.ts.BlockCfg;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -12,6 +13,33 @@ import java.util.List;
  */
 public class IrMethod {
 
+    /**
+     * a const loads 0, which may be a null or a zero divisor
+     */
+    public static final int F_CONST_ZERO = 1;
+
+    /**
+     * a const loads 1
+     */
+    public static final int F_CONST_ONE = 1 << 1;
+
+    /**
+     * a new-instance
+     */
+    public static final int F_NEW_INSTANCE = 1 << 2;
+
+    /**
+     * a new-array or a filled-new-array
+     */
+    public static final int F_NEW_ARRAY = 1 << 3;
+
+    /**
+     * a check-cast
+     */
+    public static final int F_CHECK_CAST = 1 << 4;
+
+    public static final int F_ALL = -1;
+
     public boolean isStatic;
 
     public String[] args;
@@ -32,6 +60,17 @@ public class IrMethod {
 
     public List<LabelStmt> phiLabels;
 
+    /**
+     * the block graph cached by {@link BlockCfg#of(IrMethod)}
+     */
+    public BlockCfg blockCfg;
+
+    /**
+     * the {@code F_*} instructions found in the method by the converter, so the transformers looking for the others
+     * can be skipped; all of them if the converter does not record them
+     */
+    public int features = F_ALL;
+
     public IrMethod clone() {
         IrMethod n = new IrMethod();
         LabelAndLocalMapper mapper = new LabelAndLocalMapper();
@@ -40,6 +79,7 @@ public class IrMethod {
         n.isStatic = isStatic;
         n.owner = owner;
         n.ret = ret;
+        n.features = features;
         n.stmts = stmts.clone(mapper);
         for (Trap trap : traps) {
             n.traps.add(trap.clone(mapper));
@@ -63,6 +63,8 @@ public class StmtList implements Iterable<Stmt>, java.util.Comparator<Stmt> {
 
     private int size = 0;
 
+    private int modCount;
+
     public void add(Stmt stmt) {
         insertLast(stmt);
     }
@@ -102,6 +104,13 @@ public class StmtList implements Iterable<Stmt>, java.util.Comparator<Stmt> {
         return size;
     }
 
+    /**
+     * @return the number of times statements were added, removed or moved in this list
+     */
+    public int getModCount() {
+        return modCount;
+    }
+
     private void indexIt(Stmt stmt) {
         if (stmt.id <= 0) {
             stmt.id = this.index;
@@ -111,6 +120,7 @@ public class StmtList implements Iterable<Stmt>, java.util.Comparator<Stmt> {
 
     public void insertAfter(Stmt position, Stmt stmt) {
         if (position.list == this) {
+            modCount++;
             indexIt(stmt);
             stmt.list = this;
             size++;
@@ -127,6 +137,7 @@ public class StmtList implements Iterable<Stmt>, java.util.Comparator<Stmt> {
 
     public void insertBefore(Stmt position, Stmt stmt) {
         if (position.list == this) {
+            modCount++;
             indexIt(stmt);
             stmt.list = this;
             size++;
@@ -142,6 +153,7 @@ public class StmtList implements Iterable<Stmt>, java.util.Comparator<Stmt> {
     }
 
     public void insertFirst(Stmt stmt) {
+        modCount++;
         indexIt(stmt);
         stmt.list = this;
         size++;
@@ -159,6 +171,7 @@ public class StmtList implements Iterable<Stmt>, java.util.Comparator<Stmt> {
     }
 
     public void insertLast(Stmt stmt) {
+        modCount++;
         indexIt(stmt);
         stmt.list = this;
         size++;
@@ -182,6 +195,7 @@ public class StmtList implements Iterable<Stmt>, java.util.Comparator<Stmt> {
 
     public void remove(Stmt stmt) {
         if (stmt.list == this) {
+            modCount++;
             size--;
             stmt.list = null;
             if (stmt.pre == null) {
@@ -201,6 +215,7 @@ public class StmtList implements Iterable<Stmt>, java.util.Comparator<Stmt> {
 
     public void replace(Stmt stmt, Stmt nas) {
         if (stmt.list == this) {
+            modCount++;
             indexIt(nas);
             nas.list = this;
             nas.next = stmt.next;
@@ -237,6 +252,7 @@ public class StmtList implements Iterable<Stmt>, java.util.Comparator<Stmt> {
     }
 
     public void move(Stmt start, Stmt end, Stmt dist) {
+        modCount++;
         if (start.pre == null) {
             this.first = end.next;
         } else {
@@ -260,6 +276,7 @@ public class StmtList implements Iterable<Stmt>, java.util.Comparator<Stmt> {
     }
 
     public void clear() {
+        modCount++;
         size = 0;
         first = null;
         last = null;
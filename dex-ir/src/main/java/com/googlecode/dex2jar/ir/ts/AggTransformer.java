@@ -58,6 +58,7 @@ public class AggTransformer extends StatedTransformer {
                     replaceX.replaceWith = stmt.getOp2();
                     method.locals.remove(local);
                     method.stmts.remove(stmt);
+                    changed = true;
 
                     Cfg.travelMod(next, replaceX, false);
 
@@ -0,0 +1,429 @@
+package com.googlecode.dex2jar.ir.ts;
+
+import com.googlecode.dex2jar.ir.IrMethod;
+import com.googlecode.dex2jar.ir.Trap;
+import com.googlecode.dex2jar.ir.stmt.BaseSwitchStmt;
+import com.googlecode.dex2jar.ir.stmt.JumpStmt;
+import com.googlecode.dex2jar.ir.stmt.LabelStmt;
+import com.googlecode.dex2jar.ir.stmt.Stmt;
+import com.googlecode.dex2jar.ir.stmt.Stmt.ST;
+import com.googlecode.dex2jar.ir.stmt.StmtList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The control flow graph of a method at the level of basic blocks, without the per {@link Stmt} sets of
+ * {@link Cfg#createCFG(IrMethod)}.
+ * <p>
+ * The blocks are numbered in the order of the statements, block 0 is the entry. A block starts at a label, or after a
+ * statement that jumps, switches, does not continue or may throw into a handler, so an exceptional edge always leaves
+ * from the last statement of its block. The edges are kept in compressed rows, the successors of block {@code b} are
+ * {@code succ(b, 0)} to {@code succ(b, succCount(b) - 1)}.
+ * <p>
+ * {@link #of(IrMethod)} caches the graph on the method, it is rebuilt once statements are added, removed or moved, or
+ * the traps change. A transformer changing a jump target, a switch or whether a statement may throw in place has to
+ * call {@link #invalidate(IrMethod)}.
+ * <p>
+ * It is used by {@link DeadCodeTransformer}, {@link com.googlecode.dex2jar.ir.ts.an.BlockLiveAnalyze},
+ * {@link Ir2JRegAssignTransformer} and {@link UnSSATransformer}. The frame based analyses, {@link SSATransformer},
+ * {@link com.googlecode.dex2jar.ir.ts.an.BaseAnalyze}, {@link NewTransformer},
+ * {@link com.googlecode.dex2jar.ir.ts.array.FillArrayTransformer} and
+ * {@link com.googlecode.dex2jar.ir.ts.array.ArrayElementTransformer}, still walk the per statement graph of
+ * {@link Cfg#createCFG(IrMethod)}, their output depends on its visit order.
+ */
+public final class BlockCfg {
+
+    private final StmtList list;
+
+    private final int modCount;
+
+    /**
+     * each trap followed by its start, end and handlers
+     */
+    private final Object[] traps;
+
+    private final Stmt[] stmts;
+
+    private final int[] blockStarts;
+
+    private final int[] succStarts;
+
+    private final int[] succs;
+
+    private final int[] handlerStarts;
+
+    private final int[] handlers;
+
+    private final int[] predStarts;
+
+    private final int[] preds;
+
+    /**
+     * the first statement of each block, to its block
+     */
+    private final Map<Stmt, Integer> leaders;
+
+    private int[] reversePostorder;
+
+    private int[] rpoIndexes;
+
+    private BlockCfg(IrMethod method) {
+        this.list = method.stmts;
+        this.modCount = list.getModCount();
+        this.traps = snapshot(method.traps);
+
+        int size = list.getSize();
+        Stmt[] stmts = new Stmt[size];
+        Map<Stmt, Integer> labels = new IdentityHashMap<>();
+        int n = 0;
+        for (Stmt p = list.getFirst(); p != null; p = p.getNext()) {
+            if (p.st == ST.LABEL) {
+                labels.put(p, n);
+            }
+            stmts[n++] = p;
+        }
+        this.stmts = stmts;
+
+        // the handlers of the statements that may throw in a trap, as linked lists of positions
+        int[] handlerHeads = new int[size];
+        Arrays.fill(handlerHeads, -1);
+        int[] handlerNexts = new int[8];
+        int[] handlerTargets = new int[8];
+        int handlerCount = 0;
+        byte[] throwing = new byte[size]; // 0: unknown, 1: no, 2: yes
+        for (Trap t : method.traps) {
+            Integer start = labels.get(t.start);
+            if (start == null) {
+                continue;
+            }
+            Integer end = labels.get(t.end);
+            int endPos = end == null ? size : end;
+            for (int i = start; i < endPos; i++) {
+                if (throwing[i] == 0) {
+                    throwing[i] = (byte) (Cfg.isThrow(stmts[i]) ? 2 : 1);
+                }
+                if (throwing[i] == 2) {
+                    for (LabelStmt handler : t.handlers) {
+                        Integer h = labels.get(handler);
+                        if (h != null) {
+                            if (handlerCount == handlerNexts.length) {
+                                handlerNexts = Arrays.copyOf(handlerNexts, handlerCount * 2);
+                                handlerTargets = Arrays.copyOf(handlerTargets, handlerCount * 2);
+                            }
+                            handlerTargets[handlerCount] = h;
+                            handlerNexts[handlerCount] = handlerHeads[i];
+                            handlerHeads[i] = handlerCount++;
+                        }
+                    }
+                }
+            }
+        }
+
+        int[] blockOfPos = new int[size];
+        int[] blockStarts = new int[size + 1];
+        Map<Stmt, Integer> leaders = new IdentityHashMap<>();
+        int blockCount = 0;
+        for (int i = 0; i < size; i++) {
+            Stmt p = stmts[i];
+            if (i == 0 || p.st == ST.LABEL || endsBlock(stmts[i - 1]) || handlerHeads[i - 1] >= 0) {
+                leaders.put(p, blockCount);
+                blockStarts[blockCount++] = i;
+            }
+            blockOfPos[i] = blockCount - 1;
+        }
+        blockStarts[blockCount] = size;
+        this.blockStarts = Arrays.copyOf(blockStarts, blockCount + 1);
+        this.leaders = leaders;
+
+        int[] succStarts = new int[blockCount + 1];
+        int[] succs = new int[blockCount * 2];
+        int edgeCount = 0;
+        int[] seen = new int[blockCount];
+        Arrays.fill(seen, -1);
+        int[] handlerStarts = new int[blockCount + 1];
+        int[] handlers = new int[4];
+        int handlerEdgeCount = 0;
+        int[] seenHandler = new int[blockCount];
+        Arrays.fill(seenHandler, -1);
+        int[] targets = new int[4];
+        for (int b = 0; b < blockCount; b++) {
+            succStarts[b] = edgeCount;
+            handlerStarts[b] = handlerEdgeCount;
+            int last = blockStarts[b + 1] - 1;
+            Stmt p = stmts[last];
+            int targetCount = 0;
+            // the handlers are linked in reverse order
+            for (int h = handlerHeads[last]; h >= 0; h = handlerNexts[h]) {
+                targetCount++;
+            }
+            if (targets.length < targetCount) {
+                targets = new int[targetCount * 2];
+            }
+            int k = targetCount;
+            for (int h = handlerHeads[last]; h >= 0; h = handlerNexts[h]) {
+                targets[--k] = handlerTargets[h];
+            }
+            for (int i = 0; i < targetCount; i++) {
+                int target = blockOfPos[targets[i]];
+                if (seenHandler[target] != b) {
+                    seenHandler[target] = b;
+                    if (handlerEdgeCount == handlers.length) {
+                        handlers = Arrays.copyOf(handlers, handlerEdgeCount * 2);
+                    }
+                    handlers[handlerEdgeCount++] = target;
+                }
+            }
+            if (p.st.canSwitch()) {
+                BaseSwitchStmt bss = (BaseSwitchStmt) p;
+                if (targets.length < targetCount + bss.targets.length + 1) {
+                    targets = Arrays.copyOf(targets, (targetCount + bss.targets.length + 1) * 2);
+                }
+                for (LabelStmt target : bss.targets) {
+                    targets[targetCount++] = position(labels, target);
+                }
+                targets[targetCount++] = position(labels, bss.defaultTarget);
+            }
+            if (targets.length < targetCount + 2) {
+                targets = Arrays.copyOf(targets, (targetCount + 2) * 2);
+            }
+            if (p.st.canBranch()) {
+                targets[targetCount++] = position(labels, ((JumpStmt) p).getTarget());
+            }
+            if (p.st.canContinue() && last + 1 < size) {
+                targets[targetCount++] = last + 1;
+            }
+            for (int i = 0; i < targetCount; i++) {
+                if (targets[i] < 0) {
+                    continue;
+                }
+                int target = blockOfPos[targets[i]];
+                if (seen[target] != b) {
+                    seen[target] = b;
+                    if (edgeCount == succs.length) {
+                        succs = Arrays.copyOf(succs, edgeCount * 2 + 1);
+                    }
+                    succs[edgeCount++] = target;
+                }
+            }
+        }
+        succStarts[blockCount] = edgeCount;
+        this.succStarts = succStarts;
+        this.succs = Arrays.copyOf(succs, edgeCount);
+        handlerStarts[blockCount] = handlerEdgeCount;
+        this.handlerStarts = handlerStarts;
+        this.handlers = Arrays.copyOf(handlers, handlerEdgeCount);
+
+        int[] predStarts = new int[blockCount + 1];
+        for (int i = 0; i < edgeCount; i++) {
+            predStarts[this.succs[i] + 1]++;
+        }
+        for (int b = 0; b < blockCount; b++) {
+            predStarts[b + 1] += predStarts[b];
+        }
+        int[] preds = new int[edgeCount];
+        int[] fill = Arrays.copyOf(predStarts, blockCount);
+        for (int b = 0; b < blockCount; b++) {
+            for (int i = succStarts[b]; i < succStarts[b + 1]; i++) {
+                preds[fill[this.succs[i]]++] = b;
+            }
+        }
+        this.predStarts = predStarts;
+        this.preds = preds;
+    }
+
+    /**
+     * @return the graph of the method, built if the cached one is missing or out of date
+     */
+    public static BlockCfg of(IrMethod method) {
+        BlockCfg cfg = method.blockCfg;
+        if (cfg == null || !cfg.isValid(method)) {
+            cfg = new BlockCfg(method);
+            method.blockCfg = cfg;
+        }
+        return cfg;
+    }
+
+    /**
+     * Drops the cached graph of the method, after a change of the control flow not made through its {@link StmtList}
+     * or traps.
+     */
+    public static void invalidate(IrMethod method) {
+        method.blockCfg = null;
+    }
+
+    private static boolean endsBlock(Stmt p) {
+        return p.st.canBranch() || p.st.canSwitch() || !p.st.canContinue();
+    }
+
+    private static int position(Map<Stmt, Integer> labels, LabelStmt label) {
+        Integer pos = labels.get(label);
+        return pos == null ? -1 : pos;
+    }
+
+    private static Object[] snapshot(List<Trap> traps) {
+        Object[] snapshot = new Object[traps.size() * 4];
+        int i = 0;
+        for (Trap t : traps) {
+            snapshot[i++] = t;
+            snapshot[i++] = t.start;
+            snapshot[i++] = t.end;
+            snapshot[i++] = t.handlers;
+        }
+        return snapshot;
+    }
+
+    private boolean isValid(IrMethod method) {
+        if (list != method.stmts || modCount != list.getModCount() || traps.length != method.traps.size() * 4) {
+            return false;
+        }
+        int i = 0;
+        for (Trap t : method.traps) {
+            if (traps[i++] != t || traps[i++] != t.start || traps[i++] != t.end || traps[i++] != t.handlers) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of blocks
+     */
+    public int size() {
+        return blockStarts.length - 1;
+    }
+
+    /**
+     * @return the block of the statement, which must be in the method
+     */
+    public int blockOf(Stmt stmt) {
+        for (Stmt p = stmt; p != null; p = p.getPre()) {
+            Integer block = leaders.get(p);
+            if (block != null) {
+                return block;
+            }
+        }
+        throw new IllegalArgumentException("not in the method: " + stmt);
+    }
+
+    public Stmt getFirst(int block) {
+        return stmts[blockStarts[block]];
+    }
+
+    public Stmt getLast(int block) {
+        return stmts[blockStarts[block + 1] - 1];
+    }
+
+    /**
+     * @return the number of statements in the block
+     */
+    public int getStmtCount(int block) {
+        return blockStarts[block + 1] - blockStarts[block];
+    }
+
+    public int succCount(int block) {
+        return succStarts[block + 1] - succStarts[block];
+    }
+
+    public int succ(int block, int i) {
+        return succs[succStarts[block] + i];
+    }
+
+    /**
+     * @return the number of exception handlers the last statement of the block may throw into, they are also among
+     * the successors of the block
+     */
+    public int handlerCount(int block) {
+        return handlerStarts[block + 1] - handlerStarts[block];
+    }
+
+    public int handler(int block, int i) {
+        return handlers[handlerStarts[block] + i];
+    }
+
+    public int predCount(int block) {
+        return predStarts[block + 1] - predStarts[block];
+    }
+
+    public int pred(int block, int i) {
+        return preds[predStarts[block] + i];
+    }
+
+    /**
+     * @return the blocks reachable from the entry in reverse postorder, shared, not to be modified
+     */
+    public int[] reversePostorder() {
+        if (reversePostorder == null) {
+            computeOrder();
+        }
+        return reversePostorder;
+    }
+
+    /**
+     * @return the position of the block in {@link #reversePostorder()}, -1 if it is not reachable
+     */
+    public int rpoIndex(int block) {
+        if (rpoIndexes == null) {
+            computeOrder();
+        }
+        return rpoIndexes[block];
+    }
+
+    public boolean isReachable(int block) {
+        return rpoIndex(block) >= 0;
+    }
+
+    /**
+     * Marks the reachable statements as {@link Stmt#visited}, like {@link Cfg#dfsVisit(IrMethod, Cfg.DfsVisitor)}.
+     */
+    public void markVisited() {
+        int size = size();
+        for (int b = 0; b < size; b++) {
+            boolean reachable = isReachable(b);
+            for (int i = blockStarts[b]; i < blockStarts[b + 1]; i++) {
+                stmts[i].visited = reachable;
+            }
+        }
+    }
+
+    private void computeOrder() {
+        int size = size();
+        int[] rpoIndexes = new int[size];
+        Arrays.fill(rpoIndexes, -1);
+        int[] postorder = new int[size];
+        int count = 0;
+        if (size > 0) {
+            // iterative dfs, the cursor is the next successor to visit
+            int[] stack = new int[size];
+            int[] cursors = new int[size];
+            int top = 0;
+            stack[0] = 0;
+            rpoIndexes[0] = 0; // visited
+            while (top >= 0) {
+                int b = stack[top];
+                if (cursors[top] < succCount(b)) {
+                    int s = succ(b, cursors[top]++);
+                    if (rpoIndexes[s] < 0) {
+                        rpoIndexes[s] = 0;
+                        top++;
+                        stack[top] = s;
+                        cursors[top] = 0;
+                    }
+                } else {
+                    postorder[count++] = b;
+                    top--;
+                }
+            }
+        }
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            int b = postorder[count - 1 - i];
+            order[i] = b;
+            rpoIndexes[b] = i;
+        }
+        this.reversePostorder = order;
+        this.rpoIndexes = rpoIndexes;
+    }
+
+}
@@ -208,6 +208,22 @@ public final class Cfg {
         }
     }
 
+    /**
+     * @return if the only successor of the statement is the next one, and the next one is not a label and has no other
+     * predecessor. After {@link #createCFG(IrMethod)}, {@link #dfs(StmtList, FrameVisitor)} merges the frame into the
+     * next statement once and executes it right after the statement, so a visitor can pass the frame on as it is.
+     */
+    public static boolean isFallThrough(Stmt stmt) {
+        if (stmt.exceptionHandlers != null && !stmt.exceptionHandlers.isEmpty()) {
+            return false;
+        }
+        if (!stmt.st.canContinue() || stmt.st.canBranch() || stmt.st.canSwitch()) {
+            return false;
+        }
+        Stmt next = stmt.getNext();
+        return next != null && next.st != ST.LABEL && next.cfgFroms.size() == 1;
+    }
+
     @SuppressWarnings("unchecked")
     public static <T> void dfs(StmtList stmts, FrameVisitor<T> sv) {
         if (stmts.getSize() == 0) {
@@ -19,10 +19,10 @@ import java.util.Set;
  *
  * @author <a href="mailto:pxb1988@gmail.com">Panxiaobo</a>
  */
-public class CleanLabel implements Transformer {
+public class CleanLabel extends StatedTransformer {
 
     @Override
-    public void transform(IrMethod irMethod) {
+    public boolean transformReportChanged(IrMethod irMethod) {
         Set<LabelStmt> useLabels = new HashSet<>();
         addTrap(irMethod.traps, useLabels);
         addVars(irMethod.vars, useLabels);
@@ -31,7 +31,7 @@ public class CleanLabel implements Transformer {
             useLabels.addAll(irMethod.phiLabels);
         }
         addLineNumber(irMethod.stmts, useLabels);
-        rmUnused(irMethod.stmts, useLabels);
+        return rmUnused(irMethod.stmts, useLabels);
     }
 
     private void addVars(List<LocalVar> vars, Set<LabelStmt> useLabels) {
@@ -44,19 +44,22 @@ public class CleanLabel implements Transformer {
 
     }
 
-    private void rmUnused(StmtList stmts, Set<LabelStmt> useLabels) {
+    private boolean rmUnused(StmtList stmts, Set<LabelStmt> useLabels) {
+        boolean changed = false;
         Stmt p = stmts.getFirst();
         while (p != null) {
             if (p instanceof LabelStmt && p.st == ST.LABEL) {
                 if (!useLabels.contains(p)) {
                     Stmt q = p.getNext();
                     stmts.remove(p);
+                    changed = true;
                     p = q;
                     continue;
                 }
             }
             p = p.getNext();
         }
+        return changed;
     }
 
     private void addStmt(StmtList stmts, Set<LabelStmt> labels) {
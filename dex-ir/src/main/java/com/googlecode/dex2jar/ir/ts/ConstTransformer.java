@@ -24,10 +24,10 @@ import java.util.Set;
  * @author Panxiaobo
  */
 @SuppressWarnings({"unchecked", "rawtypes"})
-public class ConstTransformer implements Transformer {
+public class ConstTransformer extends StatedTransformer {
 
     @Override
-    public void transform(IrMethod m) {
+    public boolean transformReportChanged(IrMethod m) {
 
         // 1. init
         init(m);
@@ -39,10 +39,11 @@ public class ConstTransformer implements Transformer {
         markConstant(m);
         markReplacable(m);
         // 4. replace
-        replace(m);
+        boolean changed = replace(m);
 
         // 5. clean
         clean(m);
+        return changed;
     }
 
     private void clean(IrMethod m) {
@@ -51,13 +52,15 @@ public class ConstTransformer implements Transformer {
         }
     }
 
-    private void replace(IrMethod m) {
+    private boolean replace(IrMethod m) {
+        boolean[] changed = new boolean[1];
         Cfg.travelMod(m.stmts, new TravelCallBack() {
 
             @Override
             public Value onUse(Local v) {
                 ConstAnalyzeValue cav = (ConstAnalyzeValue) v.tag;
                 if (cav.replacable) {
+                    changed[0] = true;
                     return Exprs.nConstant(cav.cst);
                 }
                 return v;
@@ -69,12 +72,14 @@ public class ConstTransformer implements Transformer {
                 if (cav.replacable) {
                     if (as.op2.trim().vt != VT.CONSTANT) {
                         as.op2 = Exprs.nConstant(cav.cst);
+                        changed[0] = true;
                     }
                 }
                 return v;
             }
 
         }, true);
+        return changed[0];
     }
 
     private void markReplacable(IrMethod m) {
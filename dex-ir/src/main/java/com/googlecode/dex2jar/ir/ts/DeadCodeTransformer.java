@@ -9,17 +9,17 @@ import com.googlecode.dex2jar.ir.stmt.AssignStmt;
 import com.googlecode.dex2jar.ir.stmt.LabelStmt;
 import com.googlecode.dex2jar.ir.stmt.Stmt;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
-public class DeadCodeTransformer implements Transformer {
+public class DeadCodeTransformer extends StatedTransformer {
 
     @Override
-    public void transform(IrMethod method) {
-        Cfg.createCFG(method);
-        Cfg.dfsVisit(method, null);
+    public boolean transformReportChanged(IrMethod method) {
+        boolean changed = false;
+        BlockCfg.of(method).markVisited();
         if (method.traps != null) {
             Iterator<Trap> it = method.traps.iterator();
             while (it.hasNext()) {
@@ -33,6 +33,7 @@ public class DeadCodeTransformer implements Transformer {
                 }
                 if (allNotThrow) {
                     it.remove();
+                    changed = true;
                     continue;
                 }
 
@@ -47,6 +48,7 @@ public class DeadCodeTransformer implements Transformer {
                 }
                 if (allNotVisited) {
                     it.remove();
+                    changed = true;
                 } else {
                     // keep start and end
                     t.start.visited = true;
@@ -64,13 +66,15 @@ public class DeadCodeTransformer implements Transformer {
                 }
             }
         }
-        Set<Local> definedLocals = new HashSet<>();
+        // keep the order of definition, the locals are numbered in this order
+        Set<Local> definedLocals = new LinkedHashSet<>();
         {
             Iterator<Stmt> it = method.stmts.iterator();
             while (it.hasNext()) {
                 Stmt p = it.next();
                 if (!p.visited) {
                     it.remove();
+                    changed = true;
                     continue;
                 }
                 if (p.st == Stmt.ST.ASSIGN || p.st == Stmt.ST.IDENTITY) {
@@ -86,6 +90,7 @@ public class DeadCodeTransformer implements Transformer {
                 LabelStmt labelStmt = it.next();
                 if (!labelStmt.visited) {
                     it.remove();
+                    changed = true;
                     continue;
                 }
                 if (labelStmt.phis != null) {
@@ -96,9 +101,12 @@ public class DeadCodeTransformer implements Transformer {
             }
         }
 
+        if (!changed && !isSameOrder(method.locals, definedLocals)) {
+            changed = true;
+        }
         method.locals.clear();
         method.locals.addAll(definedLocals);
-        Set<Value> tmp = new HashSet<>();
+        Set<Value> tmp = new LinkedHashSet<>();
         if (method.phiLabels != null) {
             for (LabelStmt labelStmt : method.phiLabels) {
                 if (labelStmt.phis != null) {
@@ -119,11 +127,26 @@ public class DeadCodeTransformer implements Transformer {
                             }
                             phiExpr.setOps(tmp.toArray(new Value[0]));
                             tmp.clear();
+                            changed = true;
                         }
                     }
                 }
             }
         }
+        return changed;
+    }
+
+    private static boolean isSameOrder(List<Local> locals, Set<Local> definedLocals) {
+        if (locals.size() != definedLocals.size()) {
+            return false;
+        }
+        Iterator<Local> it = locals.iterator();
+        for (Local local : definedLocals) {
+            if (it.next() != local) {
+                return false;
+            }
+        }
+        return true;
     }
 
 }
@@ -22,7 +22,7 @@ import java.util.ArrayList;
  *
  * @author bob
  */
-public class EndRemover implements Transformer {
+public class EndRemover extends StatedTransformer {
 
     private static final LabelAndLocalMapper KEEP_LOCAL = new LabelAndLocalMapper() {
         @Override
@@ -32,7 +32,8 @@ public class EndRemover implements Transformer {
     };
 
     @Override
-    public void transform(IrMethod irMethod) {
+    public boolean transformReportChanged(IrMethod irMethod) {
+        boolean changed = false;
         for (Trap trap : new ArrayList<>(irMethod.traps)) { // copy the list and we can remove one from original list
             LabelStmt start = null;
             boolean removeTrap = true;
@@ -49,6 +50,7 @@ public class EndRemover implements Transformer {
                 case LABEL:
                     if (start != null) {
                         move4Label(irMethod.stmts, start, p.getPre(), (LabelStmt) p);
+                        changed = true;
                     }
                     start = (LabelStmt) p;
                     p = p.getNext();
@@ -60,6 +62,7 @@ public class EndRemover implements Transformer {
                     if (start != null) {
                         Stmt tmp = p.getNext();
                         move4End(irMethod.stmts, start, p);
+                        changed = true;
                         start = null;
                         p = tmp;
                     } else {
@@ -72,6 +75,7 @@ public class EndRemover implements Transformer {
             }
             if (removeTrap) {
                 irMethod.traps.remove(trap);
+                changed = true;
             }
         }
         StmtList stmts = irMethod.stmts;
@@ -84,10 +88,11 @@ public class EndRemover implements Transformer {
                     stmts.insertAfter(p, nnext);
                     stmts.remove(p);
                     p = nnext;
+                    changed = true;
                 }
             }
         }
-
+        return changed;
     }
 
     private void move4Label(StmtList stmts, LabelStmt start, Stmt end, LabelStmt label) {
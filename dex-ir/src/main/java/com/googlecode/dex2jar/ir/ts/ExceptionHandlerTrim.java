@@ -52,11 +52,11 @@ import java.util.List;
  *
  * @author <a href="mailto:pxb1988@gmail.com">Panxiaobo</a>
  */
-public class ExceptionHandlerTrim implements Transformer {
+public class ExceptionHandlerTrim extends StatedTransformer {
 
     @SuppressWarnings({"unchecked", "rawtypes"})
     @Override
-    public void transform(IrMethod irMethod) {
+    public boolean transformReportChanged(IrMethod irMethod) {
         List<Trap> trips = irMethod.traps;
         irMethod.traps = new ArrayList();
         LabelAndLocalMapper map = new LabelAndLocalMapper() {
@@ -99,6 +99,7 @@ public class ExceptionHandlerTrim implements Transformer {
                 irMethod.traps.add(ntrap);
             }
         }
+        return !trips.isEmpty();
     }
 
 }
@@ -39,10 +39,10 @@ import com.googlecode.dex2jar.ir.stmt.Stmts;
  *
  * @author Panxiaobo
  */
-public class FixVar implements Transformer {
+public class FixVar extends StatedTransformer {
 
     @Override
-    public void transform(IrMethod irMethod) {
+    public boolean transformReportChanged(IrMethod irMethod) {
         int i = 0;
         for (LocalVar var : irMethod.vars) {
             if (var.reg.trim().vt != VT.LOCAL) {
@@ -57,6 +57,7 @@ public class FixVar implements Transformer {
                 }*/
             }
         }
+        return i > 0;
     }
 
 }
@@ -0,0 +1,63 @@
+package com.googlecode.dex2jar.ir.ts;
+
+/**
+ * A first in first out queue of distinct ids in {@code [0, size)}, like {@link UniqueQueue} but on a ring of ints and
+ * a bitset of the queued ids, so adding and polling allocate nothing.
+ */
+public class IntQueue {
+
+    private final int[] ring;
+
+    private final long[] queued;
+
+    private int head;
+
+    private int count;
+
+    public IntQueue(int size) {
+        ring = new int[Math.max(size, 1)];
+        queued = new long[(size + 63) >>> 6];
+    }
+
+    /**
+     * @return false if the id is already in the queue
+     */
+    public boolean add(int id) {
+        long bit = 1L << id;
+        if ((queued[id >>> 6] & bit) != 0) {
+            return false;
+        }
+        queued[id >>> 6] |= bit;
+        int tail = head + count;
+        ring[tail >= ring.length ? tail - ring.length : tail] = id;
+        count++;
+        return true;
+    }
+
+    /**
+     * @return the first id, or -1 if the queue is empty
+     */
+    public int poll() {
+        if (count == 0) {
+            return -1;
+        }
+        int id = ring[head];
+        head = head + 1 == ring.length ? 0 : head + 1;
+        count--;
+        queued[id >>> 6] &= ~(1L << id);
+        return id;
+    }
+
+    public boolean contains(int id) {
+        return (queued[id >>> 6] & (1L << id)) != 0;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    public int size() {
+        return count;
+    }
+
+}
@@ -7,9 +7,9 @@ import com.googlecode.dex2jar.ir.expr.Value;
 import com.googlecode.dex2jar.ir.expr.Value.VT;
 import com.googlecode.dex2jar.ir.stmt.Stmt;
 import com.googlecode.dex2jar.ir.stmt.Stmt.ST;
-import com.googlecode.dex2jar.ir.ts.an.SimpleLiveAnalyze;
-import com.googlecode.dex2jar.ir.ts.an.SimpleLiveValue;
+import com.googlecode.dex2jar.ir.ts.an.BlockLiveAnalyze;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -27,7 +27,7 @@ import java.util.Set;
  *
  * @author bob
  */
-public class Ir2JRegAssignTransformer implements Transformer {
+public class Ir2JRegAssignTransformer extends StatedTransformer {
 
     public static class Reg {
 
@@ -49,7 +49,53 @@ public class Ir2JRegAssignTransformer implements Transformer {
         return x;
     };
 
-    private Reg[] genGraph(IrMethod method, final Reg[] regs) {
+    /**
+     * a new local can't effect next value live in next frame
+     */
+    private void genExcludes(BlockLiveAnalyze liveness, final Reg[] regs) {
+        BlockCfg cfg = liveness.getCfg();
+        long[] after = liveness.newLive();
+        for (int b = 0; b < cfg.size(); b++) {
+            // the last statement sees the locals live into every successor
+            Stmt last = cfg.getLast(b);
+            if (isAssignLocal(last)) {
+                Arrays.fill(after, 0);
+                for (int i = 0; i < cfg.succCount(b); i++) {
+                    liveness.addLiveIn(cfg.succ(b, i), after);
+                }
+                addExcludes(regs, ((Local) last.getOp1()).lsIndex, after);
+            }
+            if (cfg.isReachable(b)) {
+                liveness.walk(b, (stmt, live) -> {
+                    if (stmt != last && isAssignLocal(stmt)) {
+                        addExcludes(regs, ((Local) stmt.getOp1()).lsIndex, after);
+                    }
+                    System.arraycopy(live, 0, after, 0, after.length);
+                });
+            }
+        }
+    }
+
+    private static boolean isAssignLocal(Stmt stmt) {
+        return (stmt.st == ST.ASSIGN || stmt.st == ST.IDENTITY) && stmt.getOp1().vt == VT.LOCAL;
+    }
+
+    private static void addExcludes(Reg[] regs, int idx, long[] live) {
+        Reg leftReg = regs[idx];
+        for (int w = 0; w < live.length; w++) {
+            for (long bits = live[w]; bits != 0; bits &= bits - 1) {
+                int i = (w << 6) + Long.numberOfTrailingZeros(bits);
+                if (i == idx) {
+                    continue;
+                }
+                Reg rightReg = regs[i];
+                leftReg.excludes.add(rightReg);
+                rightReg.excludes.add(leftReg);
+            }
+        }
+    }
+
+    private Reg[] genGraph(IrMethod method, final Reg[] regs, BlockLiveAnalyze liveness) {
         Reg[] args;
         if (method.isStatic) {
             args = new Reg[method.args.length];
@@ -57,7 +103,7 @@ public class Ir2JRegAssignTransformer implements Transformer {
             args = new Reg[method.args.length + 1];
         }
 
-        Set<Stmt> tos = new HashSet<>();
+        genExcludes(liveness, regs);
         for (Stmt stmt : method.stmts) {
             if (stmt.st == ST.ASSIGN || stmt.st == ST.IDENTITY) {
                 if (stmt.getOp1().vt == VT.LOCAL) {
@@ -66,27 +112,6 @@ public class Ir2JRegAssignTransformer implements Transformer {
                     int idx = left.lsIndex;
                     Reg leftReg = regs[idx];
 
-                    // a new local can't effect next value live in next frame
-                    Cfg.collectTos(stmt, tos);
-                    for (Stmt next : tos) {
-                        SimpleLiveValue[] frame = (SimpleLiveValue[]) next.frame;
-                        if (frame == null) {
-                            continue;
-                        }
-                        for (int i = 0; i < frame.length; i++) {
-                            if (i == idx) {
-                                continue;
-                            }
-                            SimpleLiveValue v = frame[i];
-                            if (v != null && v.used) {
-                                Reg rightReg = regs[i];
-                                leftReg.excludes.add(rightReg);
-                                rightReg.excludes.add(leftReg);
-                            }
-                        }
-                    }
-                    tos.clear();
-
                     // Preferred same reg can save load-store
                     if (op2.vt == VT.LOCAL) {
                         Reg rightReg = regs[((Local) op2).lsIndex];
@@ -151,15 +176,15 @@ public class Ir2JRegAssignTransformer implements Transformer {
     }
 
     @Override
-    public void transform(IrMethod method) {
+    public boolean transformReportChanged(IrMethod method) {
         if (method.locals.isEmpty()) {
-            return;
+            return false;
         }
-        SimpleLiveAnalyze sa = new SimpleLiveAnalyze(method, true);
-        sa.analyze();
+        int maxLocalSize = Cfg.reIndexLocal(method);
+        BlockLiveAnalyze liveness = new BlockLiveAnalyze(method, maxLocalSize);
+        liveness.analyze();
 
         // init regs
-        int maxLocalSize = sa.getLocalSize();
         final Reg[] regs = new Reg[maxLocalSize];
         for (Local local : method.locals) {
             Reg reg = new Reg();
@@ -173,7 +198,7 @@ public class Ir2JRegAssignTransformer implements Transformer {
         }
 
         // gen graph
-        Reg[] args = genGraph(method, regs);
+        Reg[] args = genGraph(method, regs, liveness);
 
         // fix up the graph, make sure @this is not share index with others
         if (!method.isStatic) {
@@ -269,9 +294,7 @@ public class Ir2JRegAssignTransformer implements Transformer {
             local.lsIndex = as.reg;
             local.tag = null;
         }
-        for (Stmt stmt : method.stmts) {
-            stmt.frame = null;
-        }
+        return true;
     }
 
     private void excludeParameters(BitSet excludeColor, Reg[] args, char type) {
@@ -20,7 +20,7 @@ import java.util.List;
  *
  * @author bob
  */
-public class JimpleTransformer implements Transformer {
+public class JimpleTransformer extends StatedTransformer {
 
     static class N {
 
@@ -48,7 +48,8 @@ public class JimpleTransformer implements Transformer {
     }
 
     @Override
-    public void transform(IrMethod method) {
+    public boolean transformReportChanged(IrMethod method) {
+        boolean changed = false;
         List<Stmt> tmp = new ArrayList<>();
         N n = new N(tmp, method.locals);
         for (Stmt p = method.stmts.getFirst(); p != null; p = p.getNext()) {
@@ -56,9 +57,11 @@ public class JimpleTransformer implements Transformer {
             convertStmt(p, n);
             for (Stmt t : tmp) {
                 method.stmts.insertBefore(p, t);
+                changed = true;
             }
 
         }
+        return changed;
     }
 
     private Value convertExpr(Value x, boolean keep, N tmp) {
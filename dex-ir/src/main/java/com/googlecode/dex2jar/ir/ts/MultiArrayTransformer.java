@@ -25,6 +25,11 @@ import com.googlecode.dex2jar.ir.expr.Value;
  */
 public class MultiArrayTransformer extends StatedTransformer {
 
+    @Override
+    public int requiredFeatures() {
+        return IrMethod.F_CHECK_CAST;
+    }
+
     @Override
     public boolean transformReportChanged(IrMethod method) {
         final boolean[] changed = {false};
@@ -37,6 +42,7 @@ public class MultiArrayTransformer extends StatedTransformer {
                         TypeExpr te2 = (TypeExpr) te.op;
                         if (te.type.equals(te2.type)) {
                             op = te2;
+                            changed[0] = true;
                         }
                     }
                 }
@@ -43,12 +43,17 @@ import static com.googlecode.dex2jar.ir.stmt.Stmt.ST.VOID_INVOKE;
  * <p>
  * Run after [SSATransformer, RemoveLocalFromSSA]
  */
-public class NewTransformer implements Transformer {
+public class NewTransformer extends StatedTransformer {
 
     static final Vx IGNORED = new Vx(null, true);
 
     @Override
-    public void transform(IrMethod method) {
+    public int requiredFeatures() {
+        return IrMethod.F_NEW_INSTANCE;
+    }
+
+    @Override
+    public boolean transformReportChanged(IrMethod method) {
 
         // 1. replace
         // =========
@@ -59,14 +64,16 @@ public class NewTransformer implements Transformer {
         // a=new Abc();
         // b=a;
         // =========
-        replaceX(method);
+        boolean changed = replaceX(method);
 
         // 2. replace NEW Abc;.<init>() -> new Abc();
-        replaceAST(method);
-
+        if (replaceAST(method)) {
+            changed = true;
+        }
+        return changed;
     }
 
-    void replaceX(IrMethod method) {
+    boolean replaceX(IrMethod method) {
         final Map<Local, TObject> init = new HashMap<>();
         for (Stmt p : method.stmts) {
             if (p.st == ASSIGN && p.getOp1().vt == LOCAL && p.getOp2().vt == NEW) {
@@ -76,19 +83,23 @@ public class NewTransformer implements Transformer {
             }
         }
 
+        boolean changed = false;
         if (!init.isEmpty()) {
             final int size = Cfg.reIndexLocal(method);
             makeSureUsedBeforeConstructor(method, init, size);
             if (!init.isEmpty()) {
                 replace0(method, init, size);
+                changed = true;
             }
             for (Stmt stmt : method.stmts) {
                 stmt.frame = null;
             }
         }
+        return changed;
     }
 
-    void replaceAST(IrMethod method) {
+    boolean replaceAST(IrMethod method) {
+        boolean changed = false;
         Iterator<Stmt> it = method.stmts.iterator();
         while (it.hasNext()) {
             Stmt p = it.next();
@@ -105,11 +116,13 @@ public class NewTransformer implements Transformer {
                             InvokeExpr invokeNew = Exprs.nInvokeNew(nOps, ie.getArgs(), ie.getOwner());
                             method.stmts.insertBefore(p, Stmts.nVoidInvoke(invokeNew));
                             it.remove();
+                            changed = true;
                         }
                     }
                 }
             }
         }
+        return changed;
     }
 
     void replace0(IrMethod method, Map<Local, TObject> init, int size) {
@@ -29,6 +29,12 @@ public class NpeTransformer extends StatedTransformer {
 
     private static final MustThrowException NEGATIVE_ARRAY_SIZE = new MustThrowException();
 
+    @Override
+    public int requiredFeatures() {
+        // a null, a zero divisor or a negative array size
+        return IrMethod.F_CONST_ZERO | IrMethod.F_NEW_ARRAY;
+    }
+
     @Override
     public boolean transformReportChanged(IrMethod method) {
         boolean changed = false;
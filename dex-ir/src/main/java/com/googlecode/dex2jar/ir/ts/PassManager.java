@@ -0,0 +1,193 @@
+package com.googlecode.dex2jar.ir.ts;
+
+import com.googlecode.dex2jar.ir.IrMethod;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Runs a pipeline of transformers on methods, declared once with {@link #add(String, Transformer)}.
+ * <p>
+ * A pass is skipped if its transformer already ran on the method without a change and no pass changed the method
+ * since, so the transformers must report their changes as a {@link StatedTransformer}; any other transformer is taken
+ * as changing the method. A pass can also be limited to the methods matching a precondition with
+ * {@link #when(Predicate)}, or to the runs in which an earlier pass changed the method with {@link #ifChanged(String)}.
+ * A pass is skipped as well if the method has none of the {@link Transformer#requiredFeatures()}.
+ * <p>
+ * The runs, changes, skips and time of each pass are summed over all the methods. Once declared, the manager may run
+ * methods on several threads.
+ *
+ * <pre>
+ * PassManager passes = new PassManager()
+ *         .add("dead-code", new DeadCodeTransformer())
+ *         .add("npe", new NpeTransformer())
+ *         .add("dead-code", new DeadCodeTransformer()).ifChanged("npe")
+ *         .add("trim-exception", new ExceptionHandlerTrim()).when(m -&gt; !m.traps.isEmpty());
+ * </pre>
+ */
+public class PassManager {
+
+    private static class Pass {
+
+        final String name;
+
+        final Transformer transformer;
+
+        /**
+         * the index of the transformer in {@link #transformers}, a transformer added twice has the same index
+         */
+        final int transformerIndex;
+
+        final int requiredFeatures;
+
+        Predicate<IrMethod> precondition;
+
+        int trigger = -1;
+
+        final LongAdder runs = new LongAdder();
+
+        final LongAdder changes = new LongAdder();
+
+        final LongAdder unchangedSkips = new LongAdder();
+
+        final LongAdder preconditionSkips = new LongAdder();
+
+        final LongAdder featureSkips = new LongAdder();
+
+        final LongAdder nanos = new LongAdder();
+
+        Pass(String name, Transformer transformer, int transformerIndex) {
+            this.name = name;
+            this.transformer = transformer;
+            this.transformerIndex = transformerIndex;
+            this.requiredFeatures = transformer.requiredFeatures();
+        }
+
+    }
+
+    private final List<Pass> passes = new ArrayList<>();
+
+    private final List<Transformer> transformers = new ArrayList<>();
+
+    /**
+     * Adds a pass at the end of the pipeline.
+     */
+    public PassManager add(String name, Transformer transformer) {
+        int index = -1;
+        for (int i = 0; i < transformers.size(); i++) {
+            if (transformers.get(i) == transformer) {
+                index = i;
+                break;
+            }
+        }
+        if (index < 0) {
+            index = transformers.size();
+            transformers.add(transformer);
+        }
+        passes.add(new Pass(name, transformer, index));
+        return this;
+    }
+
+    private Pass last() {
+        if (passes.isEmpty()) {
+            throw new IllegalStateException("no pass added");
+        }
+        return passes.get(passes.size() - 1);
+    }
+
+    /**
+     * The last pass added only runs on the methods matching the precondition. The transformer must not change the
+     * other methods.
+     */
+    public PassManager when(Predicate<IrMethod> precondition) {
+        last().precondition = precondition;
+        return this;
+    }
+
+    /**
+     * The last pass added only runs if the previous pass with that name changed the method.
+     */
+    public PassManager ifChanged(String name) {
+        for (int i = passes.size() - 2; i >= 0; i--) {
+            if (passes.get(i).name.equals(name)) {
+                last().trigger = i;
+                return this;
+            }
+        }
+        throw new IllegalArgumentException("no pass " + name + " before " + last().name);
+    }
+
+    /**
+     * Runs the passes on the method.
+     *
+     * @return true if a pass changed the method
+     */
+    public boolean run(IrMethod method) {
+        // each change starts a new version, a transformer clean at the current version would not change the method
+        int version = 0;
+        int[] cleanAt = new int[transformers.size()];
+        Arrays.fill(cleanAt, -1);
+        boolean[] changedPasses = new boolean[passes.size()];
+        boolean changed = false;
+        for (int i = 0; i < passes.size(); i++) {
+            Pass pass = passes.get(i);
+            if (pass.trigger >= 0 && !changedPasses[pass.trigger]) {
+                continue;
+            }
+            if (pass.requiredFeatures != IrMethod.F_ALL && (method.features & pass.requiredFeatures) == 0) {
+                pass.featureSkips.increment();
+                continue;
+            }
+            if (pass.precondition != null && !pass.precondition.test(method)) {
+                pass.preconditionSkips.increment();
+                continue;
+            }
+            if (cleanAt[pass.transformerIndex] == version) {
+                pass.unchangedSkips.increment();
+                continue;
+            }
+            long start = System.nanoTime();
+            boolean passChanged;
+            if (pass.transformer instanceof StatedTransformer) {
+                passChanged = ((StatedTransformer) pass.transformer).transformReportChanged(method);
+            } else {
+                pass.transformer.transform(method);
+                passChanged = true;
+            }
+            pass.nanos.add(System.nanoTime() - start);
+            pass.runs.increment();
+            if (passChanged) {
+                pass.changes.increment();
+                changedPasses[i] = true;
+                changed = true;
+                version++;
+                cleanAt[pass.transformerIndex] = -1;
+            } else {
+                cleanAt[pass.transformerIndex] = version;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * @return a table of the runs, changes, skips and time of each pass, in the order of the pipeline
+     */
+    public String getStatistics() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-20s %10s %10s %10s %10s %10s %10s%n", "pass", "runs", "changed", "skip-clean",
+                "skip-cond", "skip-feat", "ms"));
+        long total = 0;
+        for (Pass pass : passes) {
+            long nanos = pass.nanos.sum();
+            total += nanos;
+            sb.append(String.format("%-20s %10d %10d %10d %10d %10d %10.1f%n", pass.name, pass.runs.sum(),
+                    pass.changes.sum(), pass.unchangedSkips.sum(), pass.preconditionSkips.sum(),
+                    pass.featureSkips.sum(), nanos / 1e6));
+        }
+        sb.append(String.format("%-20s %65.1f%n", "total", total / 1e6));
+        return sb.toString();
+    }
+
+}
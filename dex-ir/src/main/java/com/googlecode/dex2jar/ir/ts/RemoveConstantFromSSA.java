@@ -144,6 +144,7 @@ public class RemoveConstantFromSSA extends StatedTransformer {
 
         }
 
+        final boolean[] replaced = {false};
         Cfg.travelMod(method.stmts, new Cfg.TravelCallBack() {
             @Override
             public Value onAssign(Local v, AssignStmt as) {
@@ -153,10 +154,14 @@ public class RemoveConstantFromSSA extends StatedTransformer {
             @Override
             public Value onUse(Local v) {
                 Value n = toReplace.get(v);
-                return n == null ? v : n.clone();
+                if (n == null) {
+                    return v;
+                }
+                replaced[0] = true;
+                return n.clone();
             }
         }, false);
-        return changed;
+        return changed || replaced[0];
     }
 
 }
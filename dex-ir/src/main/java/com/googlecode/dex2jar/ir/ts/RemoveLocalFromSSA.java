@@ -13,6 +13,7 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
@@ -55,7 +56,11 @@ public class RemoveLocalFromSSA extends StatedTransformer {
         return changed;
     }
 
-    private void replacePhi(List<LabelStmt> phiLabels, Map<Local, Local> toReplace, Set<Value> set) {
+    /**
+     * @return true if an operand of a phi is replaced or removed
+     */
+    private boolean replacePhi(List<LabelStmt> phiLabels, Map<Local, Local> toReplace, Set<Value> set) {
+        boolean changed = false;
         if (phiLabels != null) {
             for (LabelStmt labelStmt : phiLabels) {
                 for (AssignStmt phi : labelStmt.phis) {
@@ -64,16 +69,21 @@ public class RemoveLocalFromSSA extends StatedTransformer {
                         Value n = toReplace.get(op);
                         if (n != null) {
                             set.add(n);
+                            changed = true;
                         } else {
                             set.add(op);
                         }
                     }
                     set.remove(phi.getOp1());
+                    if (set.size() != ops.length) {
+                        changed = true;
+                    }
                     phi.getOp2().setOps(set.toArray(new Value[0]));
                     set.clear();
                 }
             }
         }
+        return changed;
     }
 
     static class PhiObject {
@@ -125,6 +135,7 @@ public class RemoveLocalFromSSA extends StatedTransformer {
                 if (labelStmt.phis.isEmpty()) {
                     labelStmt.phis = null;
                     itLabel.remove();
+                    changed = true;
                 }
             }
         }
@@ -177,6 +188,7 @@ public class RemoveLocalFromSSA extends StatedTransformer {
                 if (labelStmt.phis.isEmpty()) {
                     labelStmt.phis = null;
                     itLabel.remove();
+                    changed = true;
                 }
             }
         }
@@ -237,7 +249,8 @@ public class RemoveLocalFromSSA extends StatedTransformer {
             }
         }
         final Map<Local, Local> toReplace = new HashMap<>();
-        Set<Value> set = new HashSet<>();
+        // keep the order of the phi operands, so a run without a change leaves them as they are
+        Set<Value> set = new LinkedHashSet<>();
         boolean changed = true;
         while (changed) {
             changed = false;
@@ -245,11 +258,13 @@ public class RemoveLocalFromSSA extends StatedTransformer {
             if (removeLoopFromPhi(phiLabels, toReplace)) {
                 fixReplace(toReplace);
                 replacePhi(phiLabels, toReplace, set);
+                irChanged = true;
             }
 
             while (simplePhi(phiLabels, toReplace, set)) { // remove a = phi(b)
                 fixReplace(toReplace);
                 replacePhi(phiLabels, toReplace, set);
+                irChanged = true;
             }
             while (simpleAssign(phiLabels, assignStmtList, toReplace, method.stmts)) { // remove a=b
                 fixReplace(toReplace);
@@ -257,7 +272,9 @@ public class RemoveLocalFromSSA extends StatedTransformer {
                 changed = true;
                 irChanged = true;
             }
-            replacePhi(phiLabels, toReplace, set);
+            if (replacePhi(phiLabels, toReplace, set)) {
+                irChanged = true;
+            }
         }
 
         for (Local local : toReplace.keySet()) {
@@ -15,10 +15,10 @@ import com.googlecode.dex2jar.ir.ts.Cfg.TravelCallBack;
 import com.googlecode.dex2jar.ir.ts.an.AnalyzeValue;
 import com.googlecode.dex2jar.ir.ts.an.BaseAnalyze;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Queue;
 import java.util.Set;
 
 /**
@@ -27,7 +27,7 @@ import java.util.Set;
  * @author <a href="mailto:pxb1988@gmail.com">Panxiaobo</a>
  * @version $Rev$
  */
-public class SSATransformer implements Transformer {
+public class SSATransformer extends StatedTransformer {
 
     private void cleanTagsAndReIndex(IrMethod method) {
         int i = 0;
@@ -121,7 +121,7 @@ public class SSATransformer implements Transformer {
     }
 
     @Override
-    public void transform(final IrMethod method) {
+    public boolean transformReportChanged(final IrMethod method) {
 
         boolean needSSA = prepare(method);
         if (needSSA) {
@@ -135,6 +135,7 @@ public class SSATransformer implements Transformer {
 
         // 4. clean tags on Local
         cleanTagsAndReIndex(method);
+        return needSSA;
     }
 
     private boolean prepare(final IrMethod method) {
@@ -257,17 +258,17 @@ public class SSATransformer implements Transformer {
 
         @Override
         protected void analyzeValue() {
-            Set<SSAValue> set = markUsed();
+            markUsed();
+            for (SSAValue v0 : aValues) {
+                if (v0.used && v0.local == null) {
+                    v0.local = new Local(nextIndex++);
+                }
+            }
             aValues.clear();
             aValues = null;
             if (DEBUG) {
                 clearLsEmptyValueFromFrame();
             }
-            for (SSAValue v0 : set) {
-                if (v0.used && v0.local == null) {
-                    v0.local = new Local(nextIndex++);
-                }
-            }
         }
 
         protected void clearLsEmptyValueFromFrame() {
@@ -295,49 +296,62 @@ public class SSATransformer implements Transformer {
             Cfg.createCFG(this.method);
         }
 
-        protected Set<SSAValue> markUsed() {
-            Set<SSAValue> used = new HashSet<>(aValues.size() / 2);
-            Queue<SSAValue> q = new UniqueQueue<>();
-            q.addAll(aValues);
-            while (!q.isEmpty()) {
-                SSAValue v = q.poll();
+        /**
+         * marks the parents of the used values as used, each value is pushed at most once as it is pushed when it is
+         * found used
+         */
+        protected void markUsed() {
+            SSAValue[] stack = new SSAValue[aValues.size()];
+            int size = 0;
+            for (SSAValue v : aValues) {
                 if (v.used) {
-                    used.add(v);
-                    {
-                        SSAValue p = v.parent;
-                        if (p != null) {
-                            if (!p.used) {
-                                p.used = true;
-                                q.add(p);
-                            }
-                        }
-                    }
-                    if (v.otherParents != null) {
-                        for (SSAValue p : v.otherParents) {
-                            if (!p.used) {
-                                p.used = true;
-                                q.add(p);
-                            }
+                    stack[size++] = v;
+                }
+            }
+            while (size > 0) {
+                SSAValue v = stack[--size];
+                stack[size] = null;
+                SSAValue p = v.parent;
+                if (p != null && !p.used) {
+                    p.used = true;
+                    stack = push(stack, size++, p);
+                }
+                if (v.otherParents != null) {
+                    for (SSAValue op : v.otherParents) {
+                        if (!op.used) {
+                            op.used = true;
+                            stack = push(stack, size++, op);
                         }
                     }
-
                 }
             }
-            return used;
+        }
+
+        private static SSAValue[] push(SSAValue[] stack, int size, SSAValue v) {
+            if (size == stack.length) {
+                stack = Arrays.copyOf(stack, size * 2 + 1);
+            }
+            stack[size] = v;
+            return stack;
         }
 
         @Override
         public SSAValue[] merge(SSAValue[] frame, SSAValue[] distFrame, Stmt src, Stmt dist) {
             if (distFrame != null) {
+                if (dist.cfgFroms.size() < 2) {
+                    // another edge from src, the frame may be shared with src
+                    distFrame = distFrame.clone();
+                }
                 relationMerge(frame, dist, distFrame);
             } else {
                 if (dist.cfgFroms.size() > 1) { // detail mode
                     distFrame = newFrame();
                     relationMerge(frame, dist, distFrame);
-                } else if (needCopyFrame(src)) {
+                } else if (needCopyFrame(src) && isTmpFrame(frame)) {
                     distFrame = newFrame();
                     System.arraycopy(frame, 0, distFrame, 0, distFrame.length);
                 } else {
+                    // a single successor, or a frame no more written which the successors of src can share
                     distFrame = frame;
                 }
             }
@@ -12,4 +12,12 @@ public interface Transformer {
 
     void transform(IrMethod method);
 
+    /**
+     * @return the {@link IrMethod#features} the transformer works on, it does not change a method with none of them;
+     *         {@link IrMethod#F_ALL} if it works on any method
+     */
+    default int requiredFeatures() {
+        return IrMethod.F_ALL;
+    }
+
 }
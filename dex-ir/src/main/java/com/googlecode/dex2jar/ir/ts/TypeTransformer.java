@@ -39,12 +39,12 @@ import java.util.Set;
  *
  * @author Bob Pan
  */
-public class TypeTransformer implements Transformer {
+public class TypeTransformer extends StatedTransformer {
 
     private static final String[] POSSIBLE_INT_TYPES = new String[]{"B", "S", "C", "I"};
 
     @Override
-    public void transform(IrMethod irMethod) {
+    public boolean transformReportChanged(IrMethod irMethod) {
         TypeAnalyze ta = new TypeAnalyze(irMethod);
         List<TypeRef> refs = ta.analyze();
 
@@ -99,6 +99,7 @@ public class TypeTransformer implements Transformer {
             value.tag = null;
             ref.clear();
         }
+        return !refs.isEmpty();
     }
 
     enum Relation {
@@ -201,8 +202,17 @@ public class TypeTransformer implements Transformer {
 
         public Set<String> uses;
 
+        /**
+         * the parent in the union-find of the refs with the same type, null for the representative that holds the
+         * merged relations
+         */
         private TypeRef next;
 
+        /**
+         * the index in the refs of the analyze, the key of its worklist
+         */
+        private int id;
+
         public void merge(TypeRef other) {
             assert this.next == null;
             TypeRef a = this;
@@ -229,6 +239,9 @@ public class TypeTransformer implements Transformer {
             if (b.uses != null) {
                 if (a.uses == null) {
                     a.uses = b.uses;
+                } else if (a.uses.size() < b.uses.size()) {
+                    b.uses.addAll(a.uses);
+                    a.uses = b.uses;
                 } else {
                     a.uses.addAll(b.uses);
                 }
@@ -245,6 +258,11 @@ public class TypeTransformer implements Transformer {
                 if (av == null) {
                     merged = bv;
                     r.set(a, merged);
+                } else if (av.size() < bv.size()) {
+                    // add the smaller set to the larger, so a ref is copied O(log n) times over all merges
+                    merged = bv;
+                    merged.addAll(av);
+                    r.set(a, merged);
                 } else {
                     merged = av;
                     merged.addAll(bv);
@@ -260,8 +278,12 @@ public class TypeTransformer implements Transformer {
             while (x.next != null) {
                 x = x.next;
             }
-            if (x != this) {
-                this.next = x;
+            // path compression, later lookups from any ref on the path take one step
+            TypeRef p = this;
+            while (p.next != null && p.next != x) {
+                TypeRef next = p.next;
+                p.next = x;
+                p = next;
             }
             return x;
         }
@@ -390,12 +412,14 @@ public class TypeTransformer implements Transformer {
                 mergeArrayRelation(ref, Relation.R_arrayRoots);
             }
 
-            UniqueQueue<TypeRef> q = new UniqueQueue<>();
-            q.addAll(refs);
+            IntQueue q = new IntQueue(refs.size());
+            for (TypeRef ref : refs) {
+                q.add(ref.id);
+            }
             while (!q.isEmpty()) {
                 // 2. merge provided type to children. merge uses to parent. merge TypeClass to sameValues
                 while (!q.isEmpty()) {
-                    TypeRef ref = q.poll();
+                    TypeRef ref = refs.get(q.poll());
                     copyTypes(q, ref);
                 }
                 // 3. merge type from Array Roots to Array Values
@@ -410,7 +434,7 @@ public class TypeTransformer implements Transformer {
                             for (TypeRef p : ref.gArrayValues) {
                                 p = p.getReal();
                                 if (p.updateTypeClass(clz)) {
-                                    q.add(p);
+                                    q.add(p.id);
                                 }
                                 mergeTypeToArrayGetValue(ele, p, q);
                             }
@@ -419,10 +443,10 @@ public class TypeTransformer implements Transformer {
                             for (TypeRef p : ref.sArrayValues) {
                                 p = p.getReal();
                                 if (p.updateTypeClass(clz)) {
-                                    q.add(p);
+                                    q.add(p.id);
                                 }
                                 if (p.addUses(ele)) {
-                                    q.add(p);
+                                    q.add(p.id);
                                 }
                             }
                         }
@@ -442,29 +466,29 @@ public class TypeTransformer implements Transformer {
             }
         }
 
-        private static void mergeTypeToArrayGetValue(String type, TypeRef target, UniqueQueue<TypeRef> q) {
+        private static void mergeTypeToArrayGetValue(String type, TypeRef target, IntQueue q) {
             target = target.getReal();
             if (target.provideDesc == null) {
                 target.provideDesc = type;
-                q.add(target);
+                q.add(target.id);
             } else {
                 String mergedType = mergeTypeEx(type, target.provideDesc);
                 if (!mergedType.equals(target.provideDesc)) {
                     target.provideDesc = mergedType;
-                    q.add(target);
+                    q.add(target.id);
                 }
             }
         }
 
-        private static void mergeTypeToSubRef(String type, TypeRef target, UniqueQueue<TypeRef> q) {
+        private static void mergeTypeToSubRef(String type, TypeRef target, IntQueue q) {
             if (target.provideDesc == null) {
                 target.provideDesc = type;
-                q.add(target);
+                q.add(target.id);
             } else {
                 String mergedType = mergeProviderType(type, target.provideDesc);
                 if (!mergedType.equals(target.provideDesc)) {
                     target.provideDesc = mergedType;
-                    q.add(target);
+                    q.add(target.id);
                 }
             }
         }
@@ -516,7 +540,7 @@ public class TypeTransformer implements Transformer {
             }
         }
 
-        private void copyTypes(UniqueQueue<TypeRef> q, TypeRef ref) {
+        private void copyTypes(IntQueue q, TypeRef ref) {
             ref = ref.getReal();
             TypeClass clz = ref.clz;
 
@@ -541,11 +565,11 @@ public class TypeTransformer implements Transformer {
                 for (TypeRef p : ref.parents) {
                     p = p.getReal();
                     if (p.updateTypeClass(clz)) {
-                        q.add(p);
+                        q.add(p.id);
                     }
                     if (ref.uses != null) {
                         if (p.addAllUses(ref.uses)) {
-                            q.add(p);
+                            q.add(p.id);
                         }
                     }
                 }
@@ -554,7 +578,7 @@ public class TypeTransformer implements Transformer {
                 for (TypeRef p : ref.children) {
                     p = p.getReal();
                     if (p.updateTypeClass(clz)) {
-                        q.add(p);
+                        q.add(p.id);
                     }
 
                     if (provideDesc != null) {
@@ -566,7 +590,7 @@ public class TypeTransformer implements Transformer {
                 for (TypeRef p : ref.sameValues) {
                     p = p.getReal();
                     if (p.updateTypeClass(clz)) {
-                        q.add(p);
+                        q.add(p.id);
                     }
                 }
             }
@@ -1006,6 +1030,7 @@ public class TypeTransformer implements Transformer {
             TypeRef typeRef;
             if (!(object instanceof TypeRef)) {
                 typeRef = new TypeRef(v);
+                typeRef.id = refs.size();
                 refs.add(typeRef);
                 v.tag = typeRef;
             } else {
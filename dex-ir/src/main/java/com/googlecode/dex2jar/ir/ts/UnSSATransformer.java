@@ -14,14 +14,15 @@ import com.googlecode.dex2jar.ir.stmt.StmtList;
 import com.googlecode.dex2jar.ir.stmt.Stmts;
 import com.googlecode.dex2jar.ir.ts.an.AnalyzeValue;
 import com.googlecode.dex2jar.ir.ts.an.BaseAnalyze;
+import com.googlecode.dex2jar.ir.ts.an.BlockLiveAnalyze;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Queue;
 import java.util.Set;
 
 /**
@@ -31,7 +32,7 @@ import java.util.Set;
  *
  * @author bob
  */
-public class UnSSATransformer implements Transformer {
+public class UnSSATransformer extends StatedTransformer {
 
     private static final boolean DEBUG = false;
 
@@ -237,9 +238,9 @@ public class UnSSATransformer implements Transformer {
     }
 
     @Override
-    public void transform(IrMethod method) {
+    public boolean transformReportChanged(IrMethod method) {
         if (method.phiLabels == null || method.phiLabels.isEmpty()) {
-            return;
+            return false;
         }
 
         // fix issue in github 186
@@ -290,6 +291,7 @@ public class UnSSATransformer implements Transformer {
             labelStmt.phis = null;
         }
         method.phiLabels = null;
+        return true;
     }
 
     private void genRegGraph(IrMethod method, LiveA liveA) {
@@ -305,7 +307,7 @@ public class UnSSATransformer implements Transformer {
                 Set<Integer> excludeIdx = new HashSet<>();
                 Cfg.collectTos(stmt, tos);
                 for (Stmt target : tos) {
-                    LiveV[] frame = (LiveV[]) target.frame;
+                    LiveV[] frame = liveA.frameOf(target);
                     if (frame == null) {
                         continue;
                     }
@@ -361,17 +363,128 @@ public class UnSSATransformer implements Transformer {
         }
     }
 
+    /**
+     * The frames give the hops of the values, to pick the operand of each phi on each edge. Which values are used is
+     * then solved by a {@link BlockLiveAnalyze}, with the picked operands read on the edges.
+     * <p>
+     * The statements linked by {@link Cfg#isFallThrough(Stmt)} form runs, the frames are only built at the start and
+     * at the end of a run. The statements inside a run share the values of the run, and their frames are replaced by
+     * the bits of their used locals once the liveness is solved, see {@link #frameOf(Stmt)}.
+     */
     protected static class LiveA extends BaseAnalyze<LiveV> {
 
-        static Comparator<LiveV> sortByHopsASC = Comparator.comparingInt(arg0 -> arg0.hops);
+        /**
+         * the values of a run are the locals of their index, see {@link #isLocalOfIndex()}
+         */
+        private boolean sparse;
+
+        private Local[] locals;
+
+        /**
+         * the position of the current statement in its run
+         */
+        private int runPosition;
+
+        /**
+         * the position in the run where the value of each index was assigned, 0 for the values of the start
+         */
+        private int[] enteredAt;
+
+        /**
+         * the phi operands read on the edges, the values are only marked once the liveness is solved
+         */
+        private BlockLiveAnalyze liveness;
+
+        /**
+         * the last statement executed, the merges into the handlers of a statement come before it is executed
+         */
+        private Stmt executed;
+
+        private LiveV[] runFrame;
+
+        private LiveV[] runValues;
 
         public LiveA(IrMethod method) {
             super(method);
         }
 
+        @Override
+        protected void init() {
+            super.init();
+            locals = method.locals.toArray(new Local[0]);
+            sparse = isLocalOfIndex();
+            enteredAt = new int[localSize];
+            liveness = new BlockLiveAnalyze(method, localSize);
+        }
+
+        /**
+         * @return if each local assigned is the local of its index in {@link IrMethod#locals}, so a frame rebuilt from
+         * bits has the locals of the frame it replaces
+         */
+        private boolean isLocalOfIndex() {
+            for (Stmt p = method.stmts.getFirst(); p != null; p = p.getNext()) {
+                if ((p.st == ST.ASSIGN || p.st == ST.IDENTITY) && p.getOp1().vt == VT.LOCAL) {
+                    if (!isLocalOfIndex((Local) p.getOp1())) {
+                        return false;
+                    }
+                }
+            }
+            if (method.phiLabels != null) {
+                for (LabelStmt labelStmt : method.phiLabels) {
+                    if (labelStmt.phis != null) {
+                        for (AssignStmt phi : labelStmt.phis) {
+                            if (!isLocalOfIndex((Local) phi.getOp1())) {
+                                return false;
+                            }
+                        }
+                    }
+                }
+            }
+            return true;
+        }
+
+        private boolean isLocalOfIndex(Local local) {
+            return local.lsIndex >= 0 && local.lsIndex < locals.length && locals[local.lsIndex] == local;
+        }
+
+        private static boolean isInRun(Stmt stmt) {
+            Stmt pre = stmt.getPre();
+            return pre != null && Cfg.isFallThrough(pre) && Cfg.isFallThrough(stmt);
+        }
+
+        @Override
+        public LiveV[] exec(LiveV[] frame, Stmt stmt) {
+            executed = stmt;
+            if (sparse) {
+                Stmt pre = stmt.getPre();
+                if (pre != null && Cfg.isFallThrough(pre)) {
+                    runPosition++;
+                } else {
+                    runPosition = 0;
+                    Arrays.fill(enteredAt, 0);
+                }
+            }
+            return super.exec(frame, stmt);
+        }
+
+        @Override
+        protected void afterExec(LiveV[] frame, Stmt stmt) {
+            if (sparse && isInRun(stmt)) {
+                // the frame is shared, the statement gets its bits in markUsed
+                setFrame(stmt, null);
+            }
+        }
+
         @Override
         protected void analyzeValue() {
-            markUsed();
+            aValues = null;
+            liveness.analyze();
+            BlockCfg cfg = liveness.getCfg();
+            for (int b = 0; b < cfg.size(); b++) {
+                if (cfg.isReachable(b)) {
+                    liveness.walk(b, this::markUsed);
+                }
+            }
 
             if (UnSSATransformer.DEBUG) {
                 clearUnUsedFromFrame();
@@ -379,10 +492,59 @@ public class UnSSATransformer implements Transformer {
 
         }
 
+        /**
+         * marks the values of the frame live before the statement, a statement inside a run gets the bits instead
+         */
+        private void markUsed(Stmt stmt, long[] live) {
+            Object frame = stmt.frame;
+            if (frame instanceof LiveV[]) {
+                LiveV[] values = (LiveV[]) frame;
+                for (int i = 0; i < values.length; i++) {
+                    LiveV v = values[i];
+                    if (v != null) {
+                        v.used = BlockLiveAnalyze.isLive(live, i);
+                    }
+                }
+            } else if (frame == null && sparse && stmt.visited && isInRun(stmt)) {
+                stmt.frame = live.clone();
+            }
+        }
+
+        /**
+         * @return the frame of the statement, null if it is not visited. The frame of a statement inside a run is
+         * rebuilt with its used values only, in an array reused by the next call
+         */
+        LiveV[] frameOf(Stmt stmt) {
+            Object frame = stmt.frame;
+            if (!(frame instanceof long[])) {
+                return (LiveV[]) frame;
+            }
+            long[] live = (long[]) frame;
+            if (runFrame == null) {
+                runFrame = newFrame();
+                runValues = newFrame();
+            }
+            for (int i = 0; i < localSize; i++) {
+                if ((live[i >>> 6] & (1L << i)) != 0) {
+                    LiveV v = runValues[i];
+                    if (v == null) {
+                        v = new LiveV();
+                        v.local = locals[i];
+                        v.used = true;
+                        runValues[i] = v;
+                    }
+                    runFrame[i] = v;
+                } else {
+                    runFrame[i] = null;
+                }
+            }
+            return runFrame;
+        }
+
         protected void clearUnUsedFromFrame() {
             for (Stmt p = method.stmts.getFirst(); p != null; p = p.getNext()) {
-                LiveV[] frame = (LiveV[]) p.frame;
-                if (frame != null) {
+                if (p.frame instanceof LiveV[]) {
+                    LiveV[] frame = (LiveV[]) p.frame;
                     for (int i = 0; i < frame.length; i++) {
                         LiveV r = frame[i];
                         if (r != null) {
@@ -395,50 +557,12 @@ public class UnSSATransformer implements Transformer {
             }
         }
 
-        protected Set<LiveV> markUsed() {
-            Set<LiveV> used = new HashSet<>(aValues.size() / 2);
-            Queue<LiveV> q = new UniqueQueue<>();
-            q.addAll(aValues);
-
-            while (!q.isEmpty()) {
-                LiveV v = q.poll();
-                if (v.used) {
-                    if (used.contains(v)) {
-                        continue;
-                    }
-                    used.add(v);
-                    {
-                        LiveV parent = v.parent;
-                        if (parent != null && !parent.used) {
-                            parent.used = true;
-                            q.add(parent);
-                        }
-                    }
-                    {
-                        List<LiveV> otherParent = v.otherParents;
-                        if (otherParent != null && !otherParent.isEmpty()) {
-                            for (LiveV parent : otherParent) {
-                                if (parent != null && !parent.used) {
-                                    parent.used = true;
-                                    q.add(parent);
-                                }
-                            }
-                            v.otherParents = null;
-                        }
-                    }
-                }
-            }
-            for (LiveV v : aValues) {
-                v.parent = null;
-            }
-            aValues = null;
-
-            return used;
-        }
-
-        @SuppressWarnings({"unchecked", "rawtypes"})
         @Override
         public LiveV[] merge(LiveV[] srcFrame, LiveV[] distFrame, Stmt src, Stmt dist) {
+            boolean inRun = sparse && Cfg.isFallThrough(src);
+            if (inRun && Cfg.isFallThrough(dist)) {
+                return srcFrame; // dist is executed right after src, with the values of src
+            }
 
             Map<Integer, AssignStmt> phiLives = new HashMap<>();
             if (dist.st == ST.LABEL) {
@@ -465,33 +589,18 @@ public class UnSSATransformer implements Transformer {
                     LiveV srcV = srcFrame[i];
                     if (srcV != null) {
                         LiveV distV = newValue();
-                        aValues.add(distV);
-                        distV.parent = srcV;
                         distV.hops = srcV.hops + 1;
+                        if (inRun) { // the value is shared since it joined the run
+                            distV.hops += runPosition - enteredAt[i];
+                        }
                         distV.local = srcV.local;
                         distFrame[i] = distV;
                     }
                 }
             }
 
-            if (!firstMerge) {
-                // skip merge phi
-                for (int i = 0; i < distFrame.length; i++) {
-                    if (phiLives.containsKey(i)) {
-                        continue;
-                    }
-                    LiveV srcV = srcFrame[i];
-                    LiveV distV = distFrame[i];
-                    if (srcV != null && distV != null) {
-                        if (distV.otherParents == null) {
-                            distV.otherParents = new ArrayList(5);
-                        }
-                        distV.otherParents.add(srcV);
-                    }
-                }
-            }
-
             // deal with phi
+            int srcBlock = phiLives.isEmpty() ? -1 : liveness.getCfg().blockOf(src);
             for (AssignStmt phiAssignStmt : phiLives.values()) {
                 Local phiLocal = (Local) phiAssignStmt.getOp1();
 
@@ -505,25 +614,30 @@ public class UnSSATransformer implements Transformer {
                     distValue = distFrame[phiLocal.lsIndex];
                 }
 
-                List<LiveV> liveVs = new ArrayList();
+                // the indexes of the values
+                List<Integer> liveVs = new ArrayList<>();
 
                 LiveV possiblePhiLocal = srcFrame[phiLocal.lsIndex];
                 if (possiblePhiLocal != null) {
-                    liveVs.add(possiblePhiLocal);
+                    liveVs.add(phiLocal.lsIndex);
                 }
 
                 for (Value p0 : phiAssignStmt.getOp2().getOps()) {
                     Local srcLocal = (Local) p0;
                     LiveV s = srcFrame[srcLocal.lsIndex];
                     if (s != null) {
-                        liveVs.add(s);
+                        liveVs.add(srcLocal.lsIndex);
                     }
                 }
-                liveVs.sort(sortByHopsASC);
-                LiveV a = liveVs.get(0); // this value assign to
+                liveVs.sort(Comparator.comparingInt(i -> srcFrame[i].hops));
+                int a = liveVs.get(0); // this value assign to
                 // phiLocal in srcFrame
-                a.used = true;
-                distValue.stmt2regMap.put(src, a.local);
+                if (executed == src) {
+                    liveness.addExitUse(srcBlock, a);
+                } else { // the frame before src, into a handler
+                    liveness.addThrowUse(srcBlock, a);
+                }
+                distValue.stmt2regMap.put(src, srcFrame[a].local);
             }
             return distFrame;
         }
@@ -541,6 +655,7 @@ public class UnSSATransformer implements Transformer {
         @Override
         protected LiveV onAssignLocal(Local local, Value value) {
             LiveV v = super.onAssignLocal(local, value);
+            enteredAt[local.lsIndex] = runPosition;
             v.local = local;
             v.used = true;
             return v;
@@ -548,7 +663,7 @@ public class UnSSATransformer implements Transformer {
 
         @Override
         protected void onUseLocal(LiveV aValue, Local local) {
-            aValue.used = true;
+            aValue.used = true; // fail on a local not assigned
         }
 
     }
@@ -559,12 +674,8 @@ public class UnSSATransformer implements Transformer {
 
         public Local local;
 
-        public LiveV parent;
-
         public boolean used;
 
-        public List<LiveV> otherParents;
-
         /**
          * for a Phi local, record where the this assigned from, for
          *
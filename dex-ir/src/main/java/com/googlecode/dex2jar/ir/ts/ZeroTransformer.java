@@ -47,6 +47,11 @@ import java.util.List;
  */
 public class ZeroTransformer extends StatedTransformer {
 
+    @Override
+    public int requiredFeatures() {
+        return IrMethod.F_CONST_ZERO | IrMethod.F_CONST_ONE;
+    }
+
     @Override
     public boolean transformReportChanged(IrMethod method) {
         boolean changed = false;
@@ -84,6 +84,15 @@ public abstract class BaseAnalyze<T extends AnalyzeValue> implements FrameVisito
         return frame;
     }
 
+    /**
+     * @return if the frame is the one {@link #onAssign(Local, AssignStmt)} writes to. It is overwritten by the next
+     * assignment, so it has to be copied to be kept, while the other frames are not written once built and can be
+     * shared between statements.
+     */
+    protected boolean isTmpFrame(T[] frame) {
+        return frame == tmpFrame;
+    }
+
     protected T getFromFrame(int idx) {
         return currentFrame[idx];
     }
@@ -161,8 +170,8 @@ public abstract class BaseAnalyze<T extends AnalyzeValue> implements FrameVisito
     public String toString() {
         StringBuilder sb = new StringBuilder();
         for (Stmt stmt = method.stmts.getFirst(); stmt != null; stmt = stmt.getNext()) {
-            T[] frame = (T[]) stmt.frame;
-            if (frame != null) {
+            if (stmt.frame instanceof AnalyzeValue[]) {
+                T[] frame = (T[]) stmt.frame;
                 for (T p : frame) {
                     if (p == null) {
                         sb.append('.');
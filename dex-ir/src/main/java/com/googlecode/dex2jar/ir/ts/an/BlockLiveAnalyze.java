@@ -0,0 +1,369 @@
+package com.googlecode.dex2jar.ir.ts.an;
+
+import com.googlecode.dex2jar.ir.IrMethod;
+import com.googlecode.dex2jar.ir.expr.Local;
+import com.googlecode.dex2jar.ir.stmt.AssignStmt;
+import com.googlecode.dex2jar.ir.stmt.BaseSwitchStmt;
+import com.googlecode.dex2jar.ir.stmt.JumpStmt;
+import com.googlecode.dex2jar.ir.stmt.LabelStmt;
+import com.googlecode.dex2jar.ir.stmt.Stmt;
+import com.googlecode.dex2jar.ir.stmt.Stmt.ST;
+import com.googlecode.dex2jar.ir.ts.BlockCfg;
+import com.googlecode.dex2jar.ir.ts.Cfg;
+import com.googlecode.dex2jar.ir.ts.Cfg.TravelCallBack;
+import com.googlecode.dex2jar.ir.ts.IntQueue;
+import java.util.Arrays;
+
+/**
+ * The live locals of a method, solved backward over the blocks of its {@link BlockCfg} with a {@code long[]} bitset per
+ * block instead of a value per local and statement.
+ * <p>
+ * A local is identified by its {@link Local#lsIndex}, which must be below the local size. The phis of a label assign
+ * their locals on the edges into the label: the phi locals are live at the label but not before it, and the operands
+ * are not read at the label, the caller adds the operand read on each edge with {@link #addExitUse(int, int)} or
+ * {@link #addThrowUse(int, int)}. A handler sees the locals live before the last statement of the blocks throwing into
+ * it, as the statement throws before its assignment.
+ * <p>
+ * The blocks are solved with a worklist seeded in postorder, only the reachable blocks are solved and the others have
+ * no live local.
+ */
+public class BlockLiveAnalyze {
+
+    public interface LiveVisitor {
+
+        /**
+         * @param live the locals live before the statement, reused for the next statement
+         */
+        void onVisit(Stmt stmt, long[] live);
+
+    }
+
+    protected final IrMethod method;
+
+    protected final BlockCfg cfg;
+
+    protected final int localSize;
+
+    private final int words;
+
+    /**
+     * the live locals at the start of each block, {@link #words} per block
+     */
+    private long[] liveIns;
+
+    /**
+     * the locals read and assigned by the statements of each block but the last, as {@code gen | (x & ~kill)}
+     */
+    private long[] gens;
+
+    private long[] kills;
+
+    private long[] lastUses;
+
+    private int[] lastDefs;
+
+    /**
+     * the phi locals of the label starting each block, null if there is no phi
+     */
+    private long[] entryKills;
+
+    private long[] exitUses;
+
+    private long[] throwUses;
+
+    /**
+     * the successors of each block through a jump, a switch or the next statement
+     */
+    private int[] normalStarts;
+
+    private int[] normals;
+
+    public BlockLiveAnalyze(IrMethod method, int localSize) {
+        this.method = method;
+        this.cfg = BlockCfg.of(method);
+        this.localSize = localSize;
+        this.words = (localSize + 63) >>> 6;
+    }
+
+    public BlockCfg getCfg() {
+        return cfg;
+    }
+
+    public static boolean isLive(long[] live, int local) {
+        return (live[local >>> 6] & (1L << local)) != 0;
+    }
+
+    private static void set(long[] bits, int offset, int local) {
+        bits[offset + (local >>> 6)] |= 1L << local;
+    }
+
+    /**
+     * the local is read after the last statement of the block, on its normal edges, like a phi operand
+     */
+    public void addExitUse(int block, int local) {
+        if (exitUses == null) {
+            exitUses = new long[cfg.size() * words];
+        }
+        set(exitUses, block * words, local);
+    }
+
+    /**
+     * the local is read before the last statement of the block, on its edges into handlers
+     */
+    public void addThrowUse(int block, int local) {
+        if (throwUses == null) {
+            throwUses = new long[cfg.size() * words];
+        }
+        set(throwUses, block * words, local);
+    }
+
+    public void analyze() {
+        init();
+        solve();
+    }
+
+    private void init() {
+        int size = cfg.size();
+        liveIns = new long[size * words];
+        gens = new long[size * words];
+        kills = new long[size * words];
+        lastUses = new long[size * words];
+        lastDefs = new int[size];
+        normalStarts = new int[size + 1];
+        normals = new int[size];
+        int normalCount = 0;
+        long[] uses = new long[words];
+        int[] def = new int[1];
+        TravelCallBack tcb = useDefCallBack(uses, def);
+        for (int b = 0; b < size; b++) {
+            int offset = b * words;
+            Stmt first = cfg.getFirst(b);
+            Stmt last = cfg.getLast(b);
+
+            travel(last, tcb, uses, def);
+            System.arraycopy(uses, 0, lastUses, offset, words);
+            lastDefs[b] = def[0];
+            for (Stmt p = last; p != first; ) {
+                p = p.getPre();
+                travel(p, tcb, uses, def);
+                for (int i = 0; i < words; i++) {
+                    gens[offset + i] = uses[i] | gens[offset + i];
+                }
+                if (def[0] >= 0) {
+                    int w = offset + (def[0] >>> 6);
+                    long bit = 1L << def[0];
+                    if ((uses[def[0] >>> 6] & bit) == 0) {
+                        gens[w] &= ~bit;
+                    }
+                    kills[w] |= bit;
+                }
+            }
+
+            if (first.st == ST.LABEL && ((LabelStmt) first).phis != null) {
+                if (entryKills == null) {
+                    entryKills = new long[size * words];
+                }
+                for (AssignStmt phi : ((LabelStmt) first).phis) {
+                    int local = ((Local) phi.getOp1()).lsIndex;
+                    if (local >= 0 && local < localSize) {
+                        set(entryKills, offset, local);
+                    }
+                }
+            }
+
+            normalStarts[b] = normalCount;
+            for (int i = 0; i < cfg.succCount(b); i++) {
+                int s = cfg.succ(b, i);
+                if (isNormalTarget(last, cfg.getFirst(s)) || !isHandler(b, s)) {
+                    if (normalCount == normals.length) {
+                        normals = Arrays.copyOf(normals, normalCount * 2);
+                    }
+                    normals[normalCount++] = s;
+                }
+            }
+        }
+        normalStarts[size] = normalCount;
+    }
+
+    private boolean isHandler(int block, int s) {
+        for (int i = 0; i < cfg.handlerCount(block); i++) {
+            if (cfg.handler(block, i) == s) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isNormalTarget(Stmt last, Stmt target) {
+        if (last.st.canContinue() && last.getNext() == target) {
+            return true;
+        }
+        if (last.st.canBranch() && ((JumpStmt) last).getTarget() == target) {
+            return true;
+        }
+        if (last.st.canSwitch()) {
+            BaseSwitchStmt bss = (BaseSwitchStmt) last;
+            if (bss.defaultTarget == target) {
+                return true;
+            }
+            for (LabelStmt t : bss.targets) {
+                if (t == target) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private TravelCallBack useDefCallBack(long[] uses, int[] def) {
+        return new TravelCallBack() {
+            @Override
+            public Local onAssign(Local local, AssignStmt as) {
+                if (local.lsIndex >= 0 && local.lsIndex < localSize) {
+                    def[0] = local.lsIndex;
+                }
+                return local;
+            }
+
+            @Override
+            public Local onUse(Local local) {
+                if (local.lsIndex >= 0 && local.lsIndex < localSize) {
+                    set(uses, 0, local.lsIndex);
+                }
+                return local;
+            }
+        };
+    }
+
+    private static void travel(Stmt stmt, TravelCallBack tcb, long[] uses, int[] def) {
+        Arrays.fill(uses, 0);
+        def[0] = -1;
+        Cfg.travel(stmt, tcb, false);
+    }
+
+    private void solve() {
+        int[] order = cfg.reversePostorder();
+        IntQueue queue = new IntQueue(cfg.size());
+        for (int i = order.length - 1; i >= 0; i--) {
+            queue.add(order[i]);
+        }
+        long[] in = new long[words];
+        long[] out = new long[words];
+        while (!queue.isEmpty()) {
+            int b = queue.poll();
+            liveBefore(b, out, in);
+            int offset = b * words;
+            boolean changed = false;
+            for (int i = 0; i < words; i++) {
+                long v = gens[offset + i] | (in[i] & ~kills[offset + i]);
+                if (v != liveIns[offset + i]) {
+                    liveIns[offset + i] = v;
+                    changed = true;
+                }
+            }
+            if (changed) {
+                for (int i = 0; i < cfg.predCount(b); i++) {
+                    int p = cfg.pred(b, i);
+                    if (cfg.isReachable(p)) {
+                        queue.add(p);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * computes the locals live before the last statement of the block
+     *
+     * @param out a buffer, the locals live after it on its normal edges
+     */
+    private void liveBefore(int block, long[] out, long[] live) {
+        int offset = block * words;
+        if (exitUses != null) {
+            System.arraycopy(exitUses, offset, out, 0, words);
+        } else {
+            Arrays.fill(out, 0);
+        }
+        for (int i = normalStarts[block]; i < normalStarts[block + 1]; i++) {
+            orLiveIn(normals[i], out);
+        }
+        int def = lastDefs[block];
+        if (def >= 0) {
+            out[def >>> 6] &= ~(1L << def);
+        }
+        if (throwUses != null) {
+            System.arraycopy(throwUses, offset, live, 0, words);
+        } else {
+            Arrays.fill(live, 0);
+        }
+        for (int i = 0; i < cfg.handlerCount(block); i++) {
+            orLiveIn(cfg.handler(block, i), live);
+        }
+        for (int i = 0; i < words; i++) {
+            live[i] |= out[i] | lastUses[offset + i];
+        }
+    }
+
+    /**
+     * adds the locals live at the start of the block, less the phi locals of its label, to live
+     */
+    private void orLiveIn(int block, long[] live) {
+        int offset = block * words;
+        if (entryKills == null) {
+            for (int i = 0; i < words; i++) {
+                live[i] |= liveIns[offset + i];
+            }
+        } else {
+            for (int i = 0; i < words; i++) {
+                live[i] |= liveIns[offset + i] & ~entryKills[offset + i];
+            }
+        }
+    }
+
+    /**
+     * adds the locals live at the start of the block to live, with the phi locals of its label
+     */
+    public void addLiveIn(int block, long[] live) {
+        int offset = block * words;
+        for (int i = 0; i < words; i++) {
+            live[i] |= liveIns[offset + i];
+        }
+    }
+
+    public boolean isLiveIn(int block, int local) {
+        return (liveIns[block * words + (local >>> 6)] & (1L << local)) != 0;
+    }
+
+    /**
+     * @return a new bitset, large enough for the locals
+     */
+    public long[] newLive() {
+        return new long[words];
+    }
+
+    /**
+     * Visits the statements of a reachable block from the last to the first, with the locals live before each.
+     */
+    public void walk(int block, LiveVisitor visitor) {
+        long[] live = new long[words];
+        long[] uses = new long[words];
+        int[] def = new int[1];
+        TravelCallBack tcb = useDefCallBack(uses, def);
+        liveBefore(block, new long[words], live);
+        Stmt first = cfg.getFirst(block);
+        Stmt p = cfg.getLast(block);
+        visitor.onVisit(p, live);
+        while (p != first) {
+            p = p.getPre();
+            travel(p, tcb, uses, def);
+            if (def[0] >= 0) {
+                live[def[0] >>> 6] &= ~(1L << def[0]);
+            }
+            for (int i = 0; i < words; i++) {
+                live[i] |= uses[i];
+            }
+            visitor.onVisit(p, live);
+        }
+    }
+
+}
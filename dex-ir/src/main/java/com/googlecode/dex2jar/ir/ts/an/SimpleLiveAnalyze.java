@@ -11,6 +11,13 @@ import java.util.List;
 import java.util.Queue;
 import java.util.Set;
 
+/**
+ * The live values of a method, as a {@link SimpleLiveValue} per local and statement.
+ *
+ * @deprecated not used by dex2jar anymore, use {@link BlockLiveAnalyze}, which solves the live locals over the blocks
+ * of the method with a bitset per block
+ */
+@Deprecated
 public class SimpleLiveAnalyze extends BaseAnalyze<SimpleLiveValue> {
 
     protected Set<SimpleLiveValue> markUsed() {
@@ -2,6 +2,10 @@ package com.googlecode.dex2jar.ir.ts.an;
 
 import java.util.List;
 
+/**
+ * @deprecated the value of {@link SimpleLiveAnalyze}, use {@link BlockLiveAnalyze}
+ */
+@Deprecated
 public class SimpleLiveValue implements AnalyzeValue {
 
     public boolean used = false;
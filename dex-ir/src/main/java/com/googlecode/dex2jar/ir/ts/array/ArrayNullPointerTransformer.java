@@ -17,7 +17,7 @@ import com.googlecode.dex2jar.ir.stmt.Stmt.E2Stmt;
 import com.googlecode.dex2jar.ir.stmt.Stmt.ST;
 import com.googlecode.dex2jar.ir.stmt.StmtList;
 import com.googlecode.dex2jar.ir.stmt.Stmts;
-import com.googlecode.dex2jar.ir.ts.Transformer;
+import com.googlecode.dex2jar.ir.ts.StatedTransformer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -38,20 +38,23 @@ import java.util.List;
  *
  * @author Panxiaobo
  */
-public class ArrayNullPointerTransformer implements Transformer {
+public class ArrayNullPointerTransformer extends StatedTransformer {
 
     @Override
-    public void transform(IrMethod irMethod) {
+    public boolean transformReportChanged(IrMethod irMethod) {
+        boolean changed = false;
         Stmt p = irMethod.stmts.getFirst();
         while (p != null) {
             if (arrayNPE(p)) {
                 Stmt q = p.getNext();
                 replaceNPE(irMethod.stmts, irMethod.locals, p);
+                changed = true;
                 p = q;
                 continue;
             }
             p = p.getNext();
         }
+        return changed;
     }
 
     private void replaceNPE(StmtList stmts, List<Local> locals, Stmt p) {
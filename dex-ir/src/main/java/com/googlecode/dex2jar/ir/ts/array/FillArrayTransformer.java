@@ -19,9 +19,9 @@ import java.lang.reflect.Array;
 import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
@@ -133,6 +133,11 @@ public class FillArrayTransformer extends StatedTransformer {
         System.out.println(m);
     }
 
+    @Override
+    public int requiredFeatures() {
+        return IrMethod.F_NEW_ARRAY;
+    }
+
     @Override
     public boolean transformReportChanged(IrMethod method) {
 
@@ -255,8 +260,8 @@ public class FillArrayTransformer extends StatedTransformer {
 
             // this method consumes too many memory, case 'java.lang.OutOfMemoryError: Java heap space', we have to cut
             // it
-            Map<Local, ArrayObject> keptInAll = new HashMap<>();
-            Map<Local, ArrayObject> keptInPart = new HashMap<>();
+            Map<Local, ArrayObject> keptInAll = new LinkedHashMap<>();
+            Map<Local, ArrayObject> keptInPart = new LinkedHashMap<>();
             List<Local> arrays = new ArrayList<>(max);
 
             Iterator<Map.Entry<Local, ArrayObject>> it = arraySizes.entrySet().iterator();
@@ -535,7 +540,8 @@ public class FillArrayTransformer extends StatedTransformer {
 
     private Map<Local, ArrayObject> searchForArrayObject(IrMethod method) {
 
-        final Map<Local, ArrayObject> arraySizes = new HashMap<>();
+        // the arrays are replaced in the order they are found
+        final Map<Local, ArrayObject> arraySizes = new LinkedHashMap<>();
         if (method.locals.isEmpty()) {
             return arraySizes;
         }
@@ -0,0 +1,106 @@
+package com.googlecode.dex2jar.ir.test;
+
+import com.googlecode.dex2jar.ir.IrMethod;
+import com.googlecode.dex2jar.ir.Trap;
+import com.googlecode.dex2jar.ir.expr.Local;
+import com.googlecode.dex2jar.ir.stmt.LabelStmt;
+import com.googlecode.dex2jar.ir.stmt.Stmt;
+import com.googlecode.dex2jar.ir.stmt.Stmts;
+import com.googlecode.dex2jar.ir.ts.BlockCfg;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+import static com.googlecode.dex2jar.ir.expr.Exprs.nField;
+import static com.googlecode.dex2jar.ir.expr.Exprs.nGt;
+import static com.googlecode.dex2jar.ir.expr.Exprs.nInt;
+import static com.googlecode.dex2jar.ir.expr.Exprs.nLocal;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BlockCfgTest {
+
+    @Test
+    public void test() {
+        IrMethod method = new IrMethod();
+        Local a = nLocal("a");
+        Local b = nLocal("b");
+        LabelStmt L1 = Stmts.nLabel();
+        LabelStmt L2 = Stmts.nLabel();
+        LabelStmt L3 = Stmts.nLabel();
+        LabelStmt L4 = Stmts.nLabel();
+        LabelStmt L5 = Stmts.nLabel();
+        method.stmts.add(Stmts.nAssign(a, nInt(1))); // B0
+        method.stmts.add(L1); // B1
+        Stmt get = Stmts.nAssign(b, nField(a, "La;", "f", "I")); // may throw into L4
+        method.stmts.add(get);
+        Stmt ifStmt = Stmts.nIf(nGt(b, nInt(0), "I"), L3); // B2
+        method.stmts.add(ifStmt);
+        method.stmts.add(L2); // B3
+        method.stmts.add(Stmts.nReturnVoid());
+        method.stmts.add(L3); // B4
+        method.stmts.add(Stmts.nReturn(b));
+        method.stmts.add(L4); // B5
+        method.stmts.add(Stmts.nReturnVoid());
+        method.stmts.add(L5); // B6, dead
+        method.stmts.add(Stmts.nReturnVoid());
+        method.traps.add(new Trap(L1, L2, new LabelStmt[]{L4}, new String[]{null}));
+
+        BlockCfg cfg = BlockCfg.of(method);
+        assertEquals(7, cfg.size());
+        assertEquals(1, cfg.blockOf(get));
+        assertSame(get, cfg.getLast(1));
+        assertEquals(2, cfg.getStmtCount(1));
+        assertEquals(Arrays.asList(1), succs(cfg, 0));
+        assertEquals(Arrays.asList(5, 2), succs(cfg, 1));
+        assertEquals(Arrays.asList(4, 3), succs(cfg, 2));
+        assertEquals(Arrays.asList(), succs(cfg, 3));
+        assertEquals(Arrays.asList(1), preds(cfg, 5));
+        assertEquals(Arrays.asList(2), preds(cfg, 4));
+
+        int[] rpo = cfg.reversePostorder();
+        assertEquals(6, rpo.length);
+        assertEquals(0, rpo[0]);
+        assertFalse(cfg.isReachable(6));
+        for (int block = 0; block < cfg.size(); block++) {
+            for (int i = 0; i < cfg.succCount(block); i++) {
+                int succ = cfg.succ(block, i);
+                if (cfg.isReachable(block) && succ != block) {
+                    assertTrue(cfg.rpoIndex(block) < cfg.rpoIndex(succ));
+                }
+            }
+        }
+        cfg.markVisited();
+        assertTrue(get.visited);
+        assertFalse(L5.visited);
+
+        assertSame(cfg, BlockCfg.of(method));
+        method.traps.clear();
+        BlockCfg noTrap = BlockCfg.of(method);
+        assertNotSame(cfg, noTrap);
+        assertEquals(Arrays.asList(3, 2), succs(noTrap, 1)); // the field get no longer ends B1
+        assertFalse(noTrap.isReachable(noTrap.blockOf(L4)));
+
+        method.stmts.remove(ifStmt);
+        BlockCfg noIf = BlockCfg.of(method);
+        assertNotSame(noTrap, noIf);
+        assertFalse(noIf.isReachable(noIf.blockOf(L3)));
+    }
+
+    private static List<Integer> succs(BlockCfg cfg, int block) {
+        List<Integer> succs = new ArrayList<>();
+        for (int i = 0; i < cfg.succCount(block); i++) {
+            succs.add(cfg.succ(block, i));
+        }
+        return succs;
+    }
+
+    private static List<Integer> preds(BlockCfg cfg, int block) {
+        List<Integer> preds = new ArrayList<>();
+        for (int i = 0; i < cfg.predCount(block); i++) {
+            preds.add(cfg.pred(block, i));
+        }
+        return preds;
+    }
+
+}
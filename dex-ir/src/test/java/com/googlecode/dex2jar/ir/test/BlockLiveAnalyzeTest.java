@@ -0,0 +1,120 @@
+package com.googlecode.dex2jar.ir.test;
+
+import com.googlecode.dex2jar.ir.IrMethod;
+import com.googlecode.dex2jar.ir.Trap;
+import com.googlecode.dex2jar.ir.expr.Local;
+import com.googlecode.dex2jar.ir.stmt.LabelStmt;
+import com.googlecode.dex2jar.ir.stmt.Stmt;
+import com.googlecode.dex2jar.ir.stmt.Stmts;
+import com.googlecode.dex2jar.ir.ts.BlockCfg;
+import com.googlecode.dex2jar.ir.ts.Cfg;
+import com.googlecode.dex2jar.ir.ts.an.BlockLiveAnalyze;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+import static com.googlecode.dex2jar.ir.expr.Exprs.nField;
+import static com.googlecode.dex2jar.ir.expr.Exprs.nGt;
+import static com.googlecode.dex2jar.ir.expr.Exprs.nInt;
+import static com.googlecode.dex2jar.ir.expr.Exprs.nLocal;
+import static com.googlecode.dex2jar.ir.expr.Exprs.nPhi;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BlockLiveAnalyzeTest {
+
+    @Test
+    public void testLoopAndHandler() {
+        IrMethod method = new IrMethod();
+        Local a = nLocal("a");
+        Local b = nLocal("b");
+        Local c = nLocal("c");
+        method.locals.addAll(Arrays.asList(a, b, c));
+        LabelStmt L1 = Stmts.nLabel();
+        LabelStmt L2 = Stmts.nLabel();
+        LabelStmt L3 = Stmts.nLabel();
+        LabelStmt L4 = Stmts.nLabel();
+        method.stmts.add(Stmts.nAssign(a, nInt(1))); // B0
+        method.stmts.add(Stmts.nAssign(c, nInt(2)));
+        method.stmts.add(L1); // B1
+        Stmt get = Stmts.nAssign(b, nField(a, "La;", "f", "I")); // may throw into L4
+        method.stmts.add(get);
+        method.stmts.add(Stmts.nIf(nGt(b, nInt(0), "I"), L3)); // B2
+        method.stmts.add(L2); // B3
+        method.stmts.add(Stmts.nAssign(a, b));
+        method.stmts.add(Stmts.nGoto(L1));
+        method.stmts.add(L3); // B4
+        method.stmts.add(Stmts.nReturn(a));
+        method.stmts.add(L4); // B5
+        method.stmts.add(Stmts.nReturn(c));
+        method.traps.add(new Trap(L1, L2, new LabelStmt[]{L4}, new String[]{null}));
+
+        BlockLiveAnalyze liveness = new BlockLiveAnalyze(method, Cfg.reIndexLocal(method));
+        liveness.analyze();
+        BlockCfg cfg = liveness.getCfg();
+        assertEquals(6, cfg.size());
+        assertEquals(Arrays.asList(), liveIn(liveness, method, 0));
+        // c is only read by the handler, around the loop
+        assertEquals(Arrays.asList(a, c), liveIn(liveness, method, 1));
+        assertEquals(Arrays.asList(a, b, c), liveIn(liveness, method, 2));
+        assertEquals(Arrays.asList(b, c), liveIn(liveness, method, 3));
+        assertEquals(Arrays.asList(a), liveIn(liveness, method, 4));
+        assertEquals(Arrays.asList(c), liveIn(liveness, method, 5));
+
+        Map<Stmt, List<Local>> before = walk(liveness, method, 1);
+        // b is assigned after the field get throws
+        assertEquals(Arrays.asList(a, c), before.get(get));
+        assertEquals(Arrays.asList(a, c), before.get(L1));
+    }
+
+    @Test
+    public void testPhi() {
+        IrMethod method = new IrMethod();
+        Local x = nLocal("x");
+        Local y = nLocal("y");
+        method.locals.addAll(Arrays.asList(x, y));
+        LabelStmt L1 = Stmts.nLabel();
+        Stmt goto1 = Stmts.nGoto(L1);
+        method.stmts.add(Stmts.nAssign(y, nInt(1))); // B0
+        method.stmts.add(goto1);
+        method.stmts.add(L1); // B1
+        method.stmts.add(Stmts.nReturn(x));
+        L1.phis = new ArrayList<>();
+        L1.phis.add(Stmts.nAssign(x, nPhi(y)));
+
+        BlockLiveAnalyze liveness = new BlockLiveAnalyze(method, Cfg.reIndexLocal(method));
+        liveness.addExitUse(0, y.lsIndex);
+        liveness.analyze();
+        // x is assigned on the edge into L1, y is read there
+        assertEquals(Arrays.asList(x), liveIn(liveness, method, 1));
+        assertEquals(Arrays.asList(), liveIn(liveness, method, 0));
+        assertEquals(Arrays.asList(y), walk(liveness, method, 0).get(goto1));
+    }
+
+    private static List<Local> liveIn(BlockLiveAnalyze liveness, IrMethod method, int block) {
+        List<Local> locals = new ArrayList<>();
+        for (Local local : method.locals) {
+            if (liveness.isLiveIn(block, local.lsIndex)) {
+                locals.add(local);
+            }
+        }
+        return locals;
+    }
+
+    private static Map<Stmt, List<Local>> walk(BlockLiveAnalyze liveness, IrMethod method, int block) {
+        Map<Stmt, List<Local>> before = new IdentityHashMap<>();
+        liveness.walk(block, (stmt, live) -> {
+            List<Local> locals = new ArrayList<>();
+            for (Local local : method.locals) {
+                if (BlockLiveAnalyze.isLive(live, local.lsIndex)) {
+                    locals.add(local);
+                }
+            }
+            before.put(stmt, locals);
+        });
+        return before;
+    }
+
+}
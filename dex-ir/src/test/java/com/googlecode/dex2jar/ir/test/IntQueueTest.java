@@ -0,0 +1,36 @@
+package com.googlecode.dex2jar.ir.test;
+
+import com.googlecode.dex2jar.ir.ts.IntQueue;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IntQueueTest {
+
+    @Test
+    public void test() {
+        IntQueue q = new IntQueue(70);
+        assertTrue(q.isEmpty());
+        assertEquals(-1, q.poll());
+        assertTrue(q.add(3));
+        assertTrue(q.add(69));
+        assertFalse(q.add(3));
+        assertTrue(q.contains(69));
+        assertEquals(3, q.poll());
+        assertTrue(q.add(3)); // polled, so it may be queued again
+        assertEquals(69, q.poll());
+        assertFalse(q.contains(69));
+        for (int i = 0; i < 70; i++) {
+            q.add(i); // wraps around the ring
+        }
+        assertEquals(70, q.size());
+        assertEquals(3, q.poll());
+        for (int i = 0; i < 70; i++) {
+            if (i != 3) {
+                assertEquals(i, q.poll());
+            }
+        }
+        assertTrue(q.isEmpty());
+    }
+
+}
@@ -0,0 +1,106 @@
+package com.googlecode.dex2jar.ir.test;
+
+import com.googlecode.dex2jar.ir.IrMethod;
+import com.googlecode.dex2jar.ir.ts.PassManager;
+import com.googlecode.dex2jar.ir.ts.StatedTransformer;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PassManagerTest {
+
+    /**
+     * changes the method the first {@code changes} times it runs
+     */
+    private static class Counting extends StatedTransformer {
+
+        int runs;
+
+        int changes;
+
+        Counting(int changes) {
+            this.changes = changes;
+        }
+
+        @Override
+        public boolean transformReportChanged(IrMethod method) {
+            runs++;
+            return changes-- > 0;
+        }
+
+    }
+
+    @Test
+    public void testSkipClean() {
+        Counting a = new Counting(0);
+        Counting b = new Counting(0);
+        PassManager passes = new PassManager()
+                .add("a", a)
+                .add("b", b)
+                .add("a", a) // nothing changed since the first run
+                .add("b", b);
+        assertFalse(passes.run(new IrMethod()));
+        assertEquals(1, a.runs);
+        assertEquals(1, b.runs);
+
+        Counting c = new Counting(1);
+        passes = new PassManager()
+                .add("a", a)
+                .add("c", c)
+                .add("a", a) // c changed the method
+                .add("c", c);
+        assertTrue(passes.run(new IrMethod()));
+        assertEquals(3, a.runs);
+        assertEquals(2, c.runs);
+        assertTrue(passes.getStatistics().startsWith("pass"));
+    }
+
+    @Test
+    public void testConditions() {
+        Counting trigger = new Counting(0);
+        Counting after = new Counting(0);
+        Counting noTraps = new Counting(0);
+        PassManager passes = new PassManager()
+                .add("trigger", trigger)
+                .add("after", after).ifChanged("trigger")
+                .add("traps", noTraps).when(m -> !m.traps.isEmpty());
+        passes.run(new IrMethod());
+        assertEquals(1, trigger.runs);
+        assertEquals(0, after.runs);
+        assertEquals(0, noTraps.runs);
+
+        trigger.changes = 1;
+        passes.run(new IrMethod());
+        assertEquals(1, after.runs);
+
+        assertThrows(IllegalArgumentException.class, () -> new PassManager().add("x", after).ifChanged("y"));
+    }
+
+    @Test
+    public void testFeatures() {
+        Counting any = new Counting(0);
+        Counting casts = new Counting(0) {
+            @Override
+            public int requiredFeatures() {
+                return IrMethod.F_CHECK_CAST | IrMethod.F_NEW_ARRAY;
+            }
+        };
+        PassManager passes = new PassManager()
+                .add("any", any)
+                .add("casts", casts);
+        IrMethod method = new IrMethod();
+        method.features = IrMethod.F_NEW_INSTANCE;
+        passes.run(method);
+        assertEquals(1, any.runs);
+        assertEquals(0, casts.runs);
+
+        method.features = IrMethod.F_NEW_ARRAY;
+        passes.run(method);
+        assertEquals(1, casts.runs);
+
+        // not recorded by the converter
+        passes.run(new IrMethod());
+        assertEquals(2, casts.runs);
+    }
+
+}
@@ -191,4 +191,26 @@ public class UnSSATransformerTransformerTest extends BaseTransformerTest<UnSSATr
         assertSame(L3.getNext(), ref, "the fix assign should insert after x=@ExceptionRef");
     }
 
+    @Test
+    public void test08PhiLiveInRun() {
+        initMethod(true, "I");
+        Local a = addLocal("a");
+        Local b = addLocal("b");
+        Local x = addLocal("x");
+        Local phi = addLocal("p");
+        LabelStmt L0 = newLabel();
+        addStmt(nAssign(a, nInt(2)));
+        addStmt(L0);
+        attachPhi(L0, nAssign(phi, nPhi(a, b)));
+        Stmt stmt = addStmt(nAssign(x, niAdd(phi, nInt(1))));
+        addStmt(nVoidInvoke(nInvokeStatic(new Value[]{x}, "La;", "m", new String[]{"I"}, "V")));
+        addStmt(nAssign(b, niAdd(x, nInt(1))));
+        // p is still live after b is assigned, inside the same run of statements
+        addStmt(nVoidInvoke(nInvokeStatic(new Value[]{phi}, "La;", "m", new String[]{"I"}, "V")));
+        addStmt(nIf(niGt(nInt(100), nInt(0)), L0));
+        addStmt(nReturn(phi));
+        transform();
+        assertNotSame(stmt.getPre(), L0, "a new local should introduced to solve the problem");
+    }
+
 }
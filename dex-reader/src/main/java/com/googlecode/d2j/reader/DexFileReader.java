@@ -11,6 +11,7 @@ import com.googlecode.d2j.MethodHandle;
 import com.googlecode.d2j.Proto;
 import com.googlecode.d2j.Visibility;
 import com.googlecode.d2j.node.DexAnnotationNode;
+import com.googlecode.d2j.reader.zip.ZipUtil;
 import com.googlecode.d2j.util.Mutf8;
 import com.googlecode.d2j.visitors.DexAnnotationAble;
 import com.googlecode.d2j.visitors.DexClassVisitor;
@@ -26,7 +27,6 @@ import java.io.InputStream;
 import java.io.UTFDataFormatException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -40,6 +40,7 @@ import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
 
 import static com.googlecode.d2j.DexConstants.DEX_035;
 import static com.googlecode.d2j.DexConstants.DEX_038;
@@ -229,10 +230,32 @@ public class DexFileReader implements BaseDexFileReader {
 
     final int dexVersion;
 
+    /**
+     * the reader exposed to users, {@code this} unless this is a view created by {@link #view()}
+     */
+    private final DexFileReader owner;
+
+    // decoded ids, filled on first use and shared by all the views of the reader.
+    // the items only have final fields, so a racy publication is safe and at worst decodes an id twice
+    private final String[] strings;
+
+    private final String[] types;
+
+    private final Proto[] protos;
+
+    private final Field[] fields;
+
+    private final Method[] methods;
+
+    private final LongAdder cacheHits;
+
+    private final LongAdder cacheMisses;
+
     /**
      * read dex from a {@link ByteBuffer}.
      */
     public DexFileReader(ByteBuffer in) {
+        owner = this;
         in.position(0);
         in = in.asReadOnlyBuffer().order(ByteOrder.BIG_ENDIAN);
         int magic = in.getInt() & 0xFFFFFF00;
@@ -322,6 +345,14 @@ public class DexFileReader implements BaseDexFileReader {
         callSiteIdIn = slice(in, callSiteIdsOff, callSiteIdsSize * 4);
         methodHandleIdIn = slice(in, methodHandleIdsOff, methodHandleIdsSize * 8);
 
+        strings = new String[stringIdsSize];
+        types = new String[typeIdsSize];
+        protos = new Proto[protoIdsSize];
+        fields = new Field[fieldIdsSize];
+        methods = new Method[methodIdsSize];
+        cacheHits = new LongAdder();
+        cacheMisses = new LongAdder();
+
         in.position(0);
         annotationsDirectoryItemIn = in.duplicate().order(ByteOrder.LITTLE_ENDIAN);
         annotationSetItemIn = in.duplicate().order(ByteOrder.LITTLE_ENDIAN);
@@ -335,6 +366,47 @@ public class DexFileReader implements BaseDexFileReader {
         debugInfoIn = in.duplicate().order(ByteOrder.LITTLE_ENDIAN);
     }
 
+    /**
+     * Creates a view of the reader, sharing the dex data but with buffers of its own.
+     */
+    private DexFileReader(DexFileReader owner) {
+        this.owner = owner;
+        annotationSetRefListIn = duplicate(owner.annotationSetRefListIn);
+        annotationsDirectoryItemIn = duplicate(owner.annotationsDirectoryItemIn);
+        annotationSetItemIn = duplicate(owner.annotationSetItemIn);
+        annotationItemIn = duplicate(owner.annotationItemIn);
+        classDataIn = duplicate(owner.classDataIn);
+        codeItemIn = duplicate(owner.codeItemIn);
+        encodedArrayItemIn = duplicate(owner.encodedArrayItemIn);
+        stringIdIn = duplicate(owner.stringIdIn);
+        typeIdIn = duplicate(owner.typeIdIn);
+        protoIdIn = duplicate(owner.protoIdIn);
+        fieldIdIn = duplicate(owner.fieldIdIn);
+        methoIdIn = duplicate(owner.methoIdIn);
+        classDefIn = duplicate(owner.classDefIn);
+        typeListIn = duplicate(owner.typeListIn);
+        stringDataIn = duplicate(owner.stringDataIn);
+        debugInfoIn = duplicate(owner.debugInfoIn);
+        callSiteIdIn = duplicate(owner.callSiteIdIn);
+        methodHandleIdIn = duplicate(owner.methodHandleIdIn);
+        stringIdsSize = owner.stringIdsSize;
+        typeIdsSize = owner.typeIdsSize;
+        protoIdsSize = owner.protoIdsSize;
+        fieldIdsSize = owner.fieldIdsSize;
+        methodIdsSize = owner.methodIdsSize;
+        classDefsSize = owner.classDefsSize;
+        callSiteIdsSize = owner.callSiteIdsSize;
+        methodHandleIdsSize = owner.methodHandleIdsSize;
+        dexVersion = owner.dexVersion;
+        strings = owner.strings;
+        types = owner.types;
+        protos = owner.protos;
+        fields = owner.fields;
+        methods = owner.methods;
+        cacheHits = owner.cacheHits;
+        cacheMisses = owner.cacheMisses;
+    }
+
     /**
      * @param data the byte array of dex
      */
@@ -349,8 +421,11 @@ public class DexFileReader implements BaseDexFileReader {
         this(file.toPath());
     }
 
+    /**
+     * @param file the dex file, mapped into memory
+     */
     public DexFileReader(Path file) throws IOException {
-        this(Files.readAllBytes(file));
+        this(ZipUtil.map(file));
     }
 
     public DexFileReader(InputStream is) throws IOException {
@@ -385,6 +460,10 @@ public class DexFileReader implements BaseDexFileReader {
         return b;
     }
 
+    private static ByteBuffer duplicate(ByteBuffer in) {
+        return in.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
     private static void skip(ByteBuffer in, int bytes) {
         in.position(in.position() + bytes);
     }
@@ -672,8 +751,20 @@ public class DexFileReader implements BaseDexFileReader {
         this.accept(dv, 0);
     }
 
+    /**
+     * Creates a view with its own buffer positions, so concurrent calls on this reader do not interfere with each
+     * other.
+     */
+    private DexFileReader view() {
+        return new DexFileReader(owner);
+    }
+
     @Override
     public List<String> getClassNames() {
+        return view().readClassNames();
+    }
+
+    private List<String> readClassNames() {
         List<String> names = new ArrayList<>(classDefsSize);
         ByteBuffer in = classDefIn;
         for (int cid = 0; cid < classDefsSize; cid++) {
@@ -703,6 +794,9 @@ public class DexFileReader implements BaseDexFileReader {
     /**
      * Makes the given visitor visit the dex file. Notice the
      * {@link com.googlecode.d2j.visitors.DexFileVisitor#visitEnd()} is not called
+     * <p>
+     * Each call reads through buffers of its own, so different classes can be visited by different threads at the
+     * same time.
      *
      * @param dv       visitor
      * @param classIdx index of class_def
@@ -711,6 +805,10 @@ public class DexFileReader implements BaseDexFileReader {
      */
     @Override
     public void accept(DexFileVisitor dv, int classIdx, int config) {
+        view().acceptClassDef(dv, classIdx, config);
+    }
+
+    private void acceptClassDef(DexFileVisitor dv, int classIdx, int config) {
         classDefIn.position(classIdx * 32);
         int classIdx2 = classDefIn.getInt();
         int accessFlags = classDefIn.getInt();
@@ -722,7 +820,7 @@ public class DexFileReader implements BaseDexFileReader {
         int staticValuesOff = classDefIn.getInt();
 
         String className = getType(classIdx2);
-        if (ignoreClass(className)) {
+        if (owner.ignoreClass(className)) {
             return;
         }
         String superClassName = getType(superclassIdx);
@@ -987,11 +1085,19 @@ public class DexFileReader implements BaseDexFileReader {
     }
 
     private Field getField(int id) {
+        Field field = fields[id];
+        if (field != null) {
+            cacheHits.increment();
+            return field;
+        }
+        cacheMisses.increment();
         fieldIdIn.position(id * 8);
         int ownerIdx = 0xFFFF & fieldIdIn.getShort();
         int typeIdx = 0xFFFF & fieldIdIn.getShort();
         int nameIdx = fieldIdIn.getInt();
-        return new Field(getType(ownerIdx), getString(nameIdx), getType(typeIdx));
+        field = new Field(getType(ownerIdx), getString(nameIdx), getType(typeIdx));
+        fields[id] = field;
+        return field;
     }
 
     private String[] getTypeList(int offset) {
@@ -1008,6 +1114,12 @@ public class DexFileReader implements BaseDexFileReader {
     }
 
     private Proto getProto(int protoIdx) {
+        Proto proto = protos[protoIdx];
+        if (proto != null) {
+            cacheHits.increment();
+            return proto;
+        }
+        cacheMisses.increment();
         String[] parameterTypes;
         String returnType;
 
@@ -1019,37 +1131,63 @@ public class DexFileReader implements BaseDexFileReader {
         returnType = getType(returnTypeIdx);
 
         parameterTypes = getTypeList(parametersOff);
-        return new Proto(parameterTypes, returnType);
+        proto = new Proto(parameterTypes, returnType);
+        protos[protoIdx] = proto;
+        return proto;
     }
 
     private Method getMethod(int id) {
+        Method method = methods[id];
+        if (method != null) {
+            cacheHits.increment();
+            return method;
+        }
+        cacheMisses.increment();
         methoIdIn.position(id * 8);
         int ownerIdx = 0xFFFF & methoIdIn.getShort();
         int protoIdx = 0xFFFF & methoIdIn.getShort();
         int nameIdx = methoIdIn.getInt();
-        return new Method(getType(ownerIdx), getString(nameIdx), getProto(protoIdx));
+        method = new Method(getType(ownerIdx), getString(nameIdx), getProto(protoIdx));
+        methods[id] = method;
+        return method;
     }
 
     private String getString(int id) {
         if (id == -1) {
             return null;
         }
+        String string = strings[id];
+        if (string != null) {
+            cacheHits.increment();
+            return string;
+        }
+        cacheMisses.increment();
         int offset = stringIdIn.getInt(id * 4);
         stringDataIn.position(offset);
         int length = readULeb128i(stringDataIn);
         try {
             StringBuilder buff = new StringBuilder((int) (length * 1.5));
-            return Mutf8.decode(stringDataIn, buff);
+            string = Mutf8.decode(stringDataIn, buff);
         } catch (UTFDataFormatException e) {
             throw new DexException(e, "fail to load string %d@%08x", id, offset);
         }
+        strings[id] = string;
+        return string;
     }
 
     private String getType(int id) {
         if (id == -1) {
             return null;
         }
-        return getString(typeIdIn.getInt(id * 4));
+        String type = types[id];
+        if (type != null) {
+            cacheHits.increment();
+            return type;
+        }
+        cacheMisses.increment();
+        type = getString(typeIdIn.getInt(id * 4));
+        types[id] = type;
+        return type;
     }
 
     private static boolean isPowerOfTwo(int i) {
@@ -1191,6 +1329,20 @@ public class DexFileReader implements BaseDexFileReader {
         return classDefsSize;
     }
 
+    /**
+     * @return how many string, type, proto, field and method lookups were served by the already decoded items
+     */
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    /**
+     * @return how many string, type, proto, field and method items were decoded
+     */
+    public long getCacheMisses() {
+        return cacheMisses.sum();
+    }
+
     static class BadOpException extends RuntimeException {
 
         private static final long serialVersionUID = 5354839427958139635L;
@@ -1,30 +1,70 @@
 package com.googlecode.d2j.reader;
 
 import com.googlecode.d2j.DexConstants;
+import com.googlecode.d2j.DexException;
+import com.googlecode.d2j.reader.zip.ZipUtil;
+import com.googlecode.d2j.util.Mutf8;
 import com.googlecode.d2j.util.zip.AccessBufByteArrayOutputStream;
 import com.googlecode.d2j.util.zip.ZipEntry;
 import com.googlecode.d2j.util.zip.ZipFile;
 import com.googlecode.d2j.visitors.DexFileVisitor;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
 import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 
+/**
+ * read classes from many dex files, a class is read from the first dex containing it.
+ * <p>
+ * The dex files of a zip are only inflated when a class is read from them, and with
+ * {@link #setReleaseConsumed(boolean)} they are dropped again once all their classes are read. The class names are
+ * indexed as a stream, without keeping the inflated dex files.
+ */
 public class MultiDexFileReader implements BaseDexFileReader {
 
-    private final List<DexFileReader> readers = new ArrayList<>();
+    private final List<Dex> dexes = new ArrayList<>();
 
-    private final List<Item> items = new ArrayList<>();
+    /**
+     * the classes of the first {@link #indexedDexes} dex files
+     */
+    private final List<Item> indexing = new ArrayList<>();
+
+    private Set<String> indexedClasses = new HashSet<>();
+
+    private int indexedDexes;
+
+    /**
+     * all the classes, set once all the dex files are indexed
+     */
+    private volatile List<Item> items;
+
+    private volatile boolean releaseConsumed;
 
     public MultiDexFileReader(Collection<DexFileReader> readers) {
-        this.readers.addAll(readers);
-        init();
+        for (DexFileReader reader : readers) {
+            dexes.add(new Dex(reader));
+        }
+    }
+
+    private MultiDexFileReader(ZipFile zipFile, Collection<ZipEntry> entries) {
+        for (ZipEntry entry : entries) {
+            dexes.add(new Dex(zipFile, entry));
+        }
     }
 
     private static byte[] toByteArray(InputStream is) throws IOException {
@@ -41,50 +81,118 @@ public class MultiDexFileReader implements BaseDexFileReader {
     }
 
     public static BaseDexFileReader open(byte[] data) throws IOException {
-        if (data.length < 3) {
+        return open(ByteBuffer.wrap(data));
+    }
+
+    public static BaseDexFileReader open(File file) throws IOException {
+        return open(file.toPath());
+    }
+
+    /**
+     * open a dex or zip file mapped into memory, the STORED classes*.dex in a zip file are read in place
+     */
+    public static BaseDexFileReader open(Path file) throws IOException {
+        return open(ZipUtil.map(file));
+    }
+
+    public static BaseDexFileReader open(ByteBuffer data) throws IOException {
+        if (data.limit() < 3) {
             throw new IOException("File too small to be a dex/zip");
         }
-        if ("dex".equals(new String(data, 0, 3, StandardCharsets.ISO_8859_1))) { // dex
+        if (data.get(0) == 'd' && data.get(1) == 'e' && data.get(2) == 'x') { // dex
             return new DexFileReader(data);
-        } else if ("PK".equals(new String(data, 0, 2, StandardCharsets.ISO_8859_1))) { // ZIP
-            TreeMap<String, DexFileReader> dexFileReaders = new TreeMap<>();
-            try (ZipFile zipFile = new ZipFile(data)) {
-                for (ZipEntry e : zipFile.entries()) {
-                    String entryName = e.getName();
-                    if (entryName.startsWith("classes") && entryName.endsWith(".dex")) {
-                        if (!dexFileReaders.containsKey(entryName)) { // only the first one
-                            dexFileReaders.put(entryName, new DexFileReader(toByteArray(zipFile.getInputStream(e))));
-                        }
-                    }
+        } else if (data.get(0) == 'P' && data.get(1) == 'K') { // ZIP
+            // the zip is backed by the buffer and owns no file, so it can stay open for the lazy dex files
+            ZipFile zipFile = new ZipFile(data);
+            TreeMap<String, ZipEntry> dexEntries = new TreeMap<>();
+            for (ZipEntry e : zipFile.entries()) {
+                String entryName = e.getName();
+                if (entryName.startsWith("classes") && entryName.endsWith(".dex")) {
+                    dexEntries.putIfAbsent(entryName, e); // only the first one
                 }
             }
-            if (dexFileReaders.isEmpty()) {
+            if (dexEntries.isEmpty()) {
                 throw new IOException("Can not find classes.dex in zip file");
-            } else if (dexFileReaders.size() == 1) {
-                return dexFileReaders.firstEntry().getValue();
+            } else if (dexEntries.size() == 1) {
+                return new DexFileReader(zipFile.getEntryBuffer(dexEntries.firstEntry().getValue()));
             } else {
-                return new MultiDexFileReader(dexFileReaders.values());
+                return new MultiDexFileReader(zipFile, dexEntries.values());
             }
         }
         throw new IOException("The source file is not a .dex or .zip file");
     }
 
-    void init() {
-        Set<String> classes = new HashSet<>();
-        for (DexFileReader reader : readers) {
-            List<String> classNames = reader.getClassNames();
-            for (int i = 0; i < classNames.size(); i++) {
-                String className = classNames.get(i);
-                if (classes.add(className)) {
-                    items.add(new Item(i, reader, className));
+    /**
+     * drop a dex file inflated from a zip once all its classes are read, it is inflated again if needed.
+     * the default value is {@code false}
+     */
+    public void setReleaseConsumed(boolean releaseConsumed) {
+        this.releaseConsumed = releaseConsumed;
+    }
+
+    /**
+     * @return the class at an index, indexing the dex files up to the one holding it
+     */
+    private Item item(int classIdx) {
+        List<Item> items = this.items;
+        if (items != null) {
+            return items.get(classIdx);
+        }
+        synchronized (this) {
+            while (classIdx >= indexing.size() && indexedDexes < dexes.size()) {
+                indexDex();
+            }
+            return indexing.get(classIdx);
+        }
+    }
+
+    private List<Item> items() {
+        List<Item> items = this.items;
+        if (items == null) {
+            synchronized (this) {
+                while (indexedDexes < dexes.size()) {
+                    indexDex();
                 }
+                indexedClasses = null;
+                this.items = items = indexing;
             }
         }
+        return items;
+    }
+
+    /**
+     * Adds the classes of the next dex file to the index, a class is only added from the first dex file holding it.
+     * The names are read without inflating the dex file into a reader.
+     */
+    private void indexDex() {
+        Dex dex = dexes.get(indexedDexes);
+        List<String> classNames = dex.readClassNames();
+        int size = 0;
+        for (int i = 0; i < classNames.size(); i++) {
+            String className = classNames.get(i);
+            if (indexedClasses.add(className)) {
+                indexing.add(new Item(i, dex, className));
+                size++;
+            }
+        }
+        dex.size = size;
+        indexedDexes++;
+    }
+
+    /**
+     * @return the number of times a dex file of the zip was inflated into a reader
+     */
+    /*package*/ int getInflatedCount() {
+        int count = 0;
+        for (Dex dex : dexes) {
+            count += dex.inflated;
+        }
+        return count;
     }
 
     @Override
     public int getDexVersion() {
-        return readers.stream().mapToInt(DexFileReader::getDexVersion)
+        return dexes.stream().mapToInt(Dex::getDexVersion)
                 .max().orElse(DexConstants.DEX_035);
     }
 
@@ -93,17 +201,21 @@ public class MultiDexFileReader implements BaseDexFileReader {
         accept(dv, 0);
     }
 
+    /**
+     * @return the names of the classes, only the dex files up to the one holding a class are indexed to get it, all of
+     * them for the size
+     */
     @Override
     public List<String> getClassNames() {
         return new AbstractList<String>() {
             @Override
             public String get(int index) {
-                return items.get(index).className;
+                return item(index).className;
             }
 
             @Override
             public int size() {
-                return items.size();
+                return items().size();
             }
         };
     }
@@ -111,7 +223,7 @@ public class MultiDexFileReader implements BaseDexFileReader {
     @Override
     public void accept(DexFileVisitor dv, int config) {
         dv.visitDexFileVersion(getDexVersion());
-        int size = items.size();
+        int size = items().size();
         for (int i = 0; i < size; i++) {
             accept(dv, i, config);
         }
@@ -119,21 +231,239 @@ public class MultiDexFileReader implements BaseDexFileReader {
 
     @Override
     public void accept(DexFileVisitor dv, int classIdx, int config) {
-        Item item = items.get(classIdx);
-        item.reader.accept(dv, item.idx, config);
+        Item item = item(classIdx);
+        item.dex.get().accept(dv, item.idx, config);
+        if (releaseConsumed) {
+            item.dex.consumed(item.idx);
+        }
+    }
+
+    /**
+     * a dex file, either given as a reader or inflated from a zip entry on first use
+     */
+    static class Dex {
+
+        private final ZipFile zipFile;
+
+        private final ZipEntry entry;
+
+        private DexFileReader reader;
+
+        /**
+         * the classes read from the reader since it was loaded
+         */
+        private final BitSet consumed = new BitSet();
+
+        private int consumedSize;
+
+        /**
+         * number of the classes read from this dex
+         */
+        int size;
+
+        /**
+         * number of the times the zip entry is inflated into a reader
+         */
+        int inflated;
+
+        Dex(DexFileReader reader) {
+            this.zipFile = null;
+            this.entry = null;
+            this.reader = reader;
+        }
+
+        Dex(ZipFile zipFile, ZipEntry entry) {
+            this.zipFile = zipFile;
+            this.entry = entry;
+        }
+
+        synchronized DexFileReader get() {
+            if (reader == null) {
+                try {
+                    reader = new DexFileReader(zipFile.getEntryBuffer(entry));
+                } catch (IOException e) {
+                    throw new DexException(e, "fail to read %s", entry.getName());
+                }
+                inflated++;
+                consumed.clear();
+                consumedSize = 0;
+            }
+            return reader;
+        }
+
+        /**
+         * Reads the names of the classes in the order of the class_defs. A zip entry is read as a stream, keeping
+         * only the ids on the way to the names, not the whole dex file.
+         */
+        synchronized List<String> readClassNames() {
+            if (reader != null) {
+                return reader.getClassNames();
+            }
+            try (DexStream in = new DexStream()) {
+                in.seek(0x38);
+                int stringIdsSize = in.readInt();
+                int stringIdsOff = in.readInt();
+                int typeIdsSize = in.readInt();
+                int typeIdsOff = in.readInt();
+                in.seek(0x60);
+                int classDefsSize = in.readInt();
+                int classDefsOff = in.readInt();
+
+                in.seek(stringIdsOff);
+                int[] stringIds = in.readInts(stringIdsSize);
+                in.seek(typeIdsOff);
+                int[] typeIds = in.readInts(typeIdsSize);
+                int[] classTypes = new int[classDefsSize];
+                for (int i = 0; i < classDefsSize; i++) {
+                    in.seek(classDefsOff + i * 32);
+                    classTypes[i] = in.readInt();
+                }
+
+                // read the string data in the order of the file, to stay in a single pass
+                TreeMap<Integer, String> strings = new TreeMap<>();
+                for (int type : classTypes) {
+                    strings.put(stringIds[typeIds[type]], null);
+                }
+                StringBuilder sb = new StringBuilder();
+                for (Map.Entry<Integer, String> e : strings.entrySet()) {
+                    in.seek(e.getKey());
+                    in.readULeb128();
+                    sb.setLength(0);
+                    e.setValue(Mutf8.decode(ByteBuffer.wrap(in.readUntilZero()), sb));
+                }
+                List<String> names = new ArrayList<>(classDefsSize);
+                for (int type : classTypes) {
+                    names.add(strings.get(stringIds[typeIds[type]]));
+                }
+                return names;
+            } catch (IOException e) {
+                throw new DexException(e, "fail to read %s", entry.getName());
+            }
+        }
+
+        synchronized void consumed(int classIdx) {
+            if (entry != null && reader != null && !consumed.get(classIdx)) {
+                consumed.set(classIdx);
+                if (++consumedSize >= size) {
+                    release();
+                }
+            }
+        }
+
+        synchronized void release() {
+            if (entry != null) {
+                reader = null;
+            }
+        }
+
+        synchronized int getDexVersion() {
+            if (reader != null) {
+                return reader.getDexVersion();
+            }
+            // only inflate the magic
+            byte[] magic = new byte[8];
+            try (DataInputStream in = new DataInputStream(zipFile.getInputStream(entry))) {
+                in.readFully(magic);
+            } catch (IOException e) {
+                throw new DexException(e, "fail to read %s", entry.getName());
+            }
+            return ByteBuffer.wrap(magic).getInt(4) >> 8;
+        }
+
+        /**
+         * a forward reader of the zip entry, seeking backward opens it again
+         */
+        private class DexStream implements Closeable {
+
+            private InputStream in = open();
+
+            private long position;
+
+            void seek(long offset) throws IOException {
+                if (offset < position) {
+                    in.close();
+                    in = open();
+                    position = 0;
+                }
+                while (position < offset) {
+                    long skipped = in.skip(offset - position);
+                    if (skipped <= 0) {
+                        read();
+                    } else {
+                        position += skipped;
+                    }
+                }
+            }
+
+            private InputStream open() {
+                return new BufferedInputStream(zipFile.getInputStream(entry), 8192);
+            }
+
+            int read() throws IOException {
+                int b = in.read();
+                if (b < 0) {
+                    throw new EOFException();
+                }
+                position++;
+                return b;
+            }
+
+            int readInt() throws IOException {
+                return read() | read() << 8 | read() << 16 | read() << 24;
+            }
+
+            int[] readInts(int size) throws IOException {
+                int[] ints = new int[size];
+                for (int i = 0; i < size; i++) {
+                    ints[i] = readInt();
+                }
+                return ints;
+            }
+
+            int readULeb128() throws IOException {
+                int value = 0;
+                for (int shift = 0; ; shift += 7) {
+                    int b = read();
+                    value |= (b & 0x7F) << shift;
+                    if ((b & 0x80) == 0) {
+                        return value;
+                    }
+                }
+            }
+
+            /**
+             * @return the bytes up to a 0, included
+             */
+            byte[] readUntilZero() throws IOException {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                int b;
+                do {
+                    b = read();
+                    out.write(b);
+                } while (b != 0);
+                return out.toByteArray();
+            }
+
+            @Override
+            public void close() throws IOException {
+                in.close();
+            }
+
+        }
+
     }
 
     static class Item {
 
         int idx;
 
-        DexFileReader reader;
+        Dex dex;
 
         String className;
 
-        Item(int i, DexFileReader reader, String className) {
+        Item(int i, Dex dex, String className) {
             idx = i;
-            this.reader = reader;
+            this.dex = dex;
             this.className = className;
         }
 
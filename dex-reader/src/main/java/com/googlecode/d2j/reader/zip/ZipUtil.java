@@ -22,9 +22,12 @@ import com.googlecode.d2j.util.zip.ZipFile;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
 /**
  * @author bob
@@ -44,6 +47,23 @@ public final class ZipUtil {
         return out.getBuf();
     }
 
+    /**
+     * map the whole file into memory, read-only.
+     */
+    public static ByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * same as {@link #readDex(Path)}, but the file is mapped into memory and a STORED classes.dex in a zip file is
+     * not copied.
+     */
+    public static ByteBuffer mapDex(Path file) throws IOException {
+        return readDex(map(file));
+    }
+
     /**
      * read the dex file from file, if the file is a zip file, it will return the content of classes.dex in the zip
      * file.
@@ -85,4 +105,29 @@ public final class ZipUtil {
         throw new IOException("The src file not a .dex or zip file");
     }
 
+    /**
+     * read the dex file from a buffer, if the buffer is a zip stream, it will return the content of classes.dex in the
+     * zip stream.
+     *
+     * @return the content of classes.dex
+     */
+    public static ByteBuffer readDex(ByteBuffer data) throws IOException {
+        if (data.limit() < 3) {
+            throw new IOException("File too small to be a dex/zip");
+        }
+        if (data.get(0) == 'd' && data.get(1) == 'e' && data.get(2) == 'x') { // dex
+            return data;
+        } else if (data.get(0) == 'P' && data.get(1) == 'K') { // ZIP
+            try (ZipFile zipFile = new ZipFile(data)) {
+                ZipEntry classes = zipFile.findFirstEntry("classes.dex");
+                if (classes != null) {
+                    return zipFile.getEntryBuffer(classes);
+                } else {
+                    throw new IOException("Can not find classes.dex in zip file");
+                }
+            }
+        }
+        throw new IOException("The src file not a .dex or zip file");
+    }
+
 }
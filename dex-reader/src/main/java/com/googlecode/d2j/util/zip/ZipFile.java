@@ -138,6 +138,28 @@ public class ZipFile implements AutoCloseable, ZipConstants {
         }
     }
 
+    /**
+     * Returns the data of the specified {@code android.ZipEntry}. A STORED entry is a read-only slice of this file
+     * and is not copied, other entries are inflated into memory.
+     *
+     * @param entry the android.ZipEntry.
+     * @return a buffer of the data contained in the {@code android.ZipEntry}, starting at position 0.
+     */
+    public ByteBuffer getEntryBuffer(ZipEntry entry) throws IOException {
+        if (entry.compressionMethod == ZipEntry.STORED) {
+            ByteBuffer is = (ByteBuffer) raf.duplicate().position((int) getEntryDataStart(entry));
+            return (ByteBuffer) is.slice().order(ByteOrder.LITTLE_ENDIAN).limit((int) entry.size);
+        }
+        AccessBufByteArrayOutputStream out = new AccessBufByteArrayOutputStream();
+        try (InputStream is = getInputStream(entry)) {
+            byte[] buff = new byte[8192];
+            for (int c = is.read(buff); c > 0; c = is.read(buff)) {
+                out.write(buff, 0, c);
+            }
+        }
+        return ByteBuffer.wrap(out.getBuf(), 0, out.size()).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
     static void skip(ByteBuffer is, int i) {
         is.position(is.position() + i);
     }
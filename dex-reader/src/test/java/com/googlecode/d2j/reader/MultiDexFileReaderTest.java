@@ -0,0 +1,74 @@
+package com.googlecode.d2j.reader;
+
+import com.googlecode.d2j.visitors.DexFileVisitor;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * the dex files of a zip are only inflated to read their classes, not to list the class names
+ */
+public class MultiDexFileReaderTest {
+
+    @Test
+    public void testInflateOnDemand() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(
+                Paths.get("../dex-translator/src/test/resources/dexes"), "*.dex")) {
+            ds.forEach(files::add);
+        }
+        Collections.sort(files);
+        assertTrue(files.size() > 1);
+
+        List<DexFileReader> readers = new ArrayList<>();
+        ByteArrayOutputStream zip = new ByteArrayOutputStream();
+        try (ZipOutputStream zos = new ZipOutputStream(zip)) {
+            for (int i = 0; i < files.size(); i++) {
+                byte[] data = Files.readAllBytes(files.get(i));
+                readers.add(new DexFileReader(data));
+                zos.putNextEntry(new ZipEntry(i == 0 ? "classes.dex" : "classes" + (i + 1) + ".dex"));
+                zos.write(data);
+            }
+        }
+        List<String> expected = new ArrayList<>(new MultiDexFileReader(readers).getClassNames());
+        // the dex files a class is read from
+        Set<String> classes = new HashSet<>();
+        int dexesRead = 0;
+        for (DexFileReader reader : readers) {
+            if (!classes.addAll(reader.getClassNames())) {
+                continue;
+            }
+            dexesRead++;
+        }
+
+        MultiDexFileReader reader = (MultiDexFileReader) MultiDexFileReader.open(zip.toByteArray());
+        List<String> names = reader.getClassNames();
+        assertEquals(expected, new ArrayList<>(names));
+        assertEquals(0, reader.getInflatedCount());
+        reader.accept(new DexFileVisitor(), names.size() - 1, 0);
+        assertEquals(1, reader.getInflatedCount());
+
+        reader = (MultiDexFileReader) MultiDexFileReader.open(zip.toByteArray());
+        reader.accept(new DexFileVisitor(), 0, 0);
+        assertEquals(1, reader.getInflatedCount());
+
+        reader = (MultiDexFileReader) MultiDexFileReader.open(zip.toByteArray());
+        reader.setReleaseConsumed(true);
+        reader.accept(new DexFileVisitor(), 0);
+        assertEquals(dexesRead, reader.getInflatedCount());
+    }
+
+}
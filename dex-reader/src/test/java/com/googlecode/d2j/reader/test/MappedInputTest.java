@@ -0,0 +1,74 @@
+package com.googlecode.d2j.reader.test;
+
+import com.googlecode.d2j.reader.BaseDexFileReader;
+import com.googlecode.d2j.reader.DexFileReader;
+import com.googlecode.d2j.reader.MultiDexFileReader;
+import com.googlecode.d2j.reader.zip.ZipUtil;
+import com.googlecode.d2j.util.zip.ZipEntry;
+import com.googlecode.d2j.util.zip.ZipFile;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+import java.util.zip.ZipOutputStream;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * the mapped input must read the same classes as the byte array input
+ */
+public class MappedInputTest {
+
+    @Test
+    public void testDex() throws IOException {
+        byte[] dex = ZipUtil.toByteArray(MappedInputTest.class.getResourceAsStream("/i200.dex"));
+        Path file = Files.createTempFile("d2j", ".dex");
+        try {
+            Files.write(file, dex);
+            assertEquals(new DexFileReader(dex).getClassNames(), new DexFileReader(file).getClassNames());
+            assertEquals(MultiDexFileReader.open(dex).getClassNames(), MultiDexFileReader.open(file).getClassNames());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testZip() throws IOException {
+        byte[] dex = ZipUtil.toByteArray(MappedInputTest.class.getResourceAsStream("/i200.dex"));
+        Path file = Files.createTempFile("d2j", ".zip");
+        try {
+            try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(file))) {
+                java.util.zip.ZipEntry stored = new java.util.zip.ZipEntry("classes.dex");
+                stored.setMethod(java.util.zip.ZipEntry.STORED);
+                stored.setSize(dex.length);
+                CRC32 crc = new CRC32();
+                crc.update(dex);
+                stored.setCrc(crc.getValue());
+                zos.putNextEntry(stored);
+                zos.write(dex);
+                zos.putNextEntry(new java.util.zip.ZipEntry("classes2.dex"));
+                zos.write(dex);
+            }
+
+            try (ZipFile zip = new ZipFile(ZipUtil.map(file))) {
+                for (ZipEntry e : zip.entries()) {
+                    ByteBuffer buffer = zip.getEntryBuffer(e);
+                    assertEquals(e.getMethod() == ZipEntry.STORED, buffer.isReadOnly());
+                    byte[] data = new byte[buffer.remaining()];
+                    buffer.get(data);
+                    assertArrayEquals(dex, data);
+                }
+            }
+
+            assertEquals(ByteBuffer.wrap(dex), ZipUtil.mapDex(file));
+            // the classes of classes2.dex are already in classes.dex
+            BaseDexFileReader mapped = MultiDexFileReader.open(file);
+            assertEquals(new DexFileReader(dex).getClassNames(), mapped.getClassNames());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+}
@@ -65,6 +65,25 @@ public class Dex2jarCmd extends BaseCmd {
             description = "instructs ASM to compute frames - experimental!")
     private boolean computeFrames = false;
 
+    @Opt(opt = "sm", longOpt = "streaming", hasArg = false,
+            description = "read and convert one class at a time to reduce memory usage")
+    private boolean streaming = false;
+
+    @Opt(opt = "j", longOpt = "threads", description = "number of threads converting the classes, default is 1",
+            argName = "count")
+    private int threads = 1;
+
+    @Opt(opt = "cl", longOpt = "compression-level", description = "compression level of the classes in the jar, from 0"
+            + " to 9, default is 6", argName = "level")
+    private int compressionLevel = 6;
+
+    @Opt(longOpt = "store", hasArg = false, description = "store the classes in the jar without compression")
+    private boolean store = false;
+
+    @Opt(longOpt = "pass-statistics", hasArg = false,
+            description = "print the runs, skips and time of each optimization pass")
+    private boolean passStatistics = false;
+
     @Override
     protected void doCommandLine() throws Exception {
         if (remainingArgs.length == 0) {
@@ -104,12 +123,17 @@ public class Dex2jarCmd extends BaseCmd {
             Path file = output == null ? currentDir.resolve(baseName + "-dex2jar.jar") : output;
             System.err.println("dex2jar " + fileName + " -> " + file);
 
-            BaseDexFileReader reader = MultiDexFileReader.open(Files.readAllBytes(new File(fileName).toPath()));
+            BaseDexFileReader reader = MultiDexFileReader.open(new File(fileName).toPath());
             BaksmaliBaseDexExceptionHandler handler = notHandleException ? null : new BaksmaliBaseDexExceptionHandler();
-            Dex2jar.from(reader).withExceptionHandler(handler).reUseReg(reuseReg).topoLogicalSort()
+            Dex2jar dex2jar = Dex2jar.from(reader).withExceptionHandler(handler).reUseReg(reuseReg).topoLogicalSort()
                     .skipDebug(!debugInfo).optimizeSynchronized(this.optmizeSynchronized).printIR(printIR)
                     .noCode(noCode).skipExceptions(skipExceptions).dontSanitizeNames(dontSanitizeNames)
-                    .computeFrames(computeFrames).to(file);
+                    .computeFrames(computeFrames).streaming(streaming).parallelism(threads).compressionLevel(compressionLevel)
+                    .storeClasses(store);
+            dex2jar.to(file);
+            if (passStatistics) {
+                System.err.print(dex2jar.getPassStatistics());
+            }
 
             if (!notHandleException) {
                 if (handler.hasException()) {
@@ -1,6 +1,7 @@
 package com.googlecode.dex2jar.tools;
 
 import com.googlecode.d2j.dex.ClassVisitorFactory;
+import com.googlecode.d2j.dex.DexExceptionHandler;
 import com.googlecode.d2j.dex.ExDex2Asm;
 import com.googlecode.d2j.dex.LambadaNameSafeClassAdapter;
 import com.googlecode.d2j.node.DexClassNode;
@@ -11,7 +12,6 @@ import com.googlecode.d2j.reader.MultiDexFileReader;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.FileSystem;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
@@ -24,6 +24,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.ClassWriter;
 
@@ -84,17 +85,73 @@ public class Dex2jarMultiThreadCmd extends BaseCmd {
         final Path errorFile = currentDir.resolve(baseName + "-error.zip");
         System.err.println("dex2jar " + fileName + " -> " + file);
         final BaksmaliBaseDexExceptionHandler exceptionHandler = new BaksmaliBaseDexExceptionHandler();
-        BaseDexFileReader reader = MultiDexFileReader.open(Files.readAllBytes(new File(fileName).toPath()));
-        DexFileNode fileNode = new DexFileNode();
-        try {
-            reader.accept(fileNode, DexFileReader.SKIP_DEBUG | DexFileReader.IGNORE_READ_EXCEPTION);
-        } catch (Exception ex) {
-            exceptionHandler.handleFileException(ex);
-            throw ex;
-        }
-        final FileSystem fs = createZip(file);
-        final Path dist = fs.getPath("/");
-        ClassVisitorFactory cvf = new ClassVisitorFactory() {
+        BaseDexFileReader reader = MultiDexFileReader.open(new File(fileName).toPath());
+        final ZipWriter zip = new ZipWriter(file);
+        // the class_def indexes handed over to the zip, each one is either written or skipped
+        final AtomicIntegerArray released = new AtomicIntegerArray(reader.getClassNames().size());
+
+        new ExDex2Asm(exceptionHandler) {
+
+            /**
+             * Converts each class on a worker, the class_def index of a class is its order in the jar, so the jar does
+             * not depend on the order the workers finish in.
+             */
+            void convertClasses(final BaseDexFileReader reader, final int config) {
+                final Map<String, Clz> classes = collectClzInfo(reader, config);
+                final int dexVersion = reader.getDexVersion();
+                final int size = reader.getClassNames().size();
+                final List<Future<?>> results = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    final int classIdx = i;
+                    // the reader is safe for concurrent use, so each class is read on its worker thread
+                    results.add(executorService.submit(() -> {
+                        try {
+                            ClassVisitorFactory cvf = createClassVisitorFactory(zip, classIdx, released,
+                                    exceptionHandler);
+                            DexFileNode fileNode = new DexFileNode();
+                            reader.accept(fileNode, classIdx, config);
+                            for (DexClassNode classNode : fileNode.clzs) {
+                                convertClass(dexVersion, classNode, cvf, classes);
+                            }
+                        } finally {
+                            // a class that failed or gave no bytes must not hold back the ones after it
+                            if (released.compareAndSet(classIdx, 0, 1)) {
+                                try {
+                                    zip.skip(classIdx);
+                                } catch (IOException e) {
+                                    exceptionHandler.handleFileException(e);
+                                }
+                            }
+                        }
+                    }));
+                }
+                executorService.submit(() -> {
+                    for (Future<?> result : results) {
+                        try {
+                            result.get();
+                        } catch (InterruptedException | ExecutionException e) {
+                            e.printStackTrace();
+                        }
+                    }
+                    BaksmaliBaseDexExceptionHandler exceptionHandler1 =
+                            (BaksmaliBaseDexExceptionHandler) exceptionHandler;
+                    if (exceptionHandler1.hasException()) {
+                        exceptionHandler1.dump(errorFile, new String[0]);
+                    }
+                    try {
+                        zip.close();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                });
+            }
+        }.convertClasses(reader, DexFileReader.SKIP_DEBUG | DexFileReader.IGNORE_READ_EXCEPTION);
+    }
+
+    private ClassVisitorFactory createClassVisitorFactory(final ZipWriter zip, final int classIdx,
+                                                          final AtomicIntegerArray released,
+                                                          final DexExceptionHandler exceptionHandler) {
+        return new ClassVisitorFactory() {
             @Override
             public ClassVisitor create(final String name) {
                 final ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
@@ -113,10 +170,11 @@ public class Dex2jarMultiThreadCmd extends BaseCmd {
                             exceptionHandler.handleFileException(ex);
                             return;
                         }
+                        if (!released.compareAndSet(classIdx, 0, 1)) {
+                            return;
+                        }
                         try {
-                            Path dist1 = dist.resolve(className + ".class");
-                            BaseCmd.createParentDirectories(dist1);
-                            Files.write(dist1, data);
+                            zip.put(classIdx, className + ".class", data);
                         } catch (IOException e) {
                             exceptionHandler.handleFileException(e);
                         }
@@ -124,39 +182,6 @@ public class Dex2jarMultiThreadCmd extends BaseCmd {
                 };
             }
         };
-
-        new ExDex2Asm(exceptionHandler) {
-
-            @Override
-            public void convertDex(final DexFileNode fileNode, final ClassVisitorFactory cvf) {
-                if (fileNode.clzs != null) {
-                    final Map<String, Clz> classes = collectClzInfo(fileNode);
-                    final List<Future<?>> results = new ArrayList<>(fileNode.clzs.size());
-                    for (final DexClassNode classNode : fileNode.clzs) {
-                        results.add(executorService.submit(() -> convertClass(fileNode, classNode, cvf, classes)));
-                    }
-                    executorService.submit(() -> {
-                        for (Future<?> result : results) {
-                            try {
-                                result.get();
-                            } catch (InterruptedException | ExecutionException e) {
-                                e.printStackTrace();
-                            }
-                        }
-                        BaksmaliBaseDexExceptionHandler exceptionHandler1 =
-                                (BaksmaliBaseDexExceptionHandler) exceptionHandler;
-                        if (exceptionHandler1.hasException()) {
-                            exceptionHandler1.dump(errorFile, new String[0]);
-                        }
-                        try {
-                            fs.close();
-                        } catch (IOException e) {
-                            e.printStackTrace();
-                        }
-                    });
-                }
-            }
-        }.convertDex(fileNode, cvf);
     }
 
 }
@@ -137,8 +137,7 @@ public class DexWeaverCmd extends BaseCmd {
 
         out.visitEnd();
 
-        byte[] data = out.toByteArray();
-        Files.write(output, data);
+        out.writeTo(output);
 
     }
 
@@ -0,0 +1,194 @@
+package com.googlecode.d2j.converter;
+
+import com.googlecode.d2j.converter.Dex2IRConverter.Dex2IrFrame;
+import com.googlecode.d2j.converter.Dex2IRConverter.DvmValue;
+import com.googlecode.dex2jar.ir.expr.Local;
+import com.googlecode.dex2jar.ir.stmt.Stmt;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The scratch state of a {@link Dex2IRConverter}: the per instruction arrays, the frames and the values of the
+ * registers. A context is kept from one method to the next, so the arrays and objects of a conversion are reused by
+ * the next instead of allocated per method.
+ * <p>
+ * The IR built by a conversion does not reference the context. The context references the last method converted
+ * until {@link #release()}, or until the next conversion. A context is not thread safe, each thread converting methods
+ * keeps its own.
+ */
+public class Dex2IRContext {
+
+    /**
+     * the number of instructions, values or registers of the free frames above which the arrays are not kept, so a
+     * large method does not keep its memory in the context once converted
+     */
+    static final int MAX_RETAINED_SIZE = 1 << 12;
+
+    /**
+     * the number of statements above which the statements emitted at an instruction are not kept
+     */
+    private static final int MAX_RETAINED_EMIT_SIZE = 16;
+
+    private static final int INITIAL_VALUES_SIZE = 64;
+
+    private static final int INITIAL_FREE_FRAMES_SIZE = 16;
+
+    int[] parentCount = new int[0];
+
+    BitSet[] exBranch = new BitSet[0];
+
+    Dex2IrFrame[] frames = new Dex2IrFrame[0];
+
+    ArrayList<Stmt>[] emitStmts = newEmitStmts(0);
+
+    BitSet handlers = new BitSet();
+
+    BitSet access = new BitSet();
+
+    /**
+     * the number of instructions of the last method converted
+     */
+    private int size;
+
+    /**
+     * the values of the last method converted are {@code values[0, valueCount)}
+     */
+    private DvmValue[] values = new DvmValue[INITIAL_VALUES_SIZE];
+
+    private int valueCount;
+
+    /**
+     * the frames freed by the last method converted, of {@link #frameSize} registers
+     */
+    private Dex2IrFrame[] freeFrames = new Dex2IrFrame[INITIAL_FREE_FRAMES_SIZE];
+
+    private int freeFrameCount;
+
+    private int frameSize = -1;
+
+    @SuppressWarnings("unchecked")
+    private static ArrayList<Stmt>[] newEmitStmts(int size) {
+        return new ArrayList[size];
+    }
+
+    /**
+     * Starts the conversion of a method, the arrays are cleared for its instructions.
+     */
+    void begin(int size, int totalRegister) {
+        release();
+        if (parentCount.length < size) {
+            int capacity = Math.max(size, parentCount.length * 2);
+            parentCount = new int[capacity];
+            exBranch = new BitSet[capacity];
+            frames = new Dex2IrFrame[capacity];
+            emitStmts = Arrays.copyOf(emitStmts, capacity);
+        }
+        this.size = size;
+        if (frameSize != totalRegister) {
+            Arrays.fill(freeFrames, 0, freeFrameCount, null);
+            freeFrameCount = 0;
+            frameSize = totalRegister;
+        }
+    }
+
+    /**
+     * Clears the references to the last method converted. The arrays grown over {@link #MAX_RETAINED_SIZE} by a large
+     * method are dropped, the next methods allocate them again at their own size.
+     */
+    public void release() {
+        if (parentCount.length > MAX_RETAINED_SIZE) {
+            parentCount = new int[0];
+            exBranch = new BitSet[0];
+            frames = new Dex2IrFrame[0];
+            emitStmts = newEmitStmts(0);
+        } else {
+            Arrays.fill(parentCount, 0, size, 0);
+            Arrays.fill(exBranch, 0, size, null);
+            for (int i = 0; i < size; i++) {
+                Dex2IrFrame frame = frames[i];
+                if (frame != null) {
+                    frames[i] = null;
+                    freeFrame(frame);
+                }
+                ArrayList<Stmt> es = emitStmts[i];
+                if (es != null) {
+                    if (es.size() > MAX_RETAINED_EMIT_SIZE) {
+                        emitStmts[i] = null;
+                    } else {
+                        es.clear();
+                    }
+                }
+            }
+        }
+        size = 0;
+        if (handlers.length() > MAX_RETAINED_SIZE) {
+            handlers = new BitSet();
+            access = new BitSet();
+        } else {
+            handlers.clear();
+            access.clear();
+        }
+        if (values.length > MAX_RETAINED_SIZE) {
+            values = new DvmValue[INITIAL_VALUES_SIZE];
+        } else {
+            for (int i = 0; i < valueCount; i++) {
+                DvmValue v = values[i];
+                v.local = null;
+                v.parent = null;
+                v.otherParent = null;
+            }
+        }
+        valueCount = 0;
+        // keep as many free frames as registers in the retained size
+        int maxFreeFrames = frameSize <= 0 ? INITIAL_FREE_FRAMES_SIZE : MAX_RETAINED_SIZE / frameSize;
+        if (freeFrameCount > maxFreeFrames) {
+            Arrays.fill(freeFrames, maxFreeFrames, freeFrameCount, null);
+            freeFrameCount = maxFreeFrames;
+        }
+        if (freeFrames.length > Math.max(maxFreeFrames, INITIAL_FREE_FRAMES_SIZE)) {
+            freeFrames = Arrays.copyOf(freeFrames, Math.max(freeFrameCount, INITIAL_FREE_FRAMES_SIZE));
+        }
+    }
+
+    DvmValue newValue(Local local) {
+        if (valueCount == values.length) {
+            values = Arrays.copyOf(values, valueCount * 2);
+        }
+        DvmValue v = values[valueCount];
+        if (v == null) {
+            v = new DvmValue();
+            values[valueCount] = v;
+        }
+        valueCount++;
+        v.local = local;
+        return v;
+    }
+
+    /**
+     * @return a frame with no value
+     */
+    Dex2IrFrame newFrame() {
+        if (freeFrameCount > 0) {
+            Dex2IrFrame frame = freeFrames[--freeFrameCount];
+            freeFrames[freeFrameCount] = null;
+            return frame;
+        }
+        return new Dex2IrFrame(frameSize);
+    }
+
+    void freeFrame(Dex2IrFrame frame) {
+        if (frame.getTotalRegisters() != frameSize) {
+            return;
+        }
+        for (int i = 0; i < frameSize; i++) {
+            frame.setReg(i, null);
+        }
+        frame.setTmp(null);
+        if (freeFrameCount == freeFrames.length) {
+            freeFrames = Arrays.copyOf(freeFrames, freeFrameCount * 2);
+        }
+        freeFrames[freeFrameCount++] = frame;
+    }
+
+}
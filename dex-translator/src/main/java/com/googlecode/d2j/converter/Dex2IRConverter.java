@@ -130,6 +130,29 @@ public class Dex2IRConverter {
 
     boolean initAllToZero = true;
 
+    private final Dex2IRContext context;
+
+    /**
+     * the interpreter of the registers, built once as it only reads the fields of the converter
+     */
+    private DvmInterpreter<DvmValue> interpreter;
+
+    /**
+     * the number of labels above which the maps are not kept, so the next methods do not clear their large tables
+     */
+    private static final int MAX_RETAINED_SIZE = 1 << 12;
+
+    public Dex2IRConverter() {
+        this(new Dex2IRContext());
+    }
+
+    /**
+     * @param context the scratch state reused by the conversions, used by a single thread
+     */
+    public Dex2IRConverter(Dex2IRContext context) {
+        this.context = context;
+    }
+
     static int sizeofType(String s) {
         char t = s.charAt(0);
         if (t == 'J' || t == 'D') {
@@ -155,8 +178,41 @@ public class Dex2IRConverter {
         return i;
     }
 
-    @SuppressWarnings("unchecked")
+    /**
+     * Converts a method, the converter can then convert the next method.
+     */
     public IrMethod convert(boolean isStatic, Method method, DexCodeNode dexCodeNode) {
+        try {
+            return convert0(isStatic, method, dexCodeNode);
+        } finally {
+            reset();
+        }
+    }
+
+    /**
+     * Clears the state of the last method converted. The maps and lists keep their capacity for the next method, unless
+     * a large method grew them.
+     */
+    public void reset() {
+        if (labelMap.size() > MAX_RETAINED_SIZE) {
+            labelMap = new HashMap<>();
+            map = new HashMap<>();
+        } else {
+            labelMap.clear();
+            map.clear();
+        }
+        preEmit.clear();
+        currentEmit = null;
+        insnList = null;
+        parentCount = null;
+        target = null;
+        this.dexCodeNode = null;
+        frames = null;
+        emitStmts = null;
+        context.release();
+    }
+
+    private IrMethod convert0(boolean isStatic, Method method, DexCodeNode dexCodeNode) {
         this.dexCodeNode = dexCodeNode;
         IrMethod irMethod = new IrMethod();
         irMethod.args = method.getParameterTypes();
@@ -164,6 +220,7 @@ public class Dex2IRConverter {
         irMethod.owner = method.getOwner();
         irMethod.name = method.getName();
         irMethod.isStatic = isStatic;
+        irMethod.features = 0;
         target = irMethod;
 
 
@@ -179,23 +236,27 @@ public class Dex2IRConverter {
 
         fixExceptionHandlers();
 
-        BitSet[] exBranch = new BitSet[insnList.size()];
-        parentCount = new int[insnList.size()];
+        int size = insnList.size();
+        context.begin(size, dexCodeNode.totalRegister);
+        BitSet[] exBranch = context.exBranch;
+        parentCount = context.parentCount;
         initParentCount(parentCount);
 
-        BitSet handlers = new BitSet(insnList.size());
+        BitSet handlers = context.handlers;
         initExceptionHandlers(dexCodeNode, exBranch, handlers);
 
-        DvmInterpreter<DvmValue> interpreter = buildInterpreter();
-        frames = new Dex2IrFrame[insnList.size()];
-        emitStmts = new ArrayList[insnList.size()];
-        BitSet access = new BitSet(insnList.size());
+        if (interpreter == null) {
+            interpreter = buildInterpreter();
+        }
+        frames = context.frames;
+        emitStmts = context.emitStmts;
+        BitSet access = context.access;
 
         dfs(exBranch, handlers, access, interpreter);
 
         StmtList stmts = target.stmts;
         stmts.addAll(preEmit);
-        for (int i = 0; i < insnList.size(); i++) {
+        for (int i = 0; i < size; i++) {
             DexStmtNode p = insnList.get(i);
             if (access.get(i)) {
                 List<Stmt> es = emitStmts[i];
@@ -215,7 +276,7 @@ public class Dex2IRConverter {
         // too many Objects put in Q, make the objects unique in Q
         Queue<DvmValue> queue = new UniqueQueue<>();
 
-        for (int i1 = 0; i1 < frames.length; i1++) {
+        for (int i1 = 0; i1 < size; i1++) {
             Dex2IrFrame frame = frames[i1];
             if (parentCount[i1] > 1 && frame != null && access.get(i1)) {
                 for (int j = 0; j < frame.getTotalRegisters(); j++) {
@@ -245,7 +306,7 @@ public class Dex2IRConverter {
 
         Set<com.googlecode.dex2jar.ir.expr.Value> phiValues = new HashSet<>();
         List<LabelStmt> phiLabels = new ArrayList<>();
-        for (int i = 0; i < frames.length; i++) {
+        for (int i = 0; i < size; i++) {
             Dex2IrFrame frame = frames[i];
             if (parentCount[i] > 1 && frame != null && access.get(i)) {
                 DexStmtNode p = insnList.get(i);
@@ -480,12 +541,13 @@ public class Dex2IRConverter {
         Dex2IrFrame first = initFirstFrame(dexCodeNode, target);
         if (parentCount[0] > 1) {
             merge(first, 0);
+            context.freeFrame(first);
         } else {
             frames[0] = first;
         }
         Stack<DexStmtNode> stack = new Stack<>();
         stack.push(insnList.get(0));
-        Dex2IrFrame tmp = new Dex2IrFrame(dexCodeNode.totalRegister);
+        Dex2IrFrame tmp = context.newFrame();
 
 
         while (!stack.isEmpty()) {
@@ -504,7 +566,7 @@ public class Dex2IRConverter {
                 if (handlers.get(index)) {
                     Local ex = newLocal();
                     emit(Stmts.nIdentity(ex, Exprs.nExceptionRef("Ljava/lang/Throwable;")));
-                    frame.setTmp(new DvmValue(ex));
+                    frame.setTmp(context.newValue(ex));
                 }
             }
             BitSet ex = exBranch[index];
@@ -574,9 +636,11 @@ public class Dex2IRConverter {
             // cleanup frame it is useless
             if (parentCount[index] <= 1) {
                 frames[index] = null;
+                context.freeFrame(frame);
             }
 
         }
+        context.freeFrame(tmp);
 
     }
 
@@ -594,7 +658,7 @@ public class Dex2IRConverter {
     void merge(Dex2IrFrame src, int dst) {
         Dex2IrFrame distFrame = frames[dst];
         if (distFrame == null) {
-            frames[dst] = new Dex2IrFrame(dexCodeNode.totalRegister);
+            frames[dst] = context.newFrame();
             distFrame = frames[dst];
         }
         if (parentCount[dst] > 1) {
@@ -603,7 +667,7 @@ public class Dex2IRConverter {
                 DvmValue q = distFrame.getReg(i);
                 if (p != null) {
                     if (q == null) {
-                        q = new DvmValue();
+                        q = context.newValue(null);
                         distFrame.setReg(i, q);
                     }
                     relate(p, q);
@@ -624,18 +688,22 @@ public class Dex2IRConverter {
         currentEmit.add(stmt);
     }
 
+    void feature(int feature) {
+        target.features |= feature;
+    }
+
     private Dex2IrFrame initFirstFrame(DexCodeNode methodNode, IrMethod target) {
-        Dex2IrFrame first = new Dex2IrFrame(methodNode.totalRegister);
+        Dex2IrFrame first = context.newFrame();
         int x = methodNode.totalRegister - methodArgCount(target.args);
         if (!target.isStatic) { // not static
             Local thiz = newLocal();
             emit(Stmts.nIdentity(thiz, Exprs.nThisRef(target.owner)));
-            first.setReg(x - 1, new DvmValue(thiz));
+            first.setReg(x - 1, context.newValue(thiz));
         }
         for (int i = 0; i < target.args.length; i++) {
             Local p = newLocal();
             emit(Stmts.nIdentity(p, Exprs.nParameterRef(target.args[i], i)));
-            first.setReg(x, new DvmValue(p));
+            first.setReg(x, context.newValue(p));
             x += sizeofType(target.args[i]);
         }
 
@@ -643,8 +711,9 @@ public class Dex2IRConverter {
             for (int i = 0; i < first.getTotalRegisters(); i++) {
                 if (first.getReg(i) == null) {
                     Local p = newLocal();
+                    feature(IrMethod.F_CONST_ZERO);
                     emit(nAssign(p, nInt(0)));
-                    first.setReg(i, new DvmValue(p));
+                    first.setReg(i, context.newValue(p));
                 }
             }
         }
@@ -657,7 +726,7 @@ public class Dex2IRConverter {
             DvmValue b(com.googlecode.dex2jar.ir.expr.Value value) {
                 Local local = newLocal();
                 emit(Stmts.nAssign(local, value));
-                return new DvmValue(local);
+                return context.newValue(local);
             }
 
             @Override
@@ -666,13 +735,25 @@ public class Dex2IRConverter {
                 case CONST:
                 case CONST_16:
                 case CONST_4:
-                case CONST_HIGH16:
-                    return b(nInt((Integer) ((ConstStmtNode) insn).value));
+                case CONST_HIGH16: {
+                    int value = (Integer) ((ConstStmtNode) insn).value;
+                    if (value == 0) {
+                        feature(IrMethod.F_CONST_ZERO);
+                    } else if (value == 1) {
+                        feature(IrMethod.F_CONST_ONE);
+                    }
+                    return b(nInt(value));
+                }
                 case CONST_WIDE:
                 case CONST_WIDE_16:
                 case CONST_WIDE_32:
-                case CONST_WIDE_HIGH16:
-                    return b(nLong((Long) ((ConstStmtNode) insn).value));
+                case CONST_WIDE_HIGH16: {
+                    long value = (Long) ((ConstStmtNode) insn).value;
+                    if (value == 0) {
+                        feature(IrMethod.F_CONST_ZERO);
+                    }
+                    return b(nLong(value));
+                }
                 case CONST_CLASS:
                     return b(nType((DexType) ((ConstStmtNode) insn).value));
                 case CONST_STRING:
@@ -692,6 +773,7 @@ public class Dex2IRConverter {
                     Field field = ((FieldStmtNode) insn).field;
                     return b(nStaticField(field.getOwner(), field.getName(), field.getType()));
                 case NEW_INSTANCE:
+                    feature(IrMethod.F_NEW_INSTANCE);
                     return b(nNew(((TypeStmtNode) insn).type));
                 default:
                 }
@@ -846,9 +928,11 @@ public class Dex2IRConverter {
                     return b(nInstanceOf(local, ((TypeStmtNode) insn).type));
 
                 case NEW_ARRAY:
+                    feature(IrMethod.F_NEW_ARRAY);
                     return b(nNewArray(((TypeStmtNode) insn).type.substring(1), local));
 
                 case CHECK_CAST:
+                    feature(IrMethod.F_CHECK_CAST);
                     return b(nCheckCast(local, ((TypeStmtNode) insn).type));
 
                 case MONITOR_ENTER:
@@ -874,6 +958,9 @@ public class Dex2IRConverter {
 
                 case DIV_INT_LIT16:
                 case DIV_INT_LIT8:
+                    if (((Stmt2R1NNode) insn).content == 0) {
+                        feature(IrMethod.F_CONST_ZERO);
+                    }
                     return b(nDiv(local, nInt(((Stmt2R1NNode) insn).content), "I"));
 
                 case REM_INT_LIT16:
@@ -1250,11 +1337,12 @@ public class Dex2IRConverter {
                 switch (insn.op) {
                 case FILLED_NEW_ARRAY:
                 case FILLED_NEW_ARRAY_RANGE:
-                    DvmValue value = new DvmValue();
+                    DvmValue value = context.newValue(null);
                     FilledNewArrayStmtNode filledNewArrayStmtNode = (FilledNewArrayStmtNode) insn;
                     String type = filledNewArrayStmtNode.type;
 
                     String elem = type.substring(1);
+                    feature(IrMethod.F_NEW_ARRAY);
                     emit(nAssign(getLocal(value), nNewArray(elem, nInt(values.size()))));
                     for (int i = 0; i < values.size(); i++) {
                         emit(nAssign(nArray(getLocal(value), nInt(i), elem), getLocal(values.get(i))));
@@ -1343,6 +1431,8 @@ public class Dex2IRConverter {
             }
 
             void emitNotFindOperand(DexStmtNode insn) {
+                // the callers load a 0 instead of the operand
+                feature(IrMethod.F_CONST_ZERO);
                 String msg;
                 switch (insn.op) {
                 case MOVE_RESULT:
@@ -1394,7 +1484,7 @@ public class Dex2IRConverter {
         for (DexStmtNode p : insnList) {
             Op op = p.op;
             if (op == null) {
-                if (p.index < parentCount.length - 1) { // not the last label
+                if (p.index < insnList.size() - 1) { // not the last label
                     parentCount[p.index + 1]++;
                 }
             } else {
@@ -0,0 +1,438 @@
+package com.googlecode.d2j.converter;
+
+import com.googlecode.d2j.DexLabel;
+import com.googlecode.d2j.Field;
+import com.googlecode.d2j.Method;
+import com.googlecode.d2j.node.DexCodeNode;
+import com.googlecode.d2j.node.DexDebugNode;
+import com.googlecode.d2j.node.insn.DexLabelStmtNode;
+import com.googlecode.d2j.node.insn.DexStmtNode;
+import com.googlecode.d2j.node.insn.FieldStmtNode;
+import com.googlecode.d2j.node.insn.MethodStmtNode;
+import com.googlecode.d2j.node.insn.Stmt1RNode;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import static com.googlecode.d2j.converter.IR2JConverter.toInternal;
+
+/**
+ * Converts the code of a trivial method, like a getter, a setter or a constructor calling its super constructor,
+ * straight to java bytecode without building the {@link com.googlecode.dex2jar.ir.IrMethod}.
+ * <p>
+ * A method is trivial if its code is a single run of field accesses and invokes ending with a return, without a
+ * branch, a try-catch or a const, and if each value read from a field or returned by an invoke is used once, by the
+ * next instruction reading a register that is not a parameter, in the order of the operand stack. The parameters are
+ * loaded from their slots where they are read, and the labels with a line number must be at an empty stack. The
+ * bytecode is then the one the IR would give, and {@link #convert(MethodVisitor)} visits nothing for any other method,
+ * which is left to {@link Dex2IRConverter}.
+ */
+public class Dex2JConverter implements Opcodes {
+
+    private static final int UNDEFINED = -1;
+
+    private final boolean isStatic;
+
+    private final Method method;
+
+    private final DexCodeNode codeNode;
+
+    /**
+     * the jvm slot of the parameter in each register, or {@link #UNDEFINED}
+     */
+    private int[] slots;
+
+    /**
+     * the value in each register not holding a parameter, or {@link #UNDEFINED}
+     */
+    private int[] values;
+
+    private String[] regTypes;
+
+    /**
+     * the values on the operand stack, from the bottom
+     */
+    private int[] stack;
+
+    private int stackSize;
+
+    private int valueCount;
+
+    /**
+     * the type of the value returned by the last invoke and not moved to a register yet, or null
+     */
+    private String result;
+
+    private MethodVisitor mv;
+
+    public Dex2JConverter(boolean isStatic, Method method, DexCodeNode codeNode) {
+        this.isStatic = isStatic;
+        this.method = method;
+        this.codeNode = codeNode;
+    }
+
+    /**
+     * @return false if the method is not trivial, nothing is visited then
+     */
+    public boolean convert(MethodVisitor mv) {
+        if (!run(null)) {
+            return false;
+        }
+        run(mv);
+        return true;
+    }
+
+    /**
+     * @param mv null to only check the method
+     */
+    private boolean run(MethodVisitor mv) {
+        if (codeNode.stmts == null || codeNode.tryStmts != null && !codeNode.tryStmts.isEmpty()
+                || codeNode.totalRegister < 0) {
+            return false;
+        }
+        this.mv = mv;
+        if (!initParameters()) {
+            return false;
+        }
+        Map<DexLabel, Integer> lines = mv == null ? null : lineNumbers();
+        stack = new int[4];
+        stackSize = 0;
+        result = null;
+        boolean returned = false;
+        for (DexStmtNode insn : codeNode.stmts) {
+            if (insn instanceof DexLabelStmtNode) {
+                if (stackSize != 0 || result != null) {
+                    return false;
+                }
+                if (mv != null) {
+                    Integer line = lines.get(((DexLabelStmtNode) insn).label);
+                    if (line != null) {
+                        Label label = new Label();
+                        mv.visitLabel(label);
+                        mv.visitLineNumber(line, label);
+                    }
+                }
+                continue;
+            }
+            if (returned || insn.op == null) {
+                return false;
+            }
+            if (result != null) {
+                switch (insn.op) {
+                case MOVE_RESULT:
+                case MOVE_RESULT_WIDE:
+                case MOVE_RESULT_OBJECT:
+                    if (!define(((Stmt1RNode) insn).a, stack[stackSize - 1], result)) {
+                        return false;
+                    }
+                    result = null;
+                    continue;
+                default:
+                    if (mv != null) {
+                        mv.visitInsn(isWide(result) ? POP2 : POP);
+                    }
+                    stackSize--;
+                    result = null;
+                    break;
+                }
+            }
+            if (!execute(insn)) {
+                return false;
+            }
+            switch (insn.op) {
+            case RETURN_VOID:
+            case RETURN:
+            case RETURN_WIDE:
+            case RETURN_OBJECT:
+                returned = true;
+                break;
+            default:
+                break;
+            }
+        }
+        return returned;
+    }
+
+    private boolean initParameters() {
+        String[] args = method.getParameterTypes();
+        int total = codeNode.totalRegister;
+        slots = new int[total];
+        values = new int[total];
+        regTypes = new String[total];
+        Arrays.fill(slots, UNDEFINED);
+        Arrays.fill(values, UNDEFINED);
+        valueCount = 0;
+        int reg = total - Dex2IRConverter.methodArgCount(args) - (isStatic ? 0 : 1);
+        if (reg < 0) {
+            return false;
+        }
+        int slot = 0;
+        if (!isStatic) {
+            slots[reg] = slot++;
+            regTypes[reg] = method.getOwner();
+            reg++;
+        }
+        for (String arg : args) {
+            slots[reg] = slot;
+            regTypes[reg] = arg;
+            int size = Dex2IRConverter.sizeofType(arg);
+            reg += size;
+            slot += size;
+        }
+        return true;
+    }
+
+    private Map<DexLabel, Integer> lineNumbers() {
+        Map<DexLabel, Integer> lines = new HashMap<>();
+        if (codeNode.debugNode != null && codeNode.debugNode.debugNodes != null) {
+            for (DexDebugNode.DexDebugOpNode debugNode : codeNode.debugNode.debugNodes) {
+                if (debugNode instanceof DexDebugNode.DexDebugOpNode.LineNumber) {
+                    lines.put(debugNode.label, ((DexDebugNode.DexDebugOpNode.LineNumber) debugNode).line);
+                }
+            }
+        }
+        return lines;
+    }
+
+    private boolean execute(DexStmtNode insn) {
+        switch (insn.op) {
+        case SGET:
+        case SGET_BOOLEAN:
+        case SGET_BYTE:
+        case SGET_CHAR:
+        case SGET_OBJECT:
+        case SGET_SHORT:
+        case SGET_WIDE: {
+            FieldStmtNode fsn = (FieldStmtNode) insn;
+            Field field = fsn.field;
+            if (mv != null) {
+                mv.visitFieldInsn(GETSTATIC, toInternal(field.getOwner()), field.getName(), field.getType());
+            }
+            return push(fsn.a, field.getType());
+        }
+        case IGET:
+        case IGET_BOOLEAN:
+        case IGET_BYTE:
+        case IGET_CHAR:
+        case IGET_OBJECT:
+        case IGET_SHORT:
+        case IGET_WIDE: {
+            FieldStmtNode fsn = (FieldStmtNode) insn;
+            Field field = fsn.field;
+            if (!consume(new int[]{fsn.b}, new String[]{field.getOwner()})) {
+                return false;
+            }
+            if (mv != null) {
+                mv.visitFieldInsn(GETFIELD, toInternal(field.getOwner()), field.getName(), field.getType());
+            }
+            return push(fsn.a, field.getType());
+        }
+        case SPUT:
+        case SPUT_BOOLEAN:
+        case SPUT_BYTE:
+        case SPUT_CHAR:
+        case SPUT_OBJECT:
+        case SPUT_SHORT:
+        case SPUT_WIDE: {
+            FieldStmtNode fsn = (FieldStmtNode) insn;
+            Field field = fsn.field;
+            if (!consume(new int[]{fsn.a}, new String[]{field.getType()})) {
+                return false;
+            }
+            if (mv != null) {
+                mv.visitFieldInsn(PUTSTATIC, toInternal(field.getOwner()), field.getName(), field.getType());
+            }
+            return true;
+        }
+        case IPUT:
+        case IPUT_BOOLEAN:
+        case IPUT_BYTE:
+        case IPUT_CHAR:
+        case IPUT_OBJECT:
+        case IPUT_SHORT:
+        case IPUT_WIDE: {
+            FieldStmtNode fsn = (FieldStmtNode) insn;
+            Field field = fsn.field;
+            if (!consume(new int[]{fsn.b, fsn.a}, new String[]{field.getOwner(), field.getType()})) {
+                return false;
+            }
+            if (mv != null) {
+                mv.visitFieldInsn(PUTFIELD, toInternal(field.getOwner()), field.getName(), field.getType());
+            }
+            return true;
+        }
+        case INVOKE_VIRTUAL:
+        case INVOKE_VIRTUAL_RANGE:
+            return invoke((MethodStmtNode) insn, INVOKEVIRTUAL);
+        case INVOKE_SUPER:
+        case INVOKE_SUPER_RANGE:
+        case INVOKE_DIRECT:
+        case INVOKE_DIRECT_RANGE:
+            return invoke((MethodStmtNode) insn, INVOKESPECIAL);
+        case INVOKE_STATIC:
+        case INVOKE_STATIC_RANGE:
+            return invoke((MethodStmtNode) insn, INVOKESTATIC);
+        case INVOKE_INTERFACE:
+        case INVOKE_INTERFACE_RANGE:
+            return invoke((MethodStmtNode) insn, INVOKEINTERFACE);
+        case RETURN_VOID:
+            if (stackSize != 0 || !"V".equals(method.getReturnType())) {
+                return false;
+            }
+            if (mv != null) {
+                mv.visitInsn(RETURN);
+            }
+            return true;
+        case RETURN:
+        case RETURN_WIDE:
+        case RETURN_OBJECT: {
+            String ret = method.getReturnType();
+            if ("V".equals(ret) || !consume(new int[]{((Stmt1RNode) insn).a}, new String[]{ret})) {
+                return false;
+            }
+            if (mv != null) {
+                mv.visitInsn(Type.getType(ret).getOpcode(IRETURN));
+            }
+            return true;
+        }
+        default:
+            return false;
+        }
+    }
+
+    private boolean invoke(MethodStmtNode insn, int opcode) {
+        Method m = insn.method;
+        String[] args = m.getParameterTypes();
+        int receiver = opcode == INVOKESTATIC ? 0 : 1;
+        int[] regs = new int[receiver + args.length];
+        String[] types = new String[regs.length];
+        int i = 0;
+        if (receiver == 1) {
+            if (insn.args.length == 0) {
+                return false;
+            }
+            regs[0] = insn.args[i++];
+            types[0] = m.getOwner();
+        }
+        for (int j = 0; j < args.length; j++) {
+            if (i >= insn.args.length) {
+                return false;
+            }
+            regs[receiver + j] = insn.args[i];
+            types[receiver + j] = args[j];
+            i += Dex2IRConverter.sizeofType(args[j]);
+        }
+        if (!consume(regs, types)) {
+            return false;
+        }
+        if (mv != null) {
+            mv.visitMethodInsn(opcode, toInternal(m.getOwner()), m.getName(), m.getDesc(),
+                    opcode == INVOKEINTERFACE);
+        }
+        String ret = m.getReturnType();
+        if (!"V".equals(ret)) {
+            pushValue(valueCount++);
+            result = ret;
+        }
+        return true;
+    }
+
+    /**
+     * the values read from the registers must be on the top of the stack, before the parameters, which are loaded
+     */
+    private boolean consume(int[] regs, String[] types) {
+        int onStack = 0;
+        while (onStack < regs.length && isValue(regs[onStack])) {
+            onStack++;
+        }
+        if (onStack != stackSize) {
+            return false;
+        }
+        for (int i = 0; i < regs.length; i++) {
+            int reg = regs[i];
+            if (reg < 0 || reg >= slots.length || !isSameKind(regTypes[reg], types[i])) {
+                return false;
+            }
+            if (i < onStack) {
+                if (values[reg] != stack[i]) {
+                    return false;
+                }
+            } else if (slots[reg] == UNDEFINED) {
+                return false;
+            }
+        }
+        if (mv != null) {
+            for (int i = onStack; i < regs.length; i++) {
+                String type = regTypes[regs[i]];
+                mv.visitVarInsn(Type.getType(type).getOpcode(ILOAD), slots[regs[i]]);
+            }
+        }
+        stackSize = 0;
+        return true;
+    }
+
+    private boolean isValue(int reg) {
+        return reg >= 0 && reg < values.length && values[reg] != UNDEFINED;
+    }
+
+    private boolean push(int reg, String type) {
+        int value = valueCount++;
+        pushValue(value);
+        return define(reg, value, type);
+    }
+
+    private void pushValue(int value) {
+        if (stackSize == stack.length) {
+            stack = Arrays.copyOf(stack, stackSize * 2);
+        }
+        stack[stackSize++] = value;
+    }
+
+    private boolean define(int reg, int value, String type) {
+        int size = isWide(type) ? 2 : 1;
+        if (reg < 0 || reg + size > slots.length) {
+            return false;
+        }
+        if (reg > 0 && regTypes[reg - 1] != null && isWide(regTypes[reg - 1])) {
+            undefine(reg - 1);
+        }
+        undefine(reg);
+        if (size == 2) {
+            undefine(reg + 1);
+        }
+        values[reg] = value;
+        regTypes[reg] = type;
+        return true;
+    }
+
+    private void undefine(int reg) {
+        slots[reg] = UNDEFINED;
+        values[reg] = UNDEFINED;
+        regTypes[reg] = null;
+    }
+
+    private static boolean isWide(String type) {
+        char c = type.charAt(0);
+        return c == 'J' || c == 'D';
+    }
+
+    /**
+     * the value is used as it is by the IR, a primitive of another type would be converted
+     */
+    private static boolean isSameKind(String type, String expected) {
+        if (type == null) {
+            return false;
+        }
+        char t = type.charAt(0);
+        char e = expected.charAt(0);
+        if (t == 'L' || t == '[') {
+            return e == 'L' || e == '[';
+        }
+        return t == e;
+    }
+
+}
@@ -59,6 +59,11 @@ public class IR2JConverter implements Opcodes {
 
     MethodVisitor asm;
 
+    /**
+     * the locals holding the monitors, with {@link #optimizeSynchronized}
+     */
+    private final Map<String, Integer> lockMap = new HashMap<>();
+
     public IR2JConverter() {
         super();
     }
@@ -83,10 +88,28 @@ public class IR2JConverter implements Opcodes {
         return this;
     }
 
+    /**
+     * Converts the method, the converter can then be set up for the next method.
+     */
     public void convert() {
-        mapLabelStmt(ir);
-        reBuildInstructions(ir, asm);
-        reBuildTryCatchBlocks(ir, asm);
+        try {
+            mapLabelStmt(ir);
+            reBuildInstructions(ir, asm);
+            reBuildTryCatchBlocks(ir, asm);
+        } finally {
+            reset();
+        }
+    }
+
+    /**
+     * Clears the state of the last method converted, the converter is then as new.
+     */
+    public void reset() {
+        optimizeSynchronized = false;
+        clzCtx = null;
+        ir = null;
+        asm = null;
+        lockMap.clear();
     }
 
     private void mapLabelStmt(IrMethod ir) {
@@ -133,7 +156,6 @@ public class IR2JConverter implements Opcodes {
         for (Local local : ir.locals) {
             maxLocalIndex = Math.max(maxLocalIndex, local.lsIndex);
         }
-        Map<String, Integer> lockMap = new HashMap<>();
         for (Stmt st : ir.stmts) {
             switch (st.st) {
             case LABEL:
@@ -0,0 +1,34 @@
+package com.googlecode.d2j.dex;
+
+import java.io.IOException;
+
+/**
+ * Receives the classes converted by {@link Dex2jar#to(ClassOutputSink)}, a lambda is enough to consume them directly.
+ * <p>
+ * With {@link Dex2jar#parallelism(int)} or {@link Dex2jar#executor(java.util.concurrent.ExecutorService)} it is
+ * called from many threads at once.
+ *
+ * @see DirectoryClassOutputSink
+ * @see JarClassOutputSink
+ * @see MapClassOutputSink
+ * @see QueueClassOutputSink
+ */
+public interface ClassOutputSink {
+
+    /**
+     * @param order     the position of the class in the dex, unique for each class
+     * @param className the internal name of the class
+     * @param data      the content of the .class file
+     */
+    void write(int order, String className, byte[] data) throws IOException;
+
+    /**
+     * Called instead of {@link #write(int, String, byte[])} for an order that has no class, as when the class fails
+     * to convert or is skipped by the reader. A sink that writes the classes in order can move on past it.
+     *
+     * @param order the position of the class in the dex
+     */
+    default void skip(int order) throws IOException {
+    }
+
+}
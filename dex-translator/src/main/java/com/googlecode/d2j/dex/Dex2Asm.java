@@ -1,6 +1,7 @@
 package com.googlecode.d2j.dex;
 
 import com.googlecode.d2j.DexConstants;
+import com.googlecode.d2j.DexException;
 import com.googlecode.d2j.DexType;
 import com.googlecode.d2j.Field;
 import com.googlecode.d2j.Method;
@@ -8,12 +9,20 @@ import com.googlecode.d2j.MethodHandle;
 import com.googlecode.d2j.Proto;
 import com.googlecode.d2j.Visibility;
 import com.googlecode.d2j.converter.Dex2IRConverter;
+import com.googlecode.d2j.converter.Dex2JConverter;
 import com.googlecode.d2j.converter.IR2JConverter;
 import com.googlecode.d2j.node.DexAnnotationNode;
 import com.googlecode.d2j.node.DexClassNode;
 import com.googlecode.d2j.node.DexFieldNode;
 import com.googlecode.d2j.node.DexFileNode;
 import com.googlecode.d2j.node.DexMethodNode;
+import com.googlecode.d2j.reader.BaseDexFileReader;
+import com.googlecode.d2j.reader.DexFileReader;
+import com.googlecode.d2j.visitors.DexAnnotationVisitor;
+import com.googlecode.d2j.visitors.DexClassVisitor;
+import com.googlecode.d2j.visitors.DexFieldVisitor;
+import com.googlecode.d2j.visitors.DexFileVisitor;
+import com.googlecode.d2j.visitors.DexMethodVisitor;
 import com.googlecode.dex2jar.ir.IrMethod;
 import com.googlecode.dex2jar.ir.ts.AggTransformer;
 import com.googlecode.dex2jar.ir.ts.CleanLabel;
@@ -24,6 +33,7 @@ import com.googlecode.dex2jar.ir.ts.Ir2JRegAssignTransformer;
 import com.googlecode.dex2jar.ir.ts.MultiArrayTransformer;
 import com.googlecode.dex2jar.ir.ts.NewTransformer;
 import com.googlecode.dex2jar.ir.ts.NpeTransformer;
+import com.googlecode.dex2jar.ir.ts.PassManager;
 import com.googlecode.dex2jar.ir.ts.RemoveConstantFromSSA;
 import com.googlecode.dex2jar.ir.ts.RemoveLocalFromSSA;
 import com.googlecode.dex2jar.ir.ts.TypeTransformer;
@@ -38,11 +48,18 @@ import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Random;
 import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.LongAdder;
 import org.objectweb.asm.AnnotationVisitor;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
@@ -54,6 +71,9 @@ import org.objectweb.asm.Type;
 import org.objectweb.asm.signature.SignatureReader;
 import org.objectweb.asm.signature.SignatureWriter;
 import org.objectweb.asm.tree.InnerClassNode;
+import org.objectweb.asm.tree.LocalVariableNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TryCatchBlockNode;
 
 public class Dex2Asm {
 
@@ -77,10 +97,16 @@ public class Dex2Asm {
 
         public String hexDecodeMethodNamePrefix;
 
-        public String buildHexDecodeMethodName(String x) {
+        /**
+         * the code of the methods converted ahead on the method executor
+         */
+        private Map<DexMethodNode, FutureTask<CodeNode>> codes;
+
+        public synchronized String buildHexDecodeMethodName(String x) {
             if (hexDecodeMethodNamePrefix == null) {
+                // seeded by the class, so the name does not depend on the order the classes are converted in
                 byte[] d = new byte[4];
-                Dex2jar.random.nextBytes(d);
+                new Random(Objects.hashCode(classDescriptor)).nextBytes(d);
                 hexDecodeMethodNamePrefix = "$d2j$hex$" + IR2JConverter.hexEncode(d);
             }
             return hexDecodeMethodNamePrefix + "$decode_" + x;
@@ -141,8 +167,66 @@ public class Dex2Asm {
 
     }
 
+    /**
+     * the code of a method converted on the method executor, replayed later to the real {@link MethodVisitor}
+     */
+    private static class CodeNode extends MethodNode {
+
+        boolean maxsVisited;
+
+        CodeNode() {
+            super(Constants.ASM_VERSION, 0, null, null, null, null);
+        }
+
+        @Override
+        public void visitMaxs(int maxStack, int maxLocals) {
+            super.visitMaxs(maxStack, maxLocals);
+            maxsVisited = true;
+        }
+
+        void replay(MethodVisitor mv) {
+            // the labels are visited again by mv
+            instructions.resetLabels();
+            for (TryCatchBlockNode tryCatchBlock : tryCatchBlocks) {
+                tryCatchBlock.accept(mv);
+            }
+            instructions.accept(mv);
+            if (localVariables != null) {
+                for (LocalVariableNode localVariable : localVariables) {
+                    localVariable.accept(mv);
+                }
+            }
+            if (maxsVisited) {
+                mv.visitMaxs(maxStack, maxLocals);
+            }
+        }
+
+    }
+
     protected static final int ACC_INTERFACE_ABSTRACT = (Opcodes.ACC_INTERFACE | Opcodes.ACC_ABSTRACT);
 
+    /**
+     * the default number of dex instructions above which the methods of a class are converted in parallel
+     */
+    public static final int DEFAULT_METHOD_PARALLEL_THRESHOLD = 20000;
+
+    private ExecutorService methodExecutor;
+
+    private int methodParallelThreshold = DEFAULT_METHOD_PARALLEL_THRESHOLD;
+
+    private boolean trivialMethodsWithoutIr;
+
+    private final LongAdder trivialMethodCount = new LongAdder();
+
+    /**
+     * the converters of {@link #dex2ir(DexMethodNode)} and {@link #ir2j(IrMethod, MethodVisitor, ClzCtx)}, reused by
+     * the methods converted on a thread
+     */
+    private static final ThreadLocal<Dex2IRConverter> DEX2IR_CONVERTERS =
+            ThreadLocal.withInitial(Dex2IRConverter::new);
+
+    private static final ThreadLocal<IR2JConverter> IR2J_CONVERTERS = ThreadLocal.withInitial(IR2JConverter::new);
+
     private static final int NO_CODE_MASK = DexConstants.ACC_ABSTRACT | DexConstants.ACC_NATIVE
             | DexConstants.ACC_ANNOTATION;
 
@@ -180,6 +264,31 @@ public class Dex2Asm {
 
     protected static final MultiArrayTransformer T_MULTI_ARRAY = new MultiArrayTransformer();
 
+    private final PassManager optimizePasses = new PassManager()
+            .add("clean-label", T_CLEAN_LABEL)
+            .add("dead-code", T_DEAD_CODE)
+            .add("remove-local", T_REMOVE_LOCAL)
+            .add("remove-const", T_REMOVE_CONST)
+            .add("zero", T_ZERO)
+            .add("npe", T_NPE)
+            .add("dead-code", T_DEAD_CODE).ifChanged("npe")
+            .add("remove-local", T_REMOVE_LOCAL).ifChanged("npe")
+            .add("remove-const", T_REMOVE_CONST).ifChanged("npe")
+            .add("new", T_NEW)
+            .add("fill-array", T_FILL_ARRAY)
+            .add("agg", T_AGG)
+            .add("multi-array", T_MULTI_ARRAY)
+            .add("void-invoke", T_VOID_INVOKE)
+            // https://github.com/pxb1988/dex2jar/issues/477
+            // dead code found in unssa, clean up
+            .add("dead-code", T_DEAD_CODE)
+            .add("remove-local", T_REMOVE_LOCAL)
+            .add("remove-const", T_REMOVE_CONST)
+            .add("type", T_TYPE)
+            .add("unssa", T_UNSSA).when(m -> m.phiLabels != null && !m.phiLabels.isEmpty())
+            .add("trim-exception", T_TRIM_EX).when(m -> !m.traps.isEmpty())
+            .add("reg-assign", T_IR_2_J_REG_ASSIGN).when(m -> !m.locals.isEmpty());
+
     private static int clearClassAccess(boolean isInner, int access) {
         if ((access & Opcodes.ACC_INTERFACE) == 0) { // issue 55
             access |= Opcodes.ACC_SUPER; // 解决生成的class文件使用dx重新转换时使用的指令与原始指令不同的问题
@@ -374,63 +483,104 @@ public class Dex2Asm {
     protected static Map<String, Clz> collectClzInfo(DexFileNode fileNode) {
         Map<String, Clz> classes = new HashMap<>();
         for (DexClassNode classNode : fileNode.clzs) {
-            Clz clz = get(classes, classNode.className);
-            clz.access = (clz.access & ~ACC_INTERFACE_ABSTRACT) | classNode.access;
-            if (classNode.anns != null) {
-                for (DexAnnotationNode ann : classNode.anns) {
-                    if (ann.visibility == Visibility.SYSTEM) {
-                        switch (ann.type) {
-                        case DexConstants.ANNOTATION_ENCLOSING_CLASS_TYPE: {
-                            DexType type = (DexType) findAnnotationAttribute(ann, "value");
-                            Clz enclosingClass = get(classes, type.desc);
-                            clz.enclosingClass = enclosingClass;
-
-                            // apply patch from ChaeHoon Lim,
-                            // obfuscated code may declare itself as enclosing class
-                            // which cause dex2jar to endless loop
-                            //if(!clz.name.equals(clz.enclosingClass.name)) {
-                            //    enclosingClass.addInner(clz);
-                            //}
-                            enclosingClass.addInner(clz);
+            collectClzInfo(classes, classNode);
+        }
+        return classes;
+    }
 
-                        }
-                        break;
-                        case DexConstants.ANNOTATION_ENCLOSING_METHOD_TYPE: {
-                            Method m = (Method) findAnnotationAttribute(ann, "value");
-                            Clz enclosingClass = get(classes, m.getOwner());
-                            clz.enclosingClass = enclosingClass;
-                            clz.enclosingMethod = m;
-                            enclosingClass.addInner(clz);
-                        }
-                        break;
-                        case DexConstants.ANNOTATION_INNER_CLASS_TYPE: {
-                            for (DexAnnotationNode.Item it : ann.items) {
-                                if ("accessFlags".equals(it.name)) {
-                                    clz.access |= (Integer) it.value & ~ACC_INTERFACE_ABSTRACT;
-                                } else if ("name".equals(it.name)) {
-                                    clz.innerName = (String) it.value;
-                                }
+    /**
+     * Collects the inner-class metadata of all the classes in the reader, without keeping their fields, methods or
+     * code. This is the cheap pre-pass of {@link #convertDex(BaseDexFileReader, int, ClassVisitorFactory)}.
+     */
+    protected static Map<String, Clz> collectClzInfo(BaseDexFileReader reader, int config) {
+        final Map<String, Clz> classes = new HashMap<>();
+        reader.accept(new DexFileVisitor() {
+            @Override
+            public DexClassVisitor visit(int accessFlags, String className, String superClass,
+                                         String[] interfaceNames) {
+                return new DexClassNode(accessFlags, className, superClass, interfaceNames) {
+                    @Override
+                    public DexAnnotationVisitor visitAnnotation(String name, Visibility visibility) {
+                        // only system annotations carry inner-class information
+                        return visibility == Visibility.SYSTEM ? super.visitAnnotation(name, visibility) : null;
+                    }
+
+                    @Override
+                    public DexFieldVisitor visitField(int accessFlags, Field field, Object value) {
+                        return null;
+                    }
+
+                    @Override
+                    public DexMethodVisitor visitMethod(int accessFlags, Method method) {
+                        return null;
+                    }
+
+                    @Override
+                    public void visitEnd() {
+                        collectClzInfo(classes, this);
+                    }
+                };
+            }
+        }, config | DexFileReader.SKIP_CODE | DexFileReader.SKIP_DEBUG | DexFileReader.SKIP_FIELD_CONSTANT);
+        return classes;
+    }
+
+    protected static void collectClzInfo(Map<String, Clz> classes, DexClassNode classNode) {
+        Clz clz = get(classes, classNode.className);
+        clz.access = (clz.access & ~ACC_INTERFACE_ABSTRACT) | classNode.access;
+        if (classNode.anns != null) {
+            for (DexAnnotationNode ann : classNode.anns) {
+                if (ann.visibility == Visibility.SYSTEM) {
+                    switch (ann.type) {
+                    case DexConstants.ANNOTATION_ENCLOSING_CLASS_TYPE: {
+                        DexType type = (DexType) findAnnotationAttribute(ann, "value");
+                        Clz enclosingClass = get(classes, type.desc);
+                        clz.enclosingClass = enclosingClass;
+
+                        // apply patch from ChaeHoon Lim,
+                        // obfuscated code may declare itself as enclosing class
+                        // which cause dex2jar to endless loop
+                        //if(!clz.name.equals(clz.enclosingClass.name)) {
+                        //    enclosingClass.addInner(clz);
+                        //}
+                        enclosingClass.addInner(clz);
+
+                    }
+                    break;
+                    case DexConstants.ANNOTATION_ENCLOSING_METHOD_TYPE: {
+                        Method m = (Method) findAnnotationAttribute(ann, "value");
+                        Clz enclosingClass = get(classes, m.getOwner());
+                        clz.enclosingClass = enclosingClass;
+                        clz.enclosingMethod = m;
+                        enclosingClass.addInner(clz);
+                    }
+                    break;
+                    case DexConstants.ANNOTATION_INNER_CLASS_TYPE: {
+                        for (DexAnnotationNode.Item it : ann.items) {
+                            if ("accessFlags".equals(it.name)) {
+                                clz.access |= (Integer) it.value & ~ACC_INTERFACE_ABSTRACT;
+                            } else if ("name".equals(it.name)) {
+                                clz.innerName = (String) it.value;
                             }
                         }
-                        break;
-                        case DexConstants.ANNOTATION_MEMBER_CLASSES_TYPE: {
-                            Object[] ts = (Object[]) findAnnotationAttribute(ann, "value");
-                            for (Object v : ts) {
-                                DexType type = (DexType) v;
-                                Clz inner = get(classes, type.desc);
-                                clz.addInner(inner);
-                                inner.enclosingClass = clz;
-                            }
+                    }
+                    break;
+                    case DexConstants.ANNOTATION_MEMBER_CLASSES_TYPE: {
+                        Object[] ts = (Object[]) findAnnotationAttribute(ann, "value");
+                        for (Object v : ts) {
+                            DexType type = (DexType) v;
+                            Clz inner = get(classes, type.desc);
+                            clz.addInner(inner);
+                            inner.enclosingClass = clz;
                         }
+                    }
+                    break;
+                    default:
                         break;
-                        default:
-                            break;
-                        }
                     }
                 }
             }
         }
-        return classes;
     }
 
     public void convertClass(DexClassNode classNode, ClassVisitorFactory cvf, DexFileNode fileNode) {
@@ -588,8 +738,20 @@ public class Dex2Asm {
             clzCtx.classDescriptor = classNode.className;
             for (DexMethodNode methodNode : classNode.methods) {
                 DexFix.fixTooLongStringConstant(methodNode);
+            }
+            if (methodExecutor != null && methodParallelThreshold > 0
+                    && countInstructions(classNode) >= methodParallelThreshold) {
+                submitCodes(classNode, clzCtx);
+            }
+            for (DexMethodNode methodNode : classNode.methods) {
                 convertMethod(classNode, methodNode, cv, clzCtx);
             }
+            if (clzCtx.codes != null) { // not visited by convertCode
+                for (FutureTask<CodeNode> code : clzCtx.codes.values()) {
+                    code.cancel(false);
+                }
+                clzCtx.codes = null;
+            }
             if (clzCtx.hexDecodeMethodNamePrefix != null) {
                 addHexDecodeMethod(cv, classNode.className.replaceFirst("^L", "").replaceAll(";$", ""),
                         clzCtx.hexDecodeMethodNamePrefix);
@@ -655,7 +817,94 @@ public class Dex2Asm {
         }
     }
 
+    /**
+     * Converts the methods of classes with at least {@code threshold} dex instructions on the executor, their code is
+     * then visited in the original order, so the output is the same as a serial conversion. The calling thread also
+     * converts the methods not started yet, so the executor may be the one converting the classes.
+     *
+     * @param executor  {@code null} to convert the methods on the calling thread
+     * @param threshold a value lower than 1 disables the parallel conversion of methods
+     */
+    public void setMethodExecutor(ExecutorService executor, int threshold) {
+        this.methodExecutor = executor;
+        this.methodParallelThreshold = threshold;
+    }
+
+    /**
+     * Converts the trivial methods, like getters and setters, straight to bytecode with {@link Dex2JConverter}, which
+     * gives the same bytecode as the IR. Off by default, as {@link #dex2ir(DexMethodNode)}, {@link #optimize(IrMethod)}
+     * and {@link #ir2j(IrMethod, MethodVisitor, ClzCtx)} are not called for them, whatever a subclass overrides;
+     * {@link Dex2jar} turns it on unless the IR is printed.
+     */
+    public void setTrivialMethodsWithoutIr(boolean trivialMethodsWithoutIr) {
+        this.trivialMethodsWithoutIr = trivialMethodsWithoutIr;
+    }
+
+    /**
+     * @return the number of methods converted without the IR so far
+     */
+    public long getTrivialMethodCount() {
+        return trivialMethodCount.sum();
+    }
+
+    private static int countInstructions(DexClassNode classNode) {
+        int count = 0;
+        for (DexMethodNode methodNode : classNode.methods) {
+            if (methodNode.codeNode != null && methodNode.codeNode.stmts != null) {
+                count += methodNode.codeNode.stmts.size();
+            }
+        }
+        return count;
+    }
+
+    private void submitCodes(DexClassNode classNode, ClzCtx clzCtx) {
+        Map<DexMethodNode, FutureTask<CodeNode>> codes = new IdentityHashMap<>();
+        for (DexMethodNode methodNode : classNode.methods) {
+            if ((NO_CODE_MASK & methodNode.access) == 0 && methodNode.codeNode != null) {
+                FutureTask<CodeNode> code = new FutureTask<>(() -> {
+                    CodeNode codeNode = new CodeNode();
+                    convertCode0(methodNode, codeNode, clzCtx);
+                    return codeNode;
+                });
+                codes.put(methodNode, code);
+                methodExecutor.execute(code);
+            }
+        }
+        clzCtx.codes = codes;
+    }
+
     public void convertCode(DexMethodNode methodNode, MethodVisitor mv, ClzCtx clzCtx) {
+        FutureTask<CodeNode> code = clzCtx.codes == null ? null : clzCtx.codes.remove(methodNode);
+        if (code == null) {
+            convertCode0(methodNode, mv, clzCtx);
+            return;
+        }
+        code.run(); // if not started yet
+        CodeNode codeNode;
+        try {
+            codeNode = code.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new DexException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DexException(e, "interrupted while converting %s", methodNode.method);
+        }
+        codeNode.replay(mv);
+    }
+
+    private void convertCode0(DexMethodNode methodNode, MethodVisitor mv, ClzCtx clzCtx) {
+        if (trivialMethodsWithoutIr && new Dex2JConverter(0 != (methodNode.access & DexConstants.ACC_STATIC),
+                methodNode.method, methodNode.codeNode).convert(mv)) {
+            mv.visitMaxs(-1, -1);
+            trivialMethodCount.increment();
+            return;
+        }
         IrMethod irMethod = dex2ir(methodNode);
         optimize(irMethod);
         ir2j(irMethod, mv, clzCtx);
@@ -664,10 +913,134 @@ public class Dex2Asm {
     public void convertDex(DexFileNode fileNode, ClassVisitorFactory cvf) {
         if (fileNode.clzs != null) {
             Map<String, Clz> classes = collectClzInfo(fileNode);
-            for (DexClassNode classNode : fileNode.clzs) {
-                convertClass(fileNode, classNode, cvf, classes);
+            for (int i = 0; i < fileNode.clzs.size(); i++) {
+                try {
+                    convertClass(fileNode, fileNode.clzs.get(i), cvf, classes);
+                } finally {
+                    afterClass(i);
+                }
+            }
+        }
+    }
+
+    /**
+     * Called by the {@code convertDex} methods once the class at an index is done with, whether it was converted,
+     * skipped by the reader or failed. The index is the one of {@link DexFileNode#clzs}, or of the reader when
+     * streaming. With an executor it is called from the thread that converted the class.
+     */
+    protected void afterClass(int classIdx) {
+    }
+
+    /**
+     * Called by the streaming {@code convertDex} methods once the inner-class metadata is gathered from the reader,
+     * before the classes are read again to be converted.
+     */
+    protected void beforeClasses(BaseDexFileReader reader) {
+    }
+
+    /**
+     * Converts the classes of the reader one at a time, so only a single {@link DexClassNode} is kept in memory. The
+     * inner-class metadata is gathered in a pre-pass over the class annotations.
+     *
+     * @param config config flags for {@link BaseDexFileReader#accept(DexFileVisitor, int, int)}
+     */
+    public void convertDex(BaseDexFileReader reader, int config, ClassVisitorFactory cvf) {
+        Map<String, Clz> classes = collectClzInfo(reader, config);
+        beforeClasses(reader);
+        int dexVersion = reader.getDexVersion();
+        int size = reader.getClassNames().size();
+        for (int i = 0; i < size; i++) {
+            try {
+                DexFileNode fileNode = new DexFileNode();
+                reader.accept(fileNode, i, config);
+                for (DexClassNode classNode : fileNode.clzs) {
+                    convertClass(dexVersion, classNode, cvf, classes);
+                }
+            } finally {
+                afterClass(i);
+            }
+        }
+    }
+
+    /**
+     * Same as {@link #convertDex(DexFileNode, ClassVisitorFactory)}, but each class is converted by a task on the
+     * executor. The {@link ClassVisitorFactory} and the visitors it creates must be thread-safe. Returns once all the
+     * classes are converted.
+     */
+    public void convertDex(DexFileNode fileNode, ClassVisitorFactory cvf, ExecutorService executor) {
+        if (fileNode.clzs != null) {
+            Map<String, Clz> classes = collectClzInfo(fileNode);
+            List<Future<?>> futures = new ArrayList<>(fileNode.clzs.size());
+            for (int i = 0; i < fileNode.clzs.size(); i++) {
+                final int classIdx = i;
+                final DexClassNode classNode = fileNode.clzs.get(i);
+                futures.add(executor.submit(() -> {
+                    try {
+                        convertClass(fileNode, classNode, cvf, classes);
+                    } finally {
+                        afterClass(classIdx);
+                    }
+                }));
+            }
+            waitFor(futures);
+        }
+    }
+
+    /**
+     * Same as {@link #convertDex(BaseDexFileReader, int, ClassVisitorFactory)}, but each class is read and converted
+     * by a task on the executor. The {@link ClassVisitorFactory} and the visitors it creates must be thread-safe.
+     * Returns once all the classes are converted.
+     */
+    public void convertDex(BaseDexFileReader reader, int config, ClassVisitorFactory cvf, ExecutorService executor) {
+        Map<String, Clz> classes = collectClzInfo(reader, config);
+        beforeClasses(reader);
+        int dexVersion = reader.getDexVersion();
+        int size = reader.getClassNames().size();
+        List<Future<?>> futures = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            final int classIdx = i;
+            futures.add(executor.submit(() -> {
+                try {
+                    DexFileNode fileNode = new DexFileNode();
+                    reader.accept(fileNode, classIdx, config);
+                    for (DexClassNode classNode : fileNode.clzs) {
+                        convertClass(dexVersion, classNode, cvf, classes);
+                    }
+                } finally {
+                    afterClass(classIdx);
+                }
+            }));
+        }
+        waitFor(futures);
+    }
+
+    /**
+     * waits for all the tasks, the first failure is thrown once they are all done
+     */
+    private static void waitFor(List<Future<?>> futures) {
+        Throwable failure = null;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                for (Future<?> f : futures) {
+                    f.cancel(true);
+                }
+                throw new DexException(e, "interrupted while converting classes");
             }
         }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+        } else if (failure != null) {
+            throw new DexException(failure);
+        }
     }
 
     public void convertField(DexClassNode classNode, DexFieldNode fieldNode, ClassVisitor cv) {
@@ -868,7 +1241,7 @@ public class Dex2Asm {
     }
 
     public IrMethod dex2ir(DexMethodNode methodNode) {
-        return new Dex2IRConverter()
+        return DEX2IR_CONVERTERS.get()
                 .convert(0 != (methodNode.access & DexConstants.ACC_STATIC), methodNode.method, methodNode.codeNode);
     }
 
@@ -891,7 +1264,7 @@ public class Dex2Asm {
     }
 
     public void ir2j(IrMethod irMethod, MethodVisitor mv, ClzCtx clzCtx) {
-        new IR2JConverter()
+        ir2jConverter()
                 .optimizeSynchronized(false)
                 .clzCtx(clzCtx)
                 .ir(irMethod)
@@ -900,35 +1273,22 @@ public class Dex2Asm {
         mv.visitMaxs(-1, -1);
     }
 
+    /**
+     * @return the IR to bytecode converter of the current thread, it is reset after each conversion
+     */
+    protected static IR2JConverter ir2jConverter() {
+        return IR2J_CONVERTERS.get();
+    }
+
     public void optimize(IrMethod irMethod) {
-        T_CLEAN_LABEL.transform(irMethod);
-        T_DEAD_CODE.transform(irMethod);
-        T_REMOVE_LOCAL.transform(irMethod);
-        T_REMOVE_CONST.transform(irMethod);
-        T_ZERO.transform(irMethod);
-        if (T_NPE.transformReportChanged(irMethod)) {
-            T_DEAD_CODE.transform(irMethod);
-            T_REMOVE_LOCAL.transform(irMethod);
-            T_REMOVE_CONST.transform(irMethod);
-        }
-        T_NEW.transform(irMethod);
-        T_FILL_ARRAY.transform(irMethod);
-        T_AGG.transform(irMethod);
-        T_MULTI_ARRAY.transform(irMethod);
-        T_VOID_INVOKE.transform(irMethod);
-
-        {
-            // https://github.com/pxb1988/dex2jar/issues/477
-            // dead code found in unssa, clean up
-            T_DEAD_CODE.transform(irMethod);
-            T_REMOVE_LOCAL.transform(irMethod);
-            T_REMOVE_CONST.transform(irMethod);
-        }
+        optimizePasses.run(irMethod);
+    }
 
-        T_TYPE.transform(irMethod);
-        T_UNSSA.transform(irMethod);
-        T_TRIM_EX.transform(irMethod);
-        T_IR_2_J_REG_ASSIGN.transform(irMethod);
+    /**
+     * @return the passes of {@link #optimize(IrMethod)}, with the statistics of the methods optimized so far
+     */
+    public PassManager getOptimizePasses() {
+        return optimizePasses;
     }
 
     /**
@@ -1,14 +1,19 @@
 package com.googlecode.d2j.dex;
 
-import com.googlecode.d2j.converter.IR2JConverter;
+import com.googlecode.d2j.Method;
+import com.googlecode.d2j.node.DexClassNode;
 import com.googlecode.d2j.node.DexFileNode;
 import com.googlecode.d2j.node.DexMethodNode;
 import com.googlecode.d2j.reader.BaseDexFileReader;
 import com.googlecode.d2j.reader.DexFileReader;
 import com.googlecode.d2j.reader.MultiDexFileReader;
+import com.googlecode.d2j.visitors.DexClassVisitor;
+import com.googlecode.d2j.visitors.DexFileVisitor;
 import com.googlecode.dex2jar.ir.IrMethod;
 import com.googlecode.dex2jar.ir.stmt.LabelStmt;
 import com.googlecode.dex2jar.ir.stmt.Stmt;
+import com.googlecode.dex2jar.ir.ts.PassManager;
+import com.googlecode.dex2jar.ir.ts.StatedTransformer;
 import com.googlecode.dex2jar.tools.Constants;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
@@ -16,16 +21,22 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.FileSystem;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.spi.FileSystemProvider;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Collectors;
+import java.util.zip.Deflater;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.MethodVisitor;
@@ -33,9 +44,12 @@ import org.objectweb.asm.MethodVisitor;
 public final class Dex2jar {
 
     /**
-     * For rather deterministic output, we use a fixed seed for random number generator.
-     * This field is freely writable by any thread. Use carefully.
+     * Not used anymore, the name of the hex decode method of a class is drawn from a {@link Random} seeded by the
+     * class descriptor, so the output does not depend on the order the classes are converted in.
+     *
+     * @deprecated the output is deterministic without a shared seed
      */
+    @Deprecated
     public static Random random = new Random(0);
 
     private DexExceptionHandler exceptionHandler;
@@ -46,6 +60,63 @@ public final class Dex2jar {
 
     private int v3Config;
 
+    private int parallelism;
+
+    private ExecutorService executor;
+
+    private int methodParallelThreshold = Dex2Asm.DEFAULT_METHOD_PARALLEL_THRESHOLD;
+
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+    private boolean storeClasses;
+
+    /**
+     * the passes of the translated methods, with their statistics
+     */
+    private final PassManager passes = new PassManager()
+            .add("clean-label", ExDex2Asm.T_CLEAN_LABEL)
+            .add("dead-code", ExDex2Asm.T_DEAD_CODE)
+            .add("remove-local", ExDex2Asm.T_REMOVE_LOCAL)
+            .add("remove-const", ExDex2Asm.T_REMOVE_CONST)
+            .add("zero", ExDex2Asm.T_ZERO)
+            .add("npe", ExDex2Asm.T_NPE)
+            .add("dead-code", ExDex2Asm.T_DEAD_CODE).ifChanged("npe")
+            .add("remove-local", ExDex2Asm.T_REMOVE_LOCAL).ifChanged("npe")
+            .add("remove-const", ExDex2Asm.T_REMOVE_CONST).ifChanged("npe")
+            .add("new", ExDex2Asm.T_NEW)
+            .add("fill-array", ExDex2Asm.T_FILL_ARRAY)
+            .add("agg", ExDex2Asm.T_AGG)
+            .add("multi-array", ExDex2Asm.T_MULTI_ARRAY)
+            .add("void-invoke", ExDex2Asm.T_VOID_INVOKE)
+            .add("print-ir", new StatedTransformer() {
+                @Override
+                public boolean transformReportChanged(IrMethod irMethod) {
+                    int i = 0;
+                    for (Stmt p : irMethod.stmts) {
+                        if (p.st == Stmt.ST.LABEL) {
+                            LabelStmt labelStmt = (LabelStmt) p;
+                            labelStmt.displayName = "L" + i++;
+                        }
+                    }
+                    System.out.println(irMethod);
+                    return false;
+                }
+            }).when(m -> 0 != (v3Config & V3.PRINT_IR))
+            // https://github.com/pxb1988/dex2jar/issues/477
+            // dead code found in unssa, clean up
+            .add("dead-code", ExDex2Asm.T_DEAD_CODE)
+            .add("remove-local", ExDex2Asm.T_REMOVE_LOCAL)
+            .add("remove-const", ExDex2Asm.T_REMOVE_CONST)
+            .add("type", ExDex2Asm.T_TYPE)
+            .add("unssa", ExDex2Asm.T_UNSSA).when(m -> m.phiLabels != null && !m.phiLabels.isEmpty())
+            .add("reg-assign", ExDex2Asm.T_IR_2_J_REG_ASSIGN).when(m -> !m.locals.isEmpty())
+            .add("trim-exception", ExDex2Asm.T_TRIM_EX).when(m -> !m.traps.isEmpty());
+
+    /**
+     * the number of methods converted without building their ir, so without running the passes
+     */
+    private final LongAdder trivialMethods = new LongAdder();
+
     private Dex2jar(BaseDexFileReader reader) {
         super();
         this.reader = reader;
@@ -53,9 +124,14 @@ public final class Dex2jar {
     }
 
     public void doTranslate(final Path dist) {
-        doTranslate(dist, null);
+        to(new DirectoryClassOutputSink(dist));
     }
 
+    /**
+     * @deprecated use {@link #to(ClassOutputSink)} with a {@link MapClassOutputSink} or a
+     * {@link QueueClassOutputSink}, which do not frame the classes into one growing buffer
+     */
+    @Deprecated
     public void doTranslate(final ByteArrayOutputStream baos) {
         doTranslate(null, baos);
     }
@@ -70,25 +146,89 @@ public final class Dex2jar {
      *
      * @param dist The destination path where the translated class file should be written, or {@code null} if unwanted.
      * @param baos An output stream used for intermediate data storage, or {@code null} if unwanted.
+     * @deprecated use {@link #to(ClassOutputSink)}
      */
+    @Deprecated
     public void doTranslate(final Path dist, final ByteArrayOutputStream baos) {
+        final ClassOutputSink dir = dist == null ? null : new DirectoryClassOutputSink(dist);
+        to((order, className, data) -> {
+            if (baos != null) {
+                // length-prefixed name and content of each class
+                byte[] classNameBytes = className.getBytes(StandardCharsets.UTF_8);
+                synchronized (baos) {
+                    baos.write(ByteBuffer.allocate(4).putInt(classNameBytes.length).array());
+                    baos.write(classNameBytes);
+                    baos.write(ByteBuffer.allocate(4).putInt(data.length).array());
+                    baos.write(data);
+                }
+            }
+            if (dir != null) {
+                dir.write(order, className, data);
+            }
+        });
+    }
 
-        DexFileNode fileNode = new DexFileNode();
-        try {
-            reader.accept(fileNode, readerConfig | DexFileReader.IGNORE_READ_EXCEPTION);
-        } catch (Exception ex) {
-            exceptionHandler.handleFileException(ex);
+    /**
+     * Translates the dex file and hands each class over to the sink, which is not closed.
+     */
+    public void to(final ClassOutputSink sink) {
+        final int config = readerConfig | DexFileReader.IGNORE_READ_EXCEPTION;
+        final boolean streaming = 0 != (v3Config & V3.STREAMING);
+        ExecutorService executor = this.executor;
+        boolean ownExecutor = false;
+        if (executor == null && parallelism > 1) {
+            executor = new ForkJoinPool(parallelism);
+            ownExecutor = true;
         }
+        // the classes may be converted by many threads
+        final DexExceptionHandler exceptionHandler = executor == null || this.exceptionHandler == null
+                ? this.exceptionHandler
+                : new SynchronizedDexExceptionHandler(this.exceptionHandler);
 
-        Map<String, String> parentsByName = fileNode.clzs.stream()
-                .filter(c -> c.superClass != null)
-                .collect(Collectors.toMap(
-                        c -> toInternalClassName(c.className),
-                        c -> toInternalClassName(c.superClass)));
+        DexFileNode fileNode = new DexFileNode();
+        final Map<String, String> parentsByName;
+        if (streaming) {
+            parentsByName = (readerConfig & DexFileReader.COMPUTE_FRAMES) == 0
+                    ? new HashMap<>()
+                    : collectParents(reader);
+        } else {
+            try {
+                reader.accept(fileNode, config);
+            } catch (Exception ex) {
+                exceptionHandler.handleFileException(ex);
+            }
+
+            parentsByName = fileNode.clzs.stream()
+                    .filter(c -> c.superClass != null)
+                    .collect(Collectors.toMap(
+                            c -> toInternalClassName(c.className),
+                            c -> toInternalClassName(c.superClass)));
+        }
+        // the position of the classes in the dex, whatever the order they are converted in
+        final Map<String, Integer> orders = new HashMap<>();
+        final List<String> classNames = new ArrayList<>();
+        if (streaming) {
+            classNames.addAll(reader.getClassNames());
+        } else if (fileNode.clzs != null) {
+            for (DexClassNode classNode : fileNode.clzs) {
+                classNames.add(classNode.className);
+            }
+        }
+        // the order of the class at each index of the conversion
+        final int[] classOrders = new int[classNames.size()];
+        for (int i = 0; i < classOrders.length; i++) {
+            String className = toInternalClassName(classNames.get(i));
+            orders.putIfAbsent(className, orders.size());
+            classOrders[i] = orders.get(className);
+        }
+        final AtomicInteger unknownOrder = new AtomicInteger(orders.size());
+        // the orders handed over to the sink, each one is either written or skipped
+        final AtomicIntegerArray released = new AtomicIntegerArray(orders.size());
 
         ClassVisitorFactory cvf = new ClassVisitorFactory() {
             @Override
             public ClassVisitor create(final String name) {
+                final Integer order = orders.get(name);
                 // If we choose to recompute the stack map frames, we need a special impl
                 final ClassWriter cw = (readerConfig & DexFileReader.COMPUTE_FRAMES) == 0
                         ? new ClassWriter(ClassWriter.COMPUTE_MAXS)
@@ -134,28 +274,16 @@ public final class Dex2jar {
                         } catch (Exception ex) {
                             System.err.printf("ASM failed to generate .class file: %s%n", className);
                             exceptionHandler.handleFileException(ex);
-                            return;
-                        }
-                        try {
-                            if (baos != null) {
-                                byte[] classNameBytes = className.getBytes(StandardCharsets.UTF_8);
-                                baos.write(ByteBuffer.allocate(4).putInt(classNameBytes.length).array());
-                                baos.write(classNameBytes);
-                                baos.write(ByteBuffer.allocate(4).putInt(data.length).array());
-                                baos.write(data);
+                            if (order != null) {
+                                skip(sink, released, order);
                             }
-                        } catch (IOException e) {
-                            e.printStackTrace(System.err);
+                            return;
                         }
                         try {
-                            if (dist != null) {
-                                Path dist1 = dist.resolve(className + ".class");
-                                Path parent = dist1.getParent();
-                                if (parent != null && !Files.exists(parent)) {
-                                    Files.createDirectories(parent);
-                                }
-                                Files.write(dist1, data);
+                            if (order != null) {
+                                released.set(order, 1);
                             }
+                            sink.write(order != null ? order : unknownOrder.getAndIncrement(), className, data);
                         } catch (IOException e) {
                             e.printStackTrace(System.err);
                         }
@@ -164,7 +292,7 @@ public final class Dex2jar {
             }
         };
 
-        new ExDex2Asm(exceptionHandler) {
+        ExDex2Asm dex2Asm = new ExDex2Asm(exceptionHandler) {
             public void convertCode(DexMethodNode methodNode, MethodVisitor mv, ClzCtx clzCtx) {
                 if ((readerConfig & DexFileReader.SKIP_CODE) != 0 && methodNode.method.getName().equals("<clinit>")) {
                     // also skip clinit
@@ -175,60 +303,122 @@ public final class Dex2jar {
 
             @Override
             public void optimize(IrMethod irMethod) {
-                T_CLEAN_LABEL.transform(irMethod);
-                /*if (0 != (v3Config & V3.TOPOLOGICAL_SORT)) {
-                    // T_topologicalSort.transform(irMethod);
-                }*/
-                T_DEAD_CODE.transform(irMethod);
-                T_REMOVE_LOCAL.transform(irMethod);
-                T_REMOVE_CONST.transform(irMethod);
-                T_ZERO.transform(irMethod);
-                if (T_NPE.transformReportChanged(irMethod)) {
-                    T_DEAD_CODE.transform(irMethod);
-                    T_REMOVE_LOCAL.transform(irMethod);
-                    T_REMOVE_CONST.transform(irMethod);
-                }
-                T_NEW.transform(irMethod);
-                T_FILL_ARRAY.transform(irMethod);
-                T_AGG.transform(irMethod);
-                T_MULTI_ARRAY.transform(irMethod);
-                T_VOID_INVOKE.transform(irMethod);
-                if (0 != (v3Config & V3.PRINT_IR)) {
-                    int i = 0;
-                    for (Stmt p : irMethod.stmts) {
-                        if (p.st == Stmt.ST.LABEL) {
-                            LabelStmt labelStmt = (LabelStmt) p;
-                            labelStmt.displayName = "L" + i++;
-                        }
-                    }
-                    System.out.println(irMethod);
-                }
-                {
-                    // https://github.com/pxb1988/dex2jar/issues/477
-                    // dead code found in unssa, clean up
-                    T_DEAD_CODE.transform(irMethod);
-                    T_REMOVE_LOCAL.transform(irMethod);
-                    T_REMOVE_CONST.transform(irMethod);
+                passes.run(irMethod);
+            }
+
+            @Override
+            protected void beforeClasses(BaseDexFileReader reader) {
+                // not before, the passes over the reader before the conversion would inflate each dex once more
+                if (reader instanceof MultiDexFileReader) {
+                    ((MultiDexFileReader) reader).setReleaseConsumed(true);
                 }
-                T_TYPE.transform(irMethod);
-                T_UNSSA.transform(irMethod);
-                T_IR_2_J_REG_ASSIGN.transform(irMethod);
-                T_TRIM_EX.transform(irMethod);
+            }
+
+            @Override
+            protected void afterClass(int classIdx) {
+                // a class the reader skipped, or that failed before its end, must not hold back the ones after it
+                skip(sink, released, classOrders[classIdx]);
             }
 
             @Override
             public void ir2j(IrMethod irMethod, MethodVisitor mv, ClzCtx clzCtx) {
-                new IR2JConverter()
+                ir2jConverter()
                         .optimizeSynchronized(0 != (V3.OPTIMIZE_SYNCHRONIZED & v3Config))
                         .clzCtx(clzCtx)
                         .ir(irMethod)
                         .asm(mv)
                         .convert();
             }
-        }.convertDex(fileNode, cvf);
+        };
+        dex2Asm.setMethodExecutor(executor, methodParallelThreshold);
+        // the trivial methods skip the passes
+        dex2Asm.setTrivialMethodsWithoutIr(0 == (v3Config & V3.PRINT_IR));
+        try {
+            if (executor == null) {
+                if (streaming) {
+                    dex2Asm.convertDex(reader, config, cvf);
+                } else {
+                    dex2Asm.convertDex(fileNode, cvf);
+                }
+            } else {
+                if (streaming) {
+                    dex2Asm.convertDex(reader, config, cvf, executor);
+                } else {
+                    dex2Asm.convertDex(fileNode, cvf, executor);
+                }
+            }
+        } finally {
+            trivialMethods.add(dex2Asm.getTrivialMethodCount());
+            if (ownExecutor) {
+                executor.shutdown();
+            }
+        }
 
     }
 
+    /**
+     * Skips an order of the sink, unless it is already written or skipped.
+     */
+    private static void skip(ClassOutputSink sink, AtomicIntegerArray released, int order) {
+        if (released.compareAndSet(order, 0, 1)) {
+            try {
+                sink.skip(order);
+            } catch (IOException e) {
+                e.printStackTrace(System.err);
+            }
+        }
+    }
+
+    /**
+     * Collects the super class of every class in the reader, without reading any class content.
+     */
+    private static Map<String, String> collectParents(BaseDexFileReader reader) {
+        final Map<String, String> parentsByName = new HashMap<>();
+        reader.accept(new DexFileVisitor() {
+            @Override
+            public DexClassVisitor visit(int accessFlags, String className, String superClass,
+                                         String[] interfaceNames) {
+                if (superClass != null) {
+                    parentsByName.put(toInternalClassName(className), toInternalClassName(superClass));
+                }
+                return null;
+            }
+        }, DexFileReader.IGNORE_READ_EXCEPTION);
+        return parentsByName;
+    }
+
+    /**
+     * Serializes the calls to a handler that is not thread-safe.
+     */
+    private static class SynchronizedDexExceptionHandler implements DexExceptionHandler {
+
+        private final DexExceptionHandler handler;
+
+        SynchronizedDexExceptionHandler(DexExceptionHandler handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public synchronized void handleFileException(Exception e) {
+            handler.handleFileException(e);
+        }
+
+        @Override
+        public synchronized void handleMethodTranslateException(Method method, DexMethodNode methodNode,
+                                                                MethodVisitor mv, Exception e) {
+            handler.handleMethodTranslateException(method, methodNode, mv, e);
+        }
+
+    }
+
+    /**
+     * @return the runs, changes, skips and time of each optimization pass over the methods translated so far, and the
+     *         number of trivial methods translated without them
+     */
+    public String getPassStatistics() {
+        return passes.getStatistics() + String.format("%-20s %10d%n", "trivial (no ir)", trivialMethods.sum());
+    }
+
     public DexExceptionHandler getExceptionHandler() {
         return exceptionHandler;
     }
@@ -297,6 +487,67 @@ public final class Dex2jar {
         return this;
     }
 
+    /**
+     * Reads, converts and writes one class at a time, so the peak memory is bounded by the largest class instead of
+     * the whole dex. The dex files of a {@link MultiDexFileReader} are dropped once their classes are converted.
+     */
+    public Dex2jar streaming(boolean b) {
+        if (b) {
+            this.v3Config |= V3.STREAMING;
+        } else {
+            this.v3Config &= ~V3.STREAMING;
+        }
+        return this;
+    }
+
+    public Dex2jar streaming() {
+        this.v3Config |= V3.STREAMING;
+        return this;
+    }
+
+    /**
+     * Converts the classes on a {@link ForkJoinPool} of the given number of threads, a value lower than 2 converts
+     * them on the calling thread. Ignored if an executor is set.
+     */
+    public Dex2jar parallelism(int parallelism) {
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Converts the classes on the executor, which is not shut down. {@code null} converts them according to
+     * {@link #parallelism(int)}.
+     */
+    public Dex2jar executor(ExecutorService executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * With {@link #parallelism(int)} or {@link #executor(ExecutorService)}, the methods of the classes with at least
+     * that number of dex instructions are also converted in parallel. A value lower than 1 disables it.
+     */
+    public Dex2jar methodParallelThreshold(int methodParallelThreshold) {
+        this.methodParallelThreshold = methodParallelThreshold;
+        return this;
+    }
+
+    /**
+     * The {@link Deflater} level of the classes written to a jar by {@link #to(Path)}.
+     */
+    public Dex2jar compressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+        return this;
+    }
+
+    /**
+     * Stores the classes written to a jar by {@link #to(Path)} without compression.
+     */
+    public Dex2jar storeClasses(boolean storeClasses) {
+        this.storeClasses = storeClasses;
+        return this;
+    }
+
     public Dex2jar topoLogicalSort() {
         this.v3Config |= V3.TOPOLOGICAL_SORT;
         return this;
@@ -322,31 +573,14 @@ public final class Dex2jar {
 
     public void to(Path file) throws IOException {
         if (Files.exists(file) && Files.isDirectory(file)) {
-            doTranslate(file);
+            to(new DirectoryClassOutputSink(file));
         } else {
-            try (FileSystem fs = createZip(file)) {
-                doTranslate(fs.getPath("/"));
+            try (JarClassOutputSink jar = new JarClassOutputSink(file, compressionLevel, storeClasses)) {
+                to(jar);
             }
         }
     }
 
-    private static FileSystem createZip(Path output) throws IOException {
-        Map<String, Object> env = new HashMap<>();
-        env.put("create", "true");
-        Files.deleteIfExists(output);
-        Path parent = output.getParent();
-        if (parent != null && !Files.exists(parent)) {
-            Files.createDirectories(parent);
-        }
-        for (FileSystemProvider p : FileSystemProvider.installedProviders()) {
-            String s = p.getScheme();
-            if ("jar".equals(s) || "zip".equalsIgnoreCase(s)) {
-                return p.newFileSystem(output, env);
-            }
-        }
-        throw new IOException("cant find zipfs support");
-    }
-
     public Dex2jar withExceptionHandler(DexExceptionHandler exceptionHandler) {
         this.exceptionHandler = exceptionHandler;
         return this;
@@ -379,13 +613,24 @@ public final class Dex2jar {
         return this;
     }
 
+    /**
+     * Does nothing, see {@link #random}.
+     *
+     * @deprecated the output is deterministic without a shared seed
+     */
+    @Deprecated
     public Dex2jar setRandom(Random random) {
-        Dex2jar.random = random;
         return this;
     }
 
+    /**
+     * Does nothing, see {@link #random}.
+     *
+     * @deprecated the output is deterministic without a shared seed
+     */
+    @Deprecated
     public Dex2jar resetRandom() {
-        return setRandom(new Random(0));
+        return this;
     }
 
     public static Dex2jar from(byte[] in) throws IOException {
@@ -393,7 +638,7 @@ public final class Dex2jar {
     }
 
     public static Dex2jar from(ByteBuffer in) throws IOException {
-        return from(MultiDexFileReader.open(in.array()));
+        return from(MultiDexFileReader.open(in));
     }
 
     public static Dex2jar from(BaseDexFileReader reader) {
@@ -401,7 +646,11 @@ public final class Dex2jar {
     }
 
     public static Dex2jar from(File in) throws IOException {
-        return from(Files.readAllBytes(in.toPath()));
+        return from(in.toPath());
+    }
+
+    public static Dex2jar from(Path in) throws IOException {
+        return from(MultiDexFileReader.open(in));
     }
 
     public static Dex2jar from(InputStream in) throws IOException {
@@ -0,0 +1,26 @@
+package com.googlecode.d2j.dex;
+
+import com.googlecode.dex2jar.tools.BaseCmd;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes each class to a .class file under a directory.
+ */
+public class DirectoryClassOutputSink implements ClassOutputSink {
+
+    private final Path dir;
+
+    public DirectoryClassOutputSink(Path dir) {
+        this.dir = dir;
+    }
+
+    @Override
+    public void write(int order, String className, byte[] data) throws IOException {
+        Path file = dir.resolve(className + ".class");
+        BaseCmd.createParentDirectories(file);
+        Files.write(file, data);
+    }
+
+}
@@ -0,0 +1,44 @@
+package com.googlecode.d2j.dex;
+
+import com.googlecode.dex2jar.tools.ZipWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.zip.Deflater;
+
+/**
+ * Writes the classes to a jar in the order of the dex, through a {@link ZipWriter}. The jar is complete once the sink
+ * is closed.
+ */
+public class JarClassOutputSink implements ClassOutputSink, Closeable {
+
+    private final ZipWriter zip;
+
+    public JarClassOutputSink(Path jar) throws IOException {
+        this(jar, Deflater.DEFAULT_COMPRESSION, false);
+    }
+
+    /**
+     * @param level  the {@link Deflater} level of the classes
+     * @param stored store the classes without compression
+     */
+    public JarClassOutputSink(Path jar, int level, boolean stored) throws IOException {
+        this.zip = new ZipWriter(jar, level, stored, ZipWriter.DEFAULT_QUEUE_CAPACITY);
+    }
+
+    @Override
+    public void write(int order, String className, byte[] data) throws IOException {
+        zip.put(order, className + ".class", data);
+    }
+
+    @Override
+    public void skip(int order) throws IOException {
+        zip.skip(order);
+    }
+
+    @Override
+    public void close() throws IOException {
+        zip.close();
+    }
+
+}
@@ -0,0 +1,36 @@
+package com.googlecode.d2j.dex;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Keeps the classes in memory, by internal name.
+ */
+public class MapClassOutputSink implements ClassOutputSink {
+
+    private final Map<String, byte[]> classes;
+
+    public MapClassOutputSink() {
+        this(new TreeMap<>());
+    }
+
+    /**
+     * @param classes receives the classes, the calls to it are synchronized on the sink
+     */
+    public MapClassOutputSink(Map<String, byte[]> classes) {
+        this.classes = classes;
+    }
+
+    @Override
+    public synchronized void write(int order, String className, byte[] data) {
+        classes.put(className, data);
+    }
+
+    /**
+     * @return the classes written so far, to read once the conversion is done
+     */
+    public Map<String, byte[]> getClasses() {
+        return classes;
+    }
+
+}
@@ -0,0 +1,92 @@
+package com.googlecode.d2j.dex;
+
+import java.io.Closeable;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import org.objectweb.asm.ClassReader;
+
+/**
+ * Hands the classes over to a consumer thread through a bounded queue, the conversion waits while the queue is full.
+ * <p>
+ * The producer closes the sink once the conversion is done, the consumer then gets {@code null} from {@link #take()}.
+ * <pre>
+ * QueueClassOutputSink sink = new QueueClassOutputSink(64);
+ * executor.submit(() -&gt; {
+ *     try (QueueClassOutputSink s = sink) {
+ *         Dex2jar.from(dex).to(s);
+ *     }
+ *     return null;
+ * });
+ * for (QueueClassOutputSink.Entry e = sink.take(); e != null; e = sink.take()) {
+ *     analyze(e.newClassReader());
+ * }
+ * </pre>
+ */
+public class QueueClassOutputSink implements ClassOutputSink, Closeable {
+
+    private static final Entry END = new Entry(-1, null, null);
+
+    private final BlockingQueue<Entry> queue;
+
+    public QueueClassOutputSink(int capacity) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    @Override
+    public void write(int order, String className, byte[] data) throws InterruptedIOException {
+        put(new Entry(order, className, data));
+    }
+
+    /**
+     * Waits for the next class.
+     *
+     * @return the next class, or {@code null} once the sink is closed and all the classes are taken
+     */
+    public Entry take() throws InterruptedException {
+        Entry entry = queue.take();
+        if (entry == END) {
+            queue.offer(END); // for the other consumers
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Marks the end of the classes.
+     */
+    @Override
+    public void close() throws InterruptedIOException {
+        put(END);
+    }
+
+    private void put(Entry entry) throws InterruptedIOException {
+        try {
+            queue.put(entry);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    public static class Entry {
+
+        public final int order;
+
+        public final String className;
+
+        public final byte[] data;
+
+        Entry(int order, String className, byte[] data) {
+            this.order = order;
+            this.className = className;
+            this.data = data;
+        }
+
+        public ClassReader newClassReader() {
+            return new ClassReader(data);
+        }
+
+    }
+
+}
@@ -15,6 +15,11 @@ public final class V3 {
 
     public static final int OPTIMIZE_SYNCHRONIZED = 1 << 3;
 
+    /**
+     * read, convert and write one class at a time instead of loading the whole dex first
+     */
+    public static final int STREAMING = 1 << 4;
+
     private V3() {
         throw new UnsupportedOperationException();
     }
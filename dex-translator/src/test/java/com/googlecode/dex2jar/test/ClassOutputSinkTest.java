@@ -0,0 +1,225 @@
+package com.googlecode.dex2jar.test;
+
+import com.googlecode.d2j.DexConstants;
+import com.googlecode.d2j.Method;
+import com.googlecode.d2j.dex.BaseDexExceptionHandler;
+import com.googlecode.d2j.dex.ClassOutputSink;
+import com.googlecode.d2j.dex.Dex2jar;
+import com.googlecode.d2j.dex.DirectoryClassOutputSink;
+import com.googlecode.d2j.dex.JarClassOutputSink;
+import com.googlecode.d2j.dex.MapClassOutputSink;
+import com.googlecode.d2j.dex.QueueClassOutputSink;
+import com.googlecode.d2j.dex.writer.DexFileWriter;
+import com.googlecode.d2j.reader.DexFileReader;
+import com.googlecode.d2j.reader.Op;
+import com.googlecode.d2j.visitors.DexClassVisitor;
+import com.googlecode.d2j.visitors.DexCodeVisitor;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * all the sinks must receive the same classes
+ */
+public class ClassOutputSinkTest {
+
+    @ParameterizedTest
+    @MethodSource("findDexFiles")
+    void test(Path dex) throws Exception {
+        byte[] data = Files.readAllBytes(dex);
+        MapClassOutputSink map = new MapClassOutputSink();
+        Dex2jar.from(data).to(map);
+        Map<String, byte[]> expected = map.getClasses();
+        assertFalse(expected.isEmpty());
+
+        assertClassesEquals(expected, queue(data));
+        assertClassesEquals(expected, framed(data));
+
+        Path dir = Files.createTempDirectory("d2j");
+        try {
+            Dex2jar.from(data).to(new DirectoryClassOutputSink(dir));
+            Map<String, byte[]> actual = new TreeMap<>();
+            try (Stream<Path> files = Files.walk(dir)) {
+                for (Path file : files.filter(Files::isRegularFile).collect(Collectors.toList())) {
+                    String name = dir.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/");
+                    actual.put(name.substring(0, name.length() - ".class".length()), Files.readAllBytes(file));
+                }
+            }
+            assertClassesEquals(expected, actual);
+        } finally {
+            try (Stream<Path> files = Files.walk(dir)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * the order of a class that fails to convert, or that the reader skips, is released so the classes after it are
+     * not held back
+     */
+    @Test
+    void testSkippedClass() throws Exception {
+        byte[] dex = dexWithTooLargeClass();
+        for (int parallelism : new int[]{1, 4}) {
+            RecordingSink sink = new RecordingSink();
+            Dex2jar.from(dex).withExceptionHandler(new BaseDexExceptionHandler()).parallelism(parallelism).to(sink);
+            assertEquals(Arrays.asList(0, 1, 3, 4), sink.written());
+            assertEquals(Collections.singletonList(2), sink.skipped());
+
+            DexFileReader reader = new DexFileReader(dex) {
+                @Override
+                public Boolean ignoreClass(String className) {
+                    return className.equals("La/C3;");
+                }
+            };
+            sink = new RecordingSink();
+            Dex2jar.from(reader).withExceptionHandler(new BaseDexExceptionHandler()).streaming()
+                    .parallelism(parallelism).to(sink);
+            assertEquals(Arrays.asList(0, 1, 4), sink.written());
+            assertEquals(Arrays.asList(2, 3), sink.skipped());
+        }
+
+        Path jar = Files.createTempFile("d2j", ".jar");
+        try {
+            try (JarClassOutputSink sink = new JarClassOutputSink(jar)) {
+                Dex2jar.from(dex).withExceptionHandler(new BaseDexExceptionHandler()).parallelism(4).to(sink);
+            }
+            List<String> names = new ArrayList<>();
+            try (ZipFile zip = new ZipFile(jar.toFile())) {
+                zip.stream().forEach(e -> names.add(e.getName()));
+            }
+            assertEquals(Arrays.asList("a/", "a/C0.class", "a/C1.class", "a/C3.class", "a/C4.class"), names);
+        } finally {
+            Files.delete(jar);
+        }
+    }
+
+    /**
+     * 5 classes, the strings of {@code a/C2} are over the 64K constants of a class file
+     */
+    private static byte[] dexWithTooLargeClass() {
+        DexFileWriter w = new DexFileWriter();
+        for (int i = 0; i < 5; i++) {
+            String name = "La/C" + i + ";";
+            Method m = new Method(name, "m", new String[]{"Ljava/lang/String;"}, "V");
+            DexClassVisitor cv = w.visit(DexConstants.ACC_PUBLIC, name, "Ljava/lang/Object;", null);
+            DexCodeVisitor code = cv.visitMethod(DexConstants.ACC_PUBLIC | DexConstants.ACC_STATIC, m).visitCode();
+            code.visitRegister(2);
+            for (int j = i == 2 ? 33000 : 1; j > 0; j--) {
+                code.visitConstStmt(Op.CONST_STRING, 0, "s" + j);
+                code.visitMethodStmt(Op.INVOKE_STATIC, new int[]{0}, m);
+            }
+            code.visitStmt0R(Op.RETURN_VOID);
+            code.visitEnd();
+            cv.visitEnd();
+        }
+        w.visitEnd();
+        return w.toByteArray();
+    }
+
+    private static class RecordingSink implements ClassOutputSink {
+
+        private final Set<Integer> written = new ConcurrentSkipListSet<>();
+
+        private final Set<Integer> skipped = new ConcurrentSkipListSet<>();
+
+        @Override
+        public void write(int order, String className, byte[] data) {
+            assertTrue(written.add(order));
+        }
+
+        @Override
+        public void skip(int order) {
+            assertTrue(skipped.add(order));
+        }
+
+        List<Integer> written() {
+            return new ArrayList<>(written);
+        }
+
+        List<Integer> skipped() {
+            return new ArrayList<>(skipped);
+        }
+
+    }
+
+    private static Map<String, byte[]> queue(byte[] data) throws Exception {
+        // a small queue, so the conversion has to wait for the consumer
+        QueueClassOutputSink sink = new QueueClassOutputSink(2);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> producer = executor.submit(() -> {
+                try (QueueClassOutputSink s = sink) {
+                    Dex2jar.from(data).parallelism(4).to(s);
+                }
+                return null;
+            });
+            Map<String, byte[]> classes = new TreeMap<>();
+            List<Integer> orders = new ArrayList<>();
+            for (QueueClassOutputSink.Entry e = sink.take(); e != null; e = sink.take()) {
+                assertEquals(e.className, e.newClassReader().getClassName());
+                classes.put(e.className, e.data);
+                orders.add(e.order);
+            }
+            producer.get();
+            assertEquals(orders.size(), orders.stream().distinct().count());
+            return classes;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private static Map<String, byte[]> framed(byte[] data) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        Dex2jar.from(data).doTranslate(baos);
+        Map<String, byte[]> classes = new TreeMap<>();
+        ByteBuffer in = ByteBuffer.wrap(baos.toByteArray());
+        while (in.hasRemaining()) {
+            byte[] className = new byte[in.getInt()];
+            in.get(className);
+            byte[] classData = new byte[in.getInt()];
+            in.get(classData);
+            classes.put(new String(className, StandardCharsets.UTF_8), classData);
+        }
+        return classes;
+    }
+
+    private static void assertClassesEquals(Map<String, byte[]> expected, Map<String, byte[]> actual) {
+        assertEquals(expected.keySet(), actual.keySet());
+        for (Map.Entry<String, byte[]> e : expected.entrySet()) {
+            assertArrayEquals(e.getValue(), actual.get(e.getKey()), e.getKey());
+        }
+    }
+
+    public static Stream<Arguments> findDexFiles() {
+        return TestUtils.listTestDexFiles().stream().map(Arguments::of);
+    }
+
+}
@@ -0,0 +1,89 @@
+package com.googlecode.dex2jar.test;
+
+import com.googlecode.d2j.node.DexClassNode;
+import com.googlecode.d2j.node.DexFileNode;
+import com.googlecode.d2j.reader.DexFileReader;
+import com.googlecode.d2j.reader.zip.ZipUtil;
+import com.googlecode.d2j.smali.BaksmaliDumper;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * many threads reading classes from one {@link DexFileReader} must see the same content as a serial read
+ */
+public class ConcurrentReadTest {
+
+    private static final int THREADS = 16;
+
+    private static final int ROUNDS = 4;
+
+    @ParameterizedTest
+    @MethodSource("findDexFiles")
+    void test(Path dex) throws Exception {
+        DexFileReader reader = new DexFileReader(ZipUtil.readDex(dex));
+        int size = reader.getClassSize();
+        List<String> expected = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            expected.add(dump(reader, i));
+        }
+        // a second read only uses the decoded items
+        long misses = reader.getCacheMisses();
+        long hits = reader.getCacheHits();
+        for (int i = 0; i < size; i++) {
+            assertEquals(expected.get(i), dump(reader, i));
+        }
+        assertEquals(misses, reader.getCacheMisses());
+        assertTrue(size == 0 || reader.getCacheHits() > hits);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<String>> results = new ArrayList<>(size * ROUNDS);
+            List<Future<List<String>>> classNames = new ArrayList<>(ROUNDS);
+            for (int round = 0; round < ROUNDS; round++) {
+                for (int i = 0; i < size; i++) {
+                    final int classIdx = i;
+                    results.add(executor.submit(() -> dump(reader, classIdx)));
+                }
+                classNames.add(executor.submit(reader::getClassNames));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals(expected.get(i % size), results.get(i).get());
+            }
+            for (Future<List<String>> names : classNames) {
+                assertEquals(reader.getClassNames(), names.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static String dump(DexFileReader reader, int classIdx) throws IOException {
+        DexFileNode fileNode = new DexFileNode();
+        reader.accept(fileNode, classIdx, 0);
+        StringWriter sw = new StringWriter();
+        try (BufferedWriter out = new BufferedWriter(sw)) {
+            for (DexClassNode classNode : fileNode.clzs) {
+                new BaksmaliDumper(true, true).baksmaliClass(classNode, out);
+            }
+        }
+        return sw.toString();
+    }
+
+    public static Stream<Arguments> findDexFiles() {
+        return TestUtils.listTestDexFiles().stream().map(Arguments::of);
+    }
+
+}
@@ -0,0 +1,77 @@
+package com.googlecode.dex2jar.test;
+
+import com.googlecode.d2j.dex.Dex2jar;
+import com.googlecode.d2j.reader.zip.ZipUtil;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * the entries of a jar must not depend on the number of threads converting them
+ */
+public class DeterministicOutputTest {
+
+    @ParameterizedTest
+    @MethodSource("findDexFiles")
+    void test(Path dex) throws IOException {
+        byte[] data = Files.readAllBytes(dex);
+        Path dir = Files.createTempDirectory("d2j");
+        try {
+            Path serial = dir.resolve("serial.jar");
+            Dex2jar.from(data).to(serial);
+            Path parallel = dir.resolve("parallel.jar");
+            // also convert the methods of every class in parallel
+            Dex2jar.from(data).parallelism(16).methodParallelThreshold(1).to(parallel);
+
+            Path stored = dir.resolve("stored.jar");
+            Dex2jar.from(data).parallelism(16).storeClasses(true).to(stored);
+
+            Map<String, byte[]> expected = readJar(serial);
+            for (Path jar : new Path[]{parallel, stored}) {
+                Map<String, byte[]> actual = readJar(jar);
+                // same entries in the same order
+                assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(actual.keySet()));
+                for (Map.Entry<String, byte[]> e : expected.entrySet()) {
+                    assertArrayEquals(e.getValue(), actual.get(e.getKey()), e.getKey());
+                }
+            }
+        } finally {
+            try (Stream<Path> files = Files.list(dir)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(dir);
+        }
+    }
+
+    private static Map<String, byte[]> readJar(Path jar) throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        try (ZipFile zip = new ZipFile(jar.toFile())) {
+            for (ZipEntry entry : Collections.list(zip.entries())) {
+                try (InputStream in = zip.getInputStream(entry)) {
+                    entries.put(entry.getName(), ZipUtil.toByteArray(in));
+                }
+            }
+        }
+        return entries;
+    }
+
+    public static Stream<Arguments> findDexFiles() {
+        return TestUtils.listTestDexFiles().stream().map(Arguments::of);
+    }
+
+}
@@ -0,0 +1,71 @@
+package com.googlecode.dex2jar.test;
+
+import com.googlecode.d2j.DexConstants;
+import com.googlecode.d2j.converter.Dex2IRConverter;
+import com.googlecode.d2j.dex.Dex2Asm;
+import com.googlecode.d2j.node.DexFileNode;
+import com.googlecode.d2j.node.DexMethodNode;
+import com.googlecode.d2j.reader.DexFileReader;
+import com.googlecode.d2j.reader.zip.ZipUtil;
+import com.googlecode.dex2jar.ir.IrMethod;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.objectweb.asm.ClassWriter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * the classes converted with the converters reused from method to method are the same as with a new converter per
+ * method
+ */
+public class Dex2IRContextTest {
+
+    @ParameterizedTest
+    @MethodSource("findDexFiles")
+    void test(Path dex) throws IOException {
+        byte[] data = ZipUtil.readDex(dex);
+        Map<String, byte[]> expected = convert(data, new Dex2Asm() {
+            @Override
+            public IrMethod dex2ir(DexMethodNode methodNode) {
+                return new Dex2IRConverter().convert(0 != (methodNode.access & DexConstants.ACC_STATIC),
+                        methodNode.method, methodNode.codeNode);
+            }
+        });
+        Map<String, byte[]> actual = convert(data, new Dex2Asm());
+        assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(actual.keySet()));
+        for (Map.Entry<String, byte[]> e : expected.entrySet()) {
+            assertArrayEquals(e.getValue(), actual.get(e.getKey()), e.getKey());
+        }
+    }
+
+    /**
+     * reads the dex again for each conversion, as the conversion changes the code
+     */
+    private static Map<String, byte[]> convert(byte[] data, Dex2Asm dex2Asm) {
+        DexFileNode fileNode = new DexFileNode();
+        new DexFileReader(data).accept(fileNode, 0);
+        Map<String, ClassWriter> writers = new LinkedHashMap<>();
+        dex2Asm.convertDex(fileNode, name -> {
+            ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+            writers.put(name, cw);
+            return cw;
+        });
+        Map<String, byte[]> classes = new LinkedHashMap<>();
+        for (Map.Entry<String, ClassWriter> e : writers.entrySet()) {
+            classes.put(e.getKey(), e.getValue().toByteArray());
+        }
+        return classes;
+    }
+
+    public static Stream<Arguments> findDexFiles() {
+        return TestUtils.listTestDexFiles().stream().map(Arguments::of);
+    }
+
+}
@@ -0,0 +1,117 @@
+package com.googlecode.dex2jar.test;
+
+import com.googlecode.d2j.DexConstants;
+import com.googlecode.d2j.DexLabel;
+import com.googlecode.d2j.Field;
+import com.googlecode.d2j.Method;
+import com.googlecode.d2j.dex.Dex2Asm;
+import com.googlecode.d2j.node.DexClassNode;
+import com.googlecode.d2j.reader.Op;
+import com.googlecode.d2j.visitors.DexCodeVisitor;
+import com.googlecode.d2j.visitors.DexDebugVisitor;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassWriter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class Dex2JConverterTest implements DexConstants {
+
+    private static final Field NAME = new Field("La;", "name", "Ljava/lang/String;");
+
+    private static final Field SIZE = new Field("La;", "size", "J");
+
+    private static final Field COUNT = new Field("La;", "count", "I");
+
+    private static DexCodeVisitor code(DexClassNode cn, int access, Method method, int registers) {
+        DexCodeVisitor code = cn.visitMethod(access, method).visitCode();
+        code.visitRegister(registers);
+        return code;
+    }
+
+    /**
+     * @return the number of methods converted without the IR, after checking they are converted as with the IR
+     */
+    private static long convert(DexClassNode cn) {
+        Dex2Asm ir = new Dex2Asm();
+        ClassWriter expected = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        ir.convertClass(cn, name -> expected);
+
+        Dex2Asm trivial = new Dex2Asm();
+        trivial.setTrivialMethodsWithoutIr(true);
+        ClassWriter actual = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        trivial.convertClass(cn, name -> actual);
+        assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+        return trivial.getTrivialMethodCount();
+    }
+
+    @Test
+    public void testTrivial() {
+        DexClassNode cn = new DexClassNode(ACC_PUBLIC, "La;", "Ljava/lang/Object;", null);
+
+        DexCodeVisitor code = code(cn, ACC_PUBLIC | ACC_CONSTRUCTOR, new Method("La;", "<init>", new String[]{}, "V"),
+                1);
+        code.visitMethodStmt(Op.INVOKE_DIRECT, new int[]{0}, new Method("Ljava/lang/Object;", "<init>",
+                new String[]{}, "V"));
+        code.visitStmt0R(Op.RETURN_VOID);
+
+        DexLabel line = new DexLabel();
+        code = code(cn, ACC_PUBLIC, new Method("La;", "getName", new String[]{}, "Ljava/lang/String;"), 2);
+        DexDebugVisitor debug = code.visitDebug();
+        debug.visitLineNumber(42, line);
+        code.visitLabel(line);
+        code.visitFieldStmt(Op.IGET_OBJECT, 0, 1, NAME);
+        code.visitStmt1R(Op.RETURN_OBJECT, 0);
+
+        code = code(cn, ACC_PUBLIC, new Method("La;", "setSize", new String[]{"J"}, "V"), 3);
+        code.visitFieldStmt(Op.IPUT_WIDE, 1, 0, SIZE);
+        code.visitStmt0R(Op.RETURN_VOID);
+
+        // the first name is dropped, the length is read from the field
+        code = code(cn, ACC_STATIC, new Method("La;", "length", new String[]{"La;", "I"}, "I"), 3);
+        code.visitMethodStmt(Op.INVOKE_VIRTUAL, new int[]{1}, new Method("La;", "getName", new String[]{},
+                "Ljava/lang/String;"));
+        code.visitFieldStmt(Op.IGET_OBJECT, 0, 1, NAME);
+        code.visitMethodStmt(Op.INVOKE_VIRTUAL, new int[]{0}, new Method("Ljava/lang/String;", "length",
+                new String[]{}, "I"));
+        code.visitStmt1R(Op.MOVE_RESULT, 0);
+        code.visitStmt1R(Op.RETURN, 0);
+
+        assertEquals(4, convert(cn));
+    }
+
+    @Test
+    public void testNotTrivial() {
+        DexClassNode cn = new DexClassNode(ACC_PUBLIC, "La;", "Ljava/lang/Object;", null);
+
+        DexCodeVisitor code = code(cn, ACC_PUBLIC, new Method("La;", "reset", new String[]{}, "V"), 2);
+        code.visitConstStmt(Op.CONST_4, 0, 0);
+        code.visitFieldStmt(Op.IPUT, 0, 1, COUNT);
+        code.visitStmt0R(Op.RETURN_VOID);
+
+        // the parameter is loaded before the field, which is read first
+        code = code(cn, ACC_PUBLIC, new Method("La;", "put", new String[]{"La;"}, "V"), 3);
+        code.visitFieldStmt(Op.IGET, 0, 1, COUNT);
+        code.visitFieldStmt(Op.IPUT, 0, 2, COUNT);
+        code.visitStmt0R(Op.RETURN_VOID);
+
+        // the field is read twice
+        code = code(cn, ACC_PUBLIC, new Method("La;", "twice", new String[]{}, "I"), 2);
+        code.visitFieldStmt(Op.IGET, 0, 1, COUNT);
+        code.visitMethodStmt(Op.INVOKE_STATIC, new int[]{0}, new Method("La;", "use", new String[]{"I"}, "V"));
+        code.visitStmt1R(Op.RETURN, 0);
+
+        // the count is kept over an invoke
+        code = code(cn, ACC_PUBLIC, new Method("La;", "kept", new String[]{}, "I"), 2);
+        code.visitFieldStmt(Op.IGET, 0, 1, COUNT);
+        code.visitMethodStmt(Op.INVOKE_VIRTUAL, new int[]{1}, new Method("La;", "reset", new String[]{}, "V"));
+        code.visitStmt1R(Op.RETURN, 0);
+
+        // an int passed as a byte
+        code = code(cn, ACC_STATIC, new Method("La;", "narrow", new String[]{"I"}, "V"), 1);
+        code.visitMethodStmt(Op.INVOKE_STATIC, new int[]{0}, new Method("La;", "b", new String[]{"B"}, "V"));
+        code.visitStmt0R(Op.RETURN_VOID);
+
+        assertEquals(0, convert(cn));
+    }
+
+}
@@ -0,0 +1,69 @@
+package com.googlecode.dex2jar.test;
+
+import com.googlecode.d2j.node.DexClassNode;
+import com.googlecode.d2j.node.DexFileNode;
+import com.googlecode.d2j.reader.BaseDexFileReader;
+import com.googlecode.d2j.reader.DexFileReader;
+import com.googlecode.d2j.reader.MultiDexFileReader;
+import com.googlecode.d2j.smali.BaksmaliDumper;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * a lazily inflated {@link MultiDexFileReader} must read the same classes as one built from loaded dex files
+ */
+public class LazyMultiDexTest {
+
+    @Test
+    public void test() throws IOException {
+        List<DexFileReader> readers = new ArrayList<>();
+        ByteArrayOutputStream zip = new ByteArrayOutputStream();
+        try (ZipOutputStream zos = new ZipOutputStream(zip)) {
+            int i = 1;
+            for (Path dex : TestUtils.listTestDexFiles()) {
+                byte[] data = Files.readAllBytes(dex);
+                readers.add(new DexFileReader(data));
+                zos.putNextEntry(new ZipEntry(i == 1 ? "classes.dex" : "classes" + i + ".dex"));
+                zos.write(data);
+                i++;
+            }
+        }
+        assertTrue(readers.size() > 1);
+        String expected = dump(new MultiDexFileReader(readers));
+
+        MultiDexFileReader lazy = (MultiDexFileReader) MultiDexFileReader.open(zip.toByteArray());
+        assertEquals(new MultiDexFileReader(readers).getDexVersion(), lazy.getDexVersion());
+        assertEquals(expected, dump(lazy));
+
+        MultiDexFileReader released = (MultiDexFileReader) MultiDexFileReader.open(zip.toByteArray());
+        released.setReleaseConsumed(true);
+        assertEquals(expected, dump(released));
+        assertEquals(expected, dump(released)); // the released dex files are inflated again
+    }
+
+    private static String dump(BaseDexFileReader reader) throws IOException {
+        StringWriter sw = new StringWriter();
+        try (BufferedWriter out = new BufferedWriter(sw)) {
+            for (int i = 0; i < reader.getClassNames().size(); i++) {
+                DexFileNode fileNode = new DexFileNode();
+                reader.accept(fileNode, i, 0);
+                for (DexClassNode classNode : fileNode.clzs) {
+                    new BaksmaliDumper(true, true).baksmaliClass(classNode, out);
+                }
+            }
+        }
+        return sw.toString();
+    }
+
+}
@@ -0,0 +1,43 @@
+package com.googlecode.dex2jar.test;
+
+import com.googlecode.d2j.dex.Dex2jar;
+import com.googlecode.d2j.dex.MapClassOutputSink;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.stream.Stream;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * the streaming mode of {@link Dex2jar} must generate the same classes as the default mode
+ */
+public class StreamingTest {
+
+    @ParameterizedTest
+    @MethodSource("findDexFiles")
+    void test(Path dex) throws IOException {
+        byte[] data = Files.readAllBytes(dex);
+        Map<String, byte[]> expected = translate(data, false);
+        Map<String, byte[]> actual = translate(data, true);
+        assertEquals(expected.keySet(), actual.keySet());
+        for (Map.Entry<String, byte[]> e : expected.entrySet()) {
+            assertArrayEquals(e.getValue(), actual.get(e.getKey()), e.getKey());
+        }
+    }
+
+    private static Map<String, byte[]> translate(byte[] data, boolean streaming) throws IOException {
+        MapClassOutputSink sink = new MapClassOutputSink();
+        Dex2jar.from(data).streaming(streaming).to(sink);
+        return sink.getClasses();
+    }
+
+    public static Stream<Arguments> findDexFiles() {
+        return TestUtils.listTestDexFiles().stream().map(Arguments::of);
+    }
+
+}
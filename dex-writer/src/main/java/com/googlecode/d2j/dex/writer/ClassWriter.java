@@ -43,11 +43,8 @@ import com.googlecode.d2j.visitors.DexMethodVisitor;
 
     public void visitEnd() {
         if (dataItem != null && dataItem.getMemberSize() > 0) {
-            cp.addClassDataItem(dataItem);
             defItem.classData = dataItem;
         }
-        defItem.prepare(cp);
-
     }
 
     @Override
@@ -446,7 +446,6 @@ public class CodeWriter extends DexCodeVisitor {
             encodedMethod.code = null;
             return;
         }
-        cp.addCodeItem(codeItem);
 
         codeItem.registersSize = this.totalReg;
         codeItem.outsSize = maxOutRegSize;
@@ -455,7 +454,6 @@ public class CodeWriter extends DexCodeVisitor {
         codeItem.init(ops, tailOps, tryItems);
 
         if (codeItem.debugInfo != null) {
-            cp.addDebugInfoItem(codeItem.debugInfo);
             List<DebugInfoItem.DNode> debugNodes = codeItem.debugInfo.debugNodes;
             debugNodes.sort((o1, o2) -> {
                 int x = o1.label.offset - o2.label.offset;
@@ -2,6 +2,7 @@ package com.googlecode.d2j.dex.writer;
 
 import com.googlecode.d2j.dex.writer.ev.EncodedArray;
 import com.googlecode.d2j.dex.writer.io.ByteBufferOut;
+import com.googlecode.d2j.dex.writer.io.ChannelOut;
 import com.googlecode.d2j.dex.writer.io.DataOut;
 import com.googlecode.d2j.dex.writer.item.AnnotationItem;
 import com.googlecode.d2j.dex.writer.item.AnnotationSetItem;
@@ -28,25 +29,59 @@ import com.googlecode.d2j.dex.writer.item.TypeIdItem;
 import com.googlecode.d2j.dex.writer.item.TypeListItem;
 import com.googlecode.d2j.visitors.DexClassVisitor;
 import com.googlecode.d2j.visitors.DexFileVisitor;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.zip.Adler32;
 
+/**
+ * Writes the classes visited to a dex.
+ * <p>
+ * The {@link DexClassVisitor}s returned by {@link #visit(int, String, String, String[])} of a writer created
+ * {@link #DexFileWriter(boolean) concurrent} may be driven from several threads, one thread per class, the ids are
+ * interned in a thread safe {@link ConstPool} and the code of a class is built by the thread visiting it. The classes are laid out in the order they are passed to {@code visit}, so
+ * {@code visit} is called from one thread to get the same dex from run to run. The dex is built and written once all
+ * the classes are visited.
+ */
 public class DexFileWriter extends DexFileVisitor {
 
     private static final boolean DEBUG = false;
 
+    /**
+     * the offset of the first byte covered by the SHA-1 signature
+     */
+    private static final int SIGNED_OFFSET = 32;
+
+    private static final int ADLER32_BASE = 65521;
+
     MapListItem mapItem;
 
     HeadItem headItem;
 
-    public ConstPool cp = new ConstPool();
+    public ConstPool cp;
+
+    public DexFileWriter() {
+        this(false);
+    }
+
+    /**
+     * @param concurrent whether the classes visited may be driven from several threads
+     */
+    public DexFileWriter(boolean concurrent) {
+        cp = new ConstPool(concurrent);
+    }
 
     private static DataOut wrapDumpOut(final DataOut out0) {
         return (DataOut) Proxy.newProxyInstance(
@@ -85,6 +120,17 @@ public class DexFileWriter extends DexFileVisitor {
                                         }
                                     }
 
+                                    sb.append("], ");
+                                } else if (arg instanceof ByteBuffer) {
+                                    // the bytes left to write, without moving the position
+                                    ByteBuffer data = ((ByteBuffer) arg).duplicate();
+                                    sb.append("0x[");
+                                    while (data.hasRemaining()) {
+                                        sb.append(String.format("%02x", data.get() & 0xff));
+                                        if (data.hasRemaining()) {
+                                            sb.append(", ");
+                                        }
+                                    }
                                     sb.append("], ");
                                 } else {
                                     sb.append(arg).append(", ");
@@ -107,6 +153,7 @@ public class DexFileWriter extends DexFileVisitor {
     }
 
     void buildMapListItem() {
+        cp.prepareClassDefItems();
 
         // begin ===========
         // satisfy 'bool DexFileVerifier::CheckMap()' on art/runtime/dex_file_verifier.cc
@@ -138,22 +185,27 @@ public class DexFileWriter extends DexFileVisitor {
         headSection.items.add(headItem);
         SectionItem<MapListItem> mapSection = new SectionItem<>(SectionType.TYPE_MAP_LIST);
         mapSection.items.add(mapItem);
+        List<StringIdItem> strings = ConstPool.sortedValues(cp.strings);
+        List<StringDataItem> stringDatas = new ArrayList<>(strings.size());
+        for (StringIdItem s : strings) {
+            stringDatas.add(s.stringData);
+        }
         SectionItem<StringIdItem> stringIdSection = new SectionItem<>(
-                SectionType.TYPE_STRING_ID_ITEM, cp.strings.values());
+                SectionType.TYPE_STRING_ID_ITEM, strings);
         SectionItem<TypeIdItem> typeIdSection = new SectionItem<>(
-                SectionType.TYPE_TYPE_ID_ITEM, cp.types.values());
+                SectionType.TYPE_TYPE_ID_ITEM, ConstPool.sortedValues(cp.types));
         SectionItem<ProtoIdItem> protoIdSection = new SectionItem<>(
-                SectionType.TYPE_PROTO_ID_ITEM, cp.protos.values());
+                SectionType.TYPE_PROTO_ID_ITEM, ConstPool.sortedValues(cp.protos));
         SectionItem<FieldIdItem> fieldIdSection = new SectionItem<>(
-                SectionType.TYPE_FIELD_ID_ITEM, cp.fields.values());
+                SectionType.TYPE_FIELD_ID_ITEM, ConstPool.sortedValues(cp.fields));
         SectionItem<MethodIdItem> methodIdSection = new SectionItem<>(
-                SectionType.TYPE_METHOD_ID_ITEM, cp.methods.values());
+                SectionType.TYPE_METHOD_ID_ITEM, ConstPool.sortedValues(cp.methods));
         SectionItem<MethodHandleItem> methodHandlerSection = new SectionItem<>(
-                SectionType.TYPE_METHOD_HANDLE_ITEM, cp.methodHandlers.values());
+                SectionType.TYPE_METHOD_HANDLE_ITEM, ConstPool.sortedValues(cp.methodHandlers));
         SectionItem<ClassDefItem> classDefSection = new SectionItem<>(
                 SectionType.TYPE_CLASS_DEF_ITEM, cp.buildSortedClassDefItems());
         SectionItem<TypeListItem> typeListSection = new SectionItem<>(
-                SectionType.TYPE_TYPE_LIST, cp.typeLists.values());
+                SectionType.TYPE_TYPE_LIST, ConstPool.sortedValues(cp.typeLists));
         SectionItem<AnnotationSetRefListItem> annotationSetRefListItemSection = new SectionItem<>(
                 SectionType.TYPE_ANNOTATION_SET_REF_LIST,
                 cp.annotationSetRefListItems.values());
@@ -165,15 +217,15 @@ public class DexFileWriter extends DexFileVisitor {
         SectionItem<CodeItem> codeItemSection = new SectionItem<>(
                 SectionType.TYPE_CODE_ITEM, cp.codeItems);
         SectionItem<StringDataItem> stringDataItemSection = new SectionItem<>(
-                SectionType.TYPE_STRING_DATA_ITEM, cp.stringDatas);
+                SectionType.TYPE_STRING_DATA_ITEM, stringDatas);
         SectionItem<DebugInfoItem> debugInfoSection = new SectionItem<>(
                 SectionType.TYPE_DEBUG_INFO_ITEM, cp.debugInfoItems);
         SectionItem<AnnotationItem> annotationItemSection = new SectionItem<>(
                 SectionType.TYPE_ANNOTATION_ITEM, cp.annotationItems.values());
         SectionItem<EncodedArray> encodedArrayItemSection = new SectionItem<>(
-                SectionType.TYPE_ENCODED_ARRAY_ITEM, cp.encodedArrayItems.values());
+                SectionType.TYPE_ENCODED_ARRAY_ITEM, ConstPool.sortedValues(cp.encodedArrayItems));
         SectionItem<CallSiteIdItem> callSiteIdItemSectionItem = new SectionItem<>(
-                SectionType.TYPE_CALL_SITE_ID_ITEM, cp.callSiteIdItems.values());
+                SectionType.TYPE_CALL_SITE_ID_ITEM, ConstPool.sortedValues(cp.callSiteIdItems));
         SectionItem<AnnotationsDirectoryItem> annotationsDirectoryItemSection = new SectionItem<>(
                 SectionType.TYPE_ANNOTATIONS_DIRECTORY_ITEM,
                 cp.annotationsDirectoryItems);
@@ -256,16 +308,114 @@ public class DexFileWriter extends DexFileVisitor {
         return buffer.array();
     }
 
-    public static void updateChecksum(ByteBuffer buffer, int size) {
-        byte[] data = buffer.array();
-        MessageDigest digest;
+    /**
+     * Writes the dex to the file, see {@link #writeTo(SeekableByteChannel)}.
+     */
+    public void writeTo(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeTo(channel);
+        }
+    }
+
+    /**
+     * Writes the dex at the position of the channel, through a fixed size buffer instead of a buffer of the whole
+     * file. The SHA-1 signature and the Adler32 checksum are computed as the bytes are written, then the header is
+     * patched with them and the position is left at the end of the dex.
+     */
+    public void writeTo(SeekableByteChannel channel) throws IOException {
+
+        // init structure for writing
+        buildMapListItem();
+
+        // place all item into file, we can know the size now
+        final int size = place();
+
+        final long start = channel.position();
+        final MessageDigest digest = sha1();
+        final Adler32 adler32 = new Adler32();
+        ChannelOut channelOut = new ChannelOut(channel) {
+            @Override
+            protected void onFlush(ByteBuffer bytes, long offset) {
+                // the bytes before the signature are not signed
+                int unsigned = (int) Math.max(0, Math.min(bytes.remaining(), SIGNED_OFFSET - offset));
+                ByteBuffer signed = bytes.duplicate();
+                signed.position(signed.position() + unsigned);
+                digest.update(signed.duplicate());
+                adler32.update(signed);
+            }
+        };
+        DataOut out = channelOut;
+
+        if (DEBUG) {
+            out = wrapDumpOut(out);
+        }
+        // write it
         try {
-            digest = MessageDigest.getInstance("SHA-1");
+            write(out);
+            channelOut.flush();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        if (size != channelOut.offset()) {
+            throw new RuntimeException("generated different file size, planned " + size
+                    + ", but is " + channelOut.offset());
+        }
+
+        // the checksum covers the signature, then the signed bytes
+        byte[] sha1 = digest.digest();
+        Adler32 signature = new Adler32();
+        signature.update(sha1);
+        int checksum = combineAdler32((int) signature.getValue(), (int) adler32.getValue(), size - SIGNED_OFFSET);
+
+        ByteBuffer header = ByteBuffer.allocate(4 + sha1.length).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(checksum).put(sha1).flip();
+        long end = channel.position();
+        channel.position(start + 8);
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+        channel.position(end);
+    }
+
+    /**
+     * @return the Adler32 checksum of two blocks, from the checksum of each and the size of the second
+     */
+    private static int combineAdler32(int adler1, int adler2, long size2) {
+        int rem = (int) (size2 % ADLER32_BASE);
+        long sum1 = adler1 & 0xffff;
+        long sum2 = rem * sum1 % ADLER32_BASE;
+        sum1 += (adler2 & 0xffff) + ADLER32_BASE - 1;
+        sum2 += ((adler1 >>> 16) & 0xffff) + ((adler2 >>> 16) & 0xffff) + ADLER32_BASE - rem;
+        if (sum1 >= ADLER32_BASE) {
+            sum1 -= ADLER32_BASE;
+        }
+        if (sum1 >= ADLER32_BASE) {
+            sum1 -= ADLER32_BASE;
+        }
+        if (sum2 >= ADLER32_BASE << 1) {
+            sum2 -= ADLER32_BASE << 1;
+        }
+        if (sum2 >= ADLER32_BASE) {
+            sum2 -= ADLER32_BASE;
+        }
+        return (int) (sum1 | (sum2 << 16));
+    }
+
+    private static MessageDigest sha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
         } catch (NoSuchAlgorithmException e) {
             throw new AssertionError();
         }
+    }
+
+    public static void updateChecksum(ByteBuffer buffer, int size) {
+        byte[] data = buffer.array();
+        MessageDigest digest = sha1();
 
-        digest.update(data, 32, size - 32);
+        digest.update(data, SIGNED_OFFSET, size - SIGNED_OFFSET);
         byte[] sha1 = digest.digest();
         System.arraycopy(sha1, 0, data, 12, sha1.length);
 
@@ -0,0 +1,277 @@
+package com.googlecode.d2j.dex.writer;
+
+import com.googlecode.d2j.Method;
+import com.googlecode.d2j.Visibility;
+import com.googlecode.d2j.node.DexAnnotationNode;
+import com.googlecode.d2j.node.DexClassNode;
+import com.googlecode.d2j.visitors.DexAnnotationVisitor;
+import com.googlecode.d2j.visitors.DexClassVisitor;
+import com.googlecode.d2j.visitors.DexFileVisitor;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Writes the classes visited to {@code classes.dex}, {@code classes2.dex}, ... A dex is full when one more class would
+ * take it over {@link #MAX_IDS} type, field or method ids, the next classes are written to the next dex.
+ * <p>
+ * The classes in the main dex list are written to {@code classes.dex}, which then has no other class. The classes are
+ * partitioned in the order they are visited, as each class ends, so the visitor is not thread safe. Once all the
+ * classes are visited, the dex files can be built in parallel.
+ */
+public class MultiDexFileWriter extends DexFileVisitor {
+
+    /**
+     * the number of ids of each kind an index of 16 bits can refer to
+     */
+    public static final int MAX_IDS = 0x10000;
+
+    private final Set<String> mainDexClasses;
+
+    private final List<Dex> dexes = new ArrayList<>();
+
+    private final Set<String> classNames = new HashSet<>();
+
+    private Dex current;
+
+    public MultiDexFileWriter() {
+        this(null);
+    }
+
+    /**
+     * @param mainDexClasses the descriptors of the classes to write to {@code classes.dex}, or null to fill
+     *                       {@code classes.dex} with the first classes visited
+     */
+    public MultiDexFileWriter(Set<String> mainDexClasses) {
+        this.mainDexClasses = mainDexClasses;
+        current = new Dex();
+        dexes.add(current);
+        if (mainDexClasses != null) {
+            current = new Dex();
+            dexes.add(current);
+        }
+    }
+
+    /**
+     * @param index the index of the dex, from 0
+     * @return {@code classes.dex} for the first dex, {@code classes<index+1>.dex} for the others
+     */
+    public static String dexFileName(int index) {
+        return index == 0 ? "classes.dex" : "classes" + (index + 1) + ".dex";
+    }
+
+    @Override
+    public DexClassVisitor visit(int accessFlags, String className, String superClass, String[] interfaceNames) {
+        return new DexClassNode(accessFlags, className, superClass, interfaceNames) {
+            @Override
+            public DexAnnotationVisitor visitAnnotation(String name, Visibility visibility) {
+                // keep all the annotations, the node drops some
+                if (anns == null) {
+                    anns = new ArrayList<>(5);
+                }
+                DexAnnotationNode annotation = new DexAnnotationNode(name, visibility);
+                anns.add(annotation);
+                return annotation;
+            }
+
+            @Override
+            public void visitEnd() {
+                add(this);
+            }
+        };
+    }
+
+    private void add(DexClassNode classNode) {
+        if (!classNames.add(classNode.className)) {
+            throw new DexWriteException("dup clz: " + classNode.className);
+        }
+        ReferenceCollector refs = new ReferenceCollector();
+        refs.visitClass(classNode.className, classNode.superClass, classNode.interfaceNames);
+        classNode.accept(refs);
+
+        Dex dex;
+        if (mainDexClasses != null && mainDexClasses.contains(classNode.className)) {
+            dex = dexes.get(0);
+            if (!dex.fits(refs)) {
+                throw new DexWriteException("too many ids in the main dex, at " + classNode.className);
+            }
+        } else {
+            dex = current;
+            if (!dex.fits(refs)) {
+                if (dex.classNames.isEmpty()) {
+                    throw new DexWriteException("too many ids in " + classNode.className);
+                }
+                dex = new Dex();
+                if (!dex.fits(refs)) {
+                    throw new DexWriteException("too many ids in " + classNode.className);
+                }
+                dexes.add(dex);
+                current = dex;
+            }
+        }
+        dex.add(classNode.className, refs);
+        classNode.accept(dex.writer);
+    }
+
+    /**
+     * @return the number of dex files, {@code classes.dex} is not counted if it is left empty by the main dex list
+     */
+    public int getDexCount() {
+        return dexesToWrite().size();
+    }
+
+    /**
+     * @return the descriptors of the classes in each dex
+     */
+    public List<List<String>> getClassNames() {
+        List<List<String>> names = new ArrayList<>();
+        for (Dex dex : dexesToWrite()) {
+            names.add(Collections.unmodifiableList(dex.classNames));
+        }
+        return names;
+    }
+
+    private List<Dex> dexesToWrite() {
+        if (mainDexClasses != null && dexes.get(0).classNames.isEmpty()) {
+            return dexes.subList(1, dexes.size());
+        }
+        return dexes;
+    }
+
+    /**
+     * Builds the dex files, see {@link #toByteArrays(ExecutorService)}.
+     */
+    public List<byte[]> toByteArrays() {
+        return toByteArrays(null);
+    }
+
+    /**
+     * Builds the dex files once all the classes are visited.
+     *
+     * @param executor builds each dex in a task, or null to build them in the calling thread
+     * @return the dex files, the first is {@code classes.dex}
+     */
+    public List<byte[]> toByteArrays(ExecutorService executor) {
+        List<Dex> list = dexesToWrite();
+        List<byte[]> dexFiles = new ArrayList<>(list.size());
+        if (executor == null) {
+            for (Dex dex : list) {
+                dexFiles.add(dex.writer.toByteArray());
+            }
+        } else {
+            List<Future<byte[]>> futures = new ArrayList<>(list.size());
+            for (Dex dex : list) {
+                futures.add(executor.submit(dex.writer::toByteArray));
+            }
+            for (Future<byte[]> future : futures) {
+                dexFiles.add(get(future));
+            }
+        }
+        return dexFiles;
+    }
+
+    /**
+     * Writes the dex files to a directory, see {@link #writeTo(Path, ExecutorService)}.
+     */
+    public void writeTo(Path dir) throws IOException {
+        writeTo(dir, null);
+    }
+
+    /**
+     * Writes the dex files to a directory once all the classes are visited, named by {@link #dexFileName(int)}. The
+     * directory may be in a zip file system, to write to a zip or an apk.
+     * <p>
+     * With an executor the dex files are created in the order they are built in, so in a zip file system the order of
+     * the entries varies from run to run; {@link #toByteArrays(ExecutorService)} gives the dex files to write in order.
+     *
+     * @param executor writes each dex in a task, or null to write them in the calling thread
+     */
+    public void writeTo(Path dir, ExecutorService executor) throws IOException {
+        List<Dex> list = dexesToWrite();
+        if (executor == null) {
+            for (int i = 0; i < list.size(); i++) {
+                list.get(i).writer.writeTo(dir.resolve(dexFileName(i)));
+            }
+            return;
+        }
+        List<Future<Void>> futures = new ArrayList<>(list.size());
+        for (int i = 0; i < list.size(); i++) {
+            final DexFileWriter writer = list.get(i).writer;
+            final Path file = dir.resolve(dexFileName(i));
+            futures.add(executor.submit(() -> {
+                writer.writeTo(file);
+                return null;
+            }));
+        }
+        try {
+            for (Future<Void> future : futures) {
+                get(future);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static <T> T get(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DexWriteException("interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw new UncheckedIOException((IOException) cause);
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new DexWriteException(cause);
+        }
+    }
+
+    private class Dex {
+
+        final DexFileWriter writer = new DexFileWriter();
+
+        final Set<String> types = new HashSet<>();
+
+        final Set<String> fields = new HashSet<>();
+
+        final Set<Method> methods = new HashSet<>();
+
+        final List<String> classNames = new ArrayList<>();
+
+        boolean fits(ReferenceCollector refs) {
+            return fits(types, refs.types) && fits(fields, refs.fields) && fits(methods, refs.methods);
+        }
+
+        private <T> boolean fits(Set<? super T> ids, Set<T> added) {
+            int size = ids.size();
+            for (T id : added) {
+                if (!ids.contains(id) && ++size > MAX_IDS) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void add(String className, ReferenceCollector refs) {
+            types.addAll(refs.types);
+            fields.addAll(refs.fields);
+            methods.addAll(refs.methods);
+            classNames.add(className);
+        }
+
+    }
+
+}
@@ -0,0 +1,247 @@
+package com.googlecode.d2j.dex.writer;
+
+import com.googlecode.d2j.CallSite;
+import com.googlecode.d2j.DexLabel;
+import com.googlecode.d2j.DexType;
+import com.googlecode.d2j.Field;
+import com.googlecode.d2j.Method;
+import com.googlecode.d2j.MethodHandle;
+import com.googlecode.d2j.Proto;
+import com.googlecode.d2j.Visibility;
+import com.googlecode.d2j.reader.Op;
+import com.googlecode.d2j.visitors.DexAnnotationAble;
+import com.googlecode.d2j.visitors.DexAnnotationVisitor;
+import com.googlecode.d2j.visitors.DexClassVisitor;
+import com.googlecode.d2j.visitors.DexCodeVisitor;
+import com.googlecode.d2j.visitors.DexDebugVisitor;
+import com.googlecode.d2j.visitors.DexFieldVisitor;
+import com.googlecode.d2j.visitors.DexMethodVisitor;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Collects the type, field and method ids a class adds to a dex, the same as the ones interned by {@link ClassWriter}
+ * in the {@link com.googlecode.d2j.dex.writer.item.ConstPool}.
+ */
+/*package*/ class ReferenceCollector extends DexClassVisitor {
+
+    /**
+     * the descriptors of the types
+     */
+    final Set<String> types = new HashSet<>();
+
+    /**
+     * the fields, as {@code owner->name:type}
+     */
+    final Set<String> fields = new HashSet<>();
+
+    final Set<Method> methods = new HashSet<>();
+
+    private final DexAnnotationVisitor annotationCollector = new DexAnnotationVisitor() {
+        @Override
+        public void visit(String name, Object value) {
+            if (value instanceof Object[]) {
+                for (Object v : (Object[]) value) {
+                    addValue(v);
+                }
+            } else {
+                addValue(value);
+            }
+        }
+
+        @Override
+        public void visitEnum(String name, String desc, String value) {
+            addField(desc, value, desc);
+        }
+
+        @Override
+        public DexAnnotationVisitor visitAnnotation(String name, String desc) {
+            types.add(desc);
+            return this;
+        }
+
+        @Override
+        public DexAnnotationVisitor visitArray(String name) {
+            return this;
+        }
+    };
+
+    private final DexFieldVisitor fieldCollector = new DexFieldVisitor() {
+        @Override
+        public DexAnnotationVisitor visitAnnotation(String name, Visibility visibility) {
+            types.add(name);
+            return annotationCollector;
+        }
+    };
+
+    private final DexDebugVisitor debugCollector = new DexDebugVisitor() {
+        @Override
+        public void visitStartLocal(int reg, DexLabel label, String name, String type, String signature) {
+            if (type != null) {
+                types.add(type);
+            }
+        }
+    };
+
+    private final DexCodeVisitor codeCollector = new DexCodeVisitor() {
+        @Override
+        public void visitConstStmt(Op op, int ra, Object value) {
+            addValue(value);
+        }
+
+        @Override
+        public void visitFieldStmt(Op op, int a, int b, Field field) {
+            addField(field);
+        }
+
+        @Override
+        public void visitFilledNewArrayStmt(Op op, int[] args, String type) {
+            types.add(type);
+        }
+
+        @Override
+        public void visitMethodStmt(Op op, int[] args, Method method) {
+            addMethod(method);
+        }
+
+        @Override
+        public void visitMethodStmt(Op op, int[] args, CallSite callSite) {
+            addMethodHandle(callSite.getBootstrapMethodHandler());
+            addProto(callSite.getMethodProto());
+            for (Object arg : callSite.getExtraArguments()) {
+                addValue(arg);
+            }
+        }
+
+        @Override
+        public void visitMethodStmt(Op op, int[] args, Method bsm, Proto proto) {
+            addMethod(bsm);
+            addProto(proto);
+        }
+
+        @Override
+        public void visitTryCatch(DexLabel start, DexLabel end, DexLabel[] handler, String[] type) {
+            for (String t : type) {
+                if (t != null) {
+                    types.add(t);
+                }
+            }
+        }
+
+        @Override
+        public void visitTypeStmt(Op op, int a, int b, String type) {
+            types.add(type);
+        }
+
+        @Override
+        public DexDebugVisitor visitDebug() {
+            return debugCollector;
+        }
+    };
+
+    private final DexMethodVisitor methodCollector = new DexMethodVisitor() {
+        @Override
+        public DexAnnotationVisitor visitAnnotation(String name, Visibility visibility) {
+            types.add(name);
+            return annotationCollector;
+        }
+
+        @Override
+        public DexCodeVisitor visitCode() {
+            return codeCollector;
+        }
+
+        @Override
+        public DexAnnotationAble visitParameterAnnotation(int index) {
+            return (name, visibility) -> {
+                types.add(name);
+                return annotationCollector;
+            };
+        }
+    };
+
+    /**
+     * Adds the ids of the class definition, the members are added by visiting the class.
+     */
+    void visitClass(String className, String superClass, String[] interfaceNames) {
+        types.add(className);
+        if (superClass != null) {
+            types.add(superClass);
+        }
+        if (interfaceNames != null) {
+            for (String itf : interfaceNames) {
+                types.add(itf);
+            }
+        }
+    }
+
+    @Override
+    public DexAnnotationVisitor visitAnnotation(String name, Visibility visibility) {
+        types.add(name);
+        return annotationCollector;
+    }
+
+    @Override
+    public DexFieldVisitor visitField(int accessFlags, Field field, Object value) {
+        addField(field);
+        if (value != null) {
+            addValue(value);
+        }
+        return fieldCollector;
+    }
+
+    @Override
+    public DexMethodVisitor visitMethod(int accessFlags, Method method) {
+        addMethod(method);
+        return methodCollector;
+    }
+
+    private void addField(Field field) {
+        addField(field.getOwner(), field.getName(), field.getType());
+    }
+
+    private void addField(String owner, String name, String type) {
+        types.add(owner);
+        types.add(type);
+        fields.add(owner + "->" + name + ":" + type);
+    }
+
+    private void addMethod(Method method) {
+        types.add(method.getOwner());
+        addProto(method.getProto());
+        methods.add(method);
+    }
+
+    private void addProto(Proto proto) {
+        types.add(proto.getReturnType());
+        for (String t : proto.getParameterTypes()) {
+            types.add(t);
+        }
+    }
+
+    private void addMethodHandle(MethodHandle mh) {
+        if (mh.getField() != null) {
+            addField(mh.getField());
+        } else if (mh.getMethod() != null) {
+            addMethod(mh.getMethod());
+        }
+    }
+
+    /**
+     * the ids of a value, as wrapped by {@link com.googlecode.d2j.dex.writer.item.ConstPool#wrapEncodedItem(Object)}
+     */
+    private void addValue(Object value) {
+        if (value instanceof DexType) {
+            types.add(((DexType) value).desc);
+        } else if (value instanceof Field) {
+            addField((Field) value);
+        } else if (value instanceof Method) {
+            addMethod((Method) value);
+        } else if (value instanceof MethodHandle) {
+            addMethodHandle((MethodHandle) value);
+        } else if (value instanceof Proto) {
+            addProto((Proto) value);
+        }
+    }
+
+}
@@ -26,6 +26,11 @@ public class ByteBufferOut implements DataOut {
         buffer.put(buf, offset, size);
     }
 
+    @Override
+    public void bytes(String s, ByteBuffer bs) {
+        buffer.put(bs);
+    }
+
     public void doUleb128(int value) {
         int remaining = value >>> 7;
 
@@ -0,0 +1,162 @@
+package com.googlecode.d2j.dex.writer.io;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Writes to a channel through a fixed size buffer, flushed when it is full. The skipped bytes are written as zeros.
+ * The bytes of a {@link ByteBuffer} larger than the buffer are written to the channel as they are, without a copy.
+ * <p>
+ * The {@link DataOut} methods do not throw {@link IOException}, an error of the channel is thrown as an
+ * {@link UncheckedIOException}.
+ */
+public class ChannelOut extends ByteBufferOut {
+
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final WritableByteChannel channel;
+
+    /**
+     * the number of bytes flushed to the channel
+     */
+    private long flushed;
+
+    public ChannelOut(WritableByteChannel channel) {
+        this(channel, DEFAULT_BUFFER_SIZE);
+    }
+
+    public ChannelOut(WritableByteChannel channel, int bufferSize) {
+        super(ByteBuffer.allocateDirect(bufferSize));
+        this.channel = channel;
+    }
+
+    /**
+     * Called before the bytes are written to the channel.
+     *
+     * @param bytes  the bytes, from its position to its limit, the position must be left unchanged
+     * @param offset the offset of the first byte
+     */
+    protected void onFlush(ByteBuffer bytes, long offset) {
+    }
+
+    public void flush() {
+        buffer.flip();
+        write(buffer);
+        buffer.clear();
+    }
+
+    private void write(ByteBuffer bytes) {
+        int size = bytes.remaining();
+        onFlush(bytes, flushed);
+        try {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        flushed += size;
+    }
+
+    private void ensure(int size) {
+        if (buffer.remaining() < size) {
+            flush();
+        }
+    }
+
+    @Override
+    public int offset() {
+        return (int) (flushed + buffer.position());
+    }
+
+    @Override
+    public void bytes(String s, byte[] bs) {
+        bytes(s, bs, 0, bs.length);
+    }
+
+    @Override
+    public void bytes(String string, byte[] buf, int offset, int size) {
+        bytes(string, ByteBuffer.wrap(buf, offset, size));
+    }
+
+    @Override
+    public void bytes(String s, ByteBuffer bs) {
+        if (bs.remaining() > buffer.remaining()) {
+            flush();
+            if (bs.remaining() > buffer.remaining()) {
+                write(bs);
+                return;
+            }
+        }
+        buffer.put(bs);
+    }
+
+    @Override
+    public void doUleb128(int value) {
+        ensure(5);
+        super.doUleb128(value);
+    }
+
+    @Override
+    public void sbyte(String s, int b) {
+        ensure(1);
+        super.sbyte(s, b);
+    }
+
+    @Override
+    public void sint(String s, int i) {
+        ensure(4);
+        super.sint(s, i);
+    }
+
+    @Override
+    public void skip(String s, int n) {
+        while (n > 0) {
+            ensure(1);
+            int size = Math.min(n, buffer.remaining());
+            for (int i = 0; i < size; i++) {
+                buffer.put((byte) 0);
+            }
+            n -= size;
+        }
+    }
+
+    @Override
+    public void skip4(String s) {
+        ensure(4);
+        super.skip4(s);
+    }
+
+    @Override
+    public void sleb128(String s, int value) {
+        ensure(5);
+        super.sleb128(s, value);
+    }
+
+    @Override
+    public void sshort(String s, int i) {
+        ensure(2);
+        super.sshort(s, i);
+    }
+
+    @Override
+    public void ubyte(String s, int b) {
+        ensure(1);
+        super.ubyte(s, b);
+    }
+
+    @Override
+    public void uint(String s, int i) {
+        ensure(4);
+        super.uint(s, i);
+    }
+
+    @Override
+    public void ushort(String s, int i) {
+        ensure(2);
+        super.ushort(s, i);
+    }
+
+}
@@ -1,5 +1,11 @@
 package com.googlecode.d2j.dex.writer.io;
 
+import java.nio.ByteBuffer;
+
+/**
+ * The output of the dex items. The labels name the values for a dump of the dex, they are ignored by the outputs
+ * writing the dex, so they are passed as constants and cost nothing to the writing.
+ */
 public interface DataOut {
 
     void begin(String s);
@@ -8,6 +14,21 @@ public interface DataOut {
 
     void bytes(String string, byte[] buf, int offset, int size);
 
+    /**
+     * Writes the bytes from the position to the limit of the buffer, the position is moved to the limit. By default
+     * the bytes go through {@link #bytes(String, byte[], int, int)}, copied first if the buffer has no array.
+     */
+    default void bytes(String s, ByteBuffer bs) {
+        if (bs.hasArray()) {
+            bytes(s, bs.array(), bs.arrayOffset() + bs.position(), bs.remaining());
+            bs.position(bs.limit());
+        } else {
+            byte[] data = new byte[bs.remaining()];
+            bs.get(data);
+            bytes(s, data, 0, data.length);
+        }
+    }
+
     void end();
 
     int offset();
@@ -2,6 +2,7 @@ package com.googlecode.d2j.dex.writer.item;
 
 import com.googlecode.d2j.dex.writer.ev.EncodedArray;
 import com.googlecode.d2j.dex.writer.io.DataOut;
+import java.util.Objects;
 
 public class CallSiteIdItem extends BaseItem implements Comparable<CallSiteIdItem> {
     String name;
@@ -43,4 +44,21 @@ public class CallSiteIdItem extends BaseItem implements Comparable<CallSiteIdIte
         }
         return encodedArrayItem.compareTo(o.encodedArrayItem);
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        CallSiteIdItem that = (CallSiteIdItem) o;
+        return Objects.equals(name, that.name) && Objects.equals(encodedArrayItem, that.encodedArrayItem);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, encodedArrayItem);
+    }
 }
@@ -47,11 +47,25 @@ public class ClassDefItem extends BaseItem {
     public void prepare(ConstPool cp) {
         if (classData != null) {
             classData.prepare(cp);
+            cp.addClassDataItem(classData);
+            addCodeItems(classData.directMethods, cp);
+            addCodeItems(classData.virtualMethods, cp);
         }
         preparteAnnotationsDirectoryItem(cp);
         prepareEncodedArrayItem(cp);
     }
 
+    private void addCodeItems(List<EncodedMethod> ms, ConstPool cp) {
+        for (EncodedMethod m : ms) {
+            if (m.code != null) {
+                cp.addCodeItem(m.code);
+                if (m.code.debugInfo != null) {
+                    cp.addDebugInfoItem(m.code.debugInfo);
+                }
+            }
+        }
+    }
+
     private void prepareEncodedArrayItem(ConstPool cp) {
         if (classData == null) {
             return;
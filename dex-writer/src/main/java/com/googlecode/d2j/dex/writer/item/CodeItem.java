@@ -79,17 +79,24 @@ public class CodeItem extends BaseItem {
 
     @Override
     public void write(DataOut out) {
+        write(out, ByteBuffer.allocate(insnSize * 2).order(ByteOrder.LITTLE_ENDIAN));
+    }
+
+    /**
+     * @param b a little endian buffer of the instructions, cleared
+     */
+    public void write(DataOut out, ByteBuffer b) {
         out.ushort("registers_size", registersSize);
         out.ushort("ins_size", insSize);
         out.ushort("outs_size", outsSize);
         out.ushort("tries_size", tries == null ? 0 : tries.size());
         out.uint("debug_info_off", debugInfo == null ? 0 : debugInfo.offset);
         out.uint("insn_size", insnSize);
-        ByteBuffer b = ByteBuffer.allocate(insnSize * 2).order(ByteOrder.LITTLE_ENDIAN);
         for (Insn insn : insns) {
             insn.write(b);
         }
-        out.bytes("insn", b.array());
+        b.flip();
+        out.bytes("insn", b);
         if (tries != null && !tries.isEmpty()) {
             if ((insnSize & 0x01) != 0) { // padding
                 out.skip("padding", 2);
@@ -15,22 +15,34 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
-import java.util.TreeMap;
-
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The items of a dex, each interned once.
+ * <p>
+ * The items are interned in hash maps. The id items must be sorted in the dex, they are sorted once by
+ * {@link #sortedValues(Map)} when the dex is written. The other items are kept in the order they were added.
+ * <p>
+ * The ids, the encoded arrays and the classes of a pool created {@link #ConstPool(boolean) concurrent} may be added
+ * from several threads, each class being visited by one thread. The items of a class are built by its own thread,
+ * they are added to the pool by {@link #prepareClassDefItems()}, class by class in the order the classes were added,
+ * once all are visited.
+ */
 public class ConstPool {
 
     public int dexVersion = DexConstants.DEX_035;
 
     public Map<AnnotationSetRefListItem, AnnotationSetRefListItem> annotationSetRefListItems
-            = new HashMap<>();
+            = new LinkedHashMap<>();
 
-    public Map<CallSiteIdItem, CallSiteIdItem> callSiteIdItems = new TreeMap<>();
+    public Map<CallSiteIdItem, CallSiteIdItem> callSiteIdItems;
 
-    public Map<EncodedArray, EncodedArray> encodedArrayItems = new TreeMap<>();
+    public Map<EncodedArray, EncodedArray> encodedArrayItems;
 
     public List<CodeItem> codeItems = new ArrayList<>();
 
@@ -38,28 +50,77 @@ public class ConstPool {
 
     public List<DebugInfoItem> debugInfoItems = new ArrayList<>();
 
-    public Map<AnnotationItem, AnnotationItem> annotationItems = new HashMap<>();
+    public Map<AnnotationItem, AnnotationItem> annotationItems = new LinkedHashMap<>();
 
     public List<AnnotationsDirectoryItem> annotationsDirectoryItems = new ArrayList<>();
 
-    public Map<AnnotationSetItem, AnnotationSetItem> annotationSetItems = new HashMap<>();
+    public Map<AnnotationSetItem, AnnotationSetItem> annotationSetItems = new LinkedHashMap<>();
+
+    public Map<FieldIdItem, FieldIdItem> fields;
 
-    public Map<FieldIdItem, FieldIdItem> fields = new TreeMap<>();
+    public Map<MethodIdItem, MethodIdItem> methods;
 
-    public Map<MethodIdItem, MethodIdItem> methods = new TreeMap<>();
+    public Map<ProtoIdItem, ProtoIdItem> protos;
 
-    public Map<ProtoIdItem, ProtoIdItem> protos = new TreeMap<>();
+    public Map<String, StringIdItem> strings;
 
-    public List<StringDataItem> stringDatas = new ArrayList<>(100);
+    public Map<TypeListItem, TypeListItem> typeLists;
 
-    public Map<String, StringIdItem> strings = new TreeMap<>();
+    public Map<String, TypeIdItem> types;
 
-    public Map<TypeListItem, TypeListItem> typeLists = new TreeMap<>();
+    public Map<TypeIdItem, ClassDefItem> classDefs = new LinkedHashMap<>();
+    public Map<MethodHandleItem, MethodHandleItem> methodHandlers;
 
-    public Map<String, TypeIdItem> types = new TreeMap<>();
+    public ConstPool() {
+        this(false);
+    }
 
-    public Map<TypeIdItem, ClassDefItem> classDefs = new HashMap<>();
-    public Map<MethodHandleItem, MethodHandleItem> methodHandlers = new TreeMap<>();
+    /**
+     * @param concurrent whether the ids, the encoded arrays and the classes may be added from several threads; the
+     *                   pools of a serial writer are plain hash maps, which are cheaper to intern in
+     */
+    public ConstPool(boolean concurrent) {
+        callSiteIdItems = newMap(concurrent);
+        encodedArrayItems = newMap(concurrent);
+        fields = newMap(concurrent);
+        methods = newMap(concurrent);
+        protos = newMap(concurrent);
+        strings = newMap(concurrent);
+        typeLists = newMap(concurrent);
+        types = newMap(concurrent);
+        methodHandlers = newMap(concurrent);
+    }
+
+    private static <K, V> Map<K, V> newMap(boolean concurrent) {
+        return concurrent ? new ConcurrentHashMap<>() : new HashMap<>();
+    }
+
+    /**
+     * @return the values sorted by their keys
+     */
+    public static <K extends Comparable<? super K>, V> List<V> sortedValues(Map<K, V> map) {
+        List<Map.Entry<K, V>> entries = new ArrayList<>(map.entrySet());
+        entries.sort(Map.Entry.comparingByKey());
+        List<V> values = new ArrayList<>(entries.size());
+        for (Map.Entry<K, V> e : entries) {
+            values.add(e.getValue());
+        }
+        return values;
+    }
+
+    /**
+     * @return the item equal to the key in the map, the key itself if it is added
+     */
+    private static <T> T intern(Map<T, T> map, T key) {
+        T item = map.get(key);
+        if (item == null) {
+            item = map.putIfAbsent(key, key);
+            if (item == null) {
+                item = key;
+            }
+        }
+        return item;
+    }
 
     public Object wrapEncodedItem(Object value) {
         if (value instanceof DexType) {
@@ -89,13 +150,7 @@ public class ConstPool {
             mh.method = uniqMethod(method);
         }
 
-        MethodHandleItem result = methodHandlers.get(mh);
-        if (result == null) {
-            methodHandlers.put(mh, mh);
-            result = mh;
-        }
-
-        return result;
+        return intern(methodHandlers, mh);
     }
 
     public void clean() {
@@ -110,7 +165,6 @@ public class ConstPool {
         fields.clear();
         methods.clear();
         protos.clear();
-        stringDatas.clear();
         typeLists.clear();
         types.clear();
         classDefs.clear();
@@ -146,13 +200,13 @@ public class ConstPool {
         debugInfoItems.add(debugInfoItem);
     }
 
-    public void dex039() {
+    public synchronized void dex039() {
         if (dexVersion < DexConstants.DEX_039) {
             dexVersion = DexConstants.DEX_039;
         }
     }
 
-    public void dex038() {
+    public synchronized void dex038() {
         if (dexVersion < DexConstants.DEX_038) {
             dexVersion = DexConstants.DEX_038;
         }
@@ -171,6 +225,16 @@ public class ConstPool {
 
     }
 
+    /**
+     * Prepares the classes in the order they were added, their class data, code, debug info and annotations are
+     * added to the pool. Called once, after all the classes are visited.
+     */
+    public void prepareClassDefItems() {
+        for (ClassDefItem c : classDefs.values()) {
+            c.prepare(this);
+        }
+    }
+
     public List<ClassDefItem> buildSortedClassDefItems() {
         List<ClassDefItem> added = new ArrayList<>();
         Stack<PE> stack1 = new Stack<>();
@@ -230,7 +294,7 @@ public class ConstPool {
         return v;
     }
 
-    public ClassDefItem putClassDefItem(int accessFlag, String name, String superClass, String[] itfClass) {
+    public synchronized ClassDefItem putClassDefItem(int accessFlag, String name, String superClass, String[] itfClass) {
         TypeIdItem type = uniqType(name);
         if (classDefs.containsKey(type)) {
             throw new DexWriteException("dup clz: " + name);
@@ -254,12 +318,7 @@ public class ConstPool {
 
     public FieldIdItem uniqField(String owner, String name, String type) {
         FieldIdItem key = new FieldIdItem(uniqType(owner), uniqString(name), uniqType(type));
-        FieldIdItem item = fields.get(key);
-        if (item != null) {
-            return item;
-        }
-        fields.put(key, key);
-        return key;
+        return intern(fields, key);
     }
 
     public MethodIdItem uniqMethod(Method method) {
@@ -274,12 +333,7 @@ public class ConstPool {
     }
 
     public MethodIdItem uniqMethod(MethodIdItem key) {
-        MethodIdItem item = methods.get(key);
-        if (item != null) {
-            return item;
-        }
-        methods.put(key, key);
-        return key;
+        return intern(methods, key);
     }
 
     public ProtoIdItem uniqProto(Proto method) {
@@ -295,13 +349,7 @@ public class ConstPool {
         StringIdItem shorty = uniqString(buildShorty(retDesc, types));
         TypeListItem params = putTypeList(types);
         ProtoIdItem key = new ProtoIdItem(params, ret, shorty);
-        ProtoIdItem item = protos.get(key);
-        if (item != null) {
-            return item;
-        } else {
-            protos.put(key, key);
-            return key;
-        }
+        return intern(protos, key);
     }
 
     public StringIdItem uniqString(String data) {
@@ -309,11 +357,9 @@ public class ConstPool {
         if (item != null) {
             return item;
         }
-        StringDataItem sd = new StringDataItem(data);
-        stringDatas.add(sd);
-        item = new StringIdItem(sd);
-        strings.put(data, item);
-        return item;
+        item = new StringIdItem(new StringDataItem(data));
+        StringIdItem added = strings.putIfAbsent(data, item);
+        return added == null ? item : added;
     }
 
     public TypeIdItem uniqType(String type) {
@@ -322,8 +368,8 @@ public class ConstPool {
             return item;
         }
         item = new TypeIdItem(uniqString(type));
-        types.put(type, item);
-        return item;
+        TypeIdItem added = types.putIfAbsent(type, item);
+        return added == null ? item : added;
     }
 
     private TypeListItem putTypeList(String... subList) {
@@ -335,12 +381,7 @@ public class ConstPool {
             idItems.add(uniqType(s));
         }
         TypeListItem key = new TypeListItem(idItems);
-        TypeListItem item = typeLists.get(key);
-        if (item != null) {
-            return item;
-        }
-        typeLists.put(key, key);
-        return key;
+        return intern(typeLists, key);
     }
 
     private static final TypeListItem ZERO_SIZE_TYPE_LIST = new TypeListItem(new ArrayList<>());
@@ -359,12 +400,7 @@ public class ConstPool {
             idItems.add(uniqType(s));
         }
         TypeListItem key = new TypeListItem(idItems);
-        TypeListItem item = typeLists.get(key);
-        if (item != null) {
-            return item;
-        }
-        typeLists.put(key, key);
-        return key;
+        return intern(typeLists, key);
     }
 
     public ClassDataItem addClassDataItem(ClassDataItem dataItem) {
@@ -382,22 +418,11 @@ public class ConstPool {
             e.values.add(EncodedValue.wrap(wrapEncodedItem(arg)));
         }
         CallSiteIdItem k = new CallSiteIdItem(callSite.getName(), uniqEncodedArrayItem(e));
-
-        CallSiteIdItem v = callSiteIdItems.get(k);
-        if (v == null) {
-            v = k;
-            callSiteIdItems.put(v, v);
-        }
-        return v;
+        return intern(callSiteIdItems, k);
     }
 
     public EncodedArray uniqEncodedArrayItem(EncodedArray k) {
-        EncodedArray v = encodedArrayItems.get(k);
-        if (v == null) {
-            v = k;
-            encodedArrayItems.put(v, v);
-        }
-        return v;
+        return intern(encodedArrayItems, k);
     }
 
     public AnnotationSetItem uniqAnnotationSetItem(AnnotationSetItem key) {
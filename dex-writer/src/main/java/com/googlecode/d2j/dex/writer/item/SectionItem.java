@@ -1,9 +1,10 @@
 package com.googlecode.d2j.dex.writer.item;
 
 import com.googlecode.d2j.dex.writer.io.DataOut;
-import com.googlecode.d2j.dex.writer.item.StringDataItem.Buffer;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -50,37 +51,45 @@ public class SectionItem<T extends BaseItem> extends BaseItem {
     }
 
     public void write(DataOut out) {
-        out.begin("Section:" + sectionType);
+        out.begin(sectionType.name());
         List<T> items = this.items;
-        if (sectionType == SectionType.TYPE_STRING_DATA_ITEM) {
-            Buffer buff = new Buffer();
-
-            for (int i = 0; i < items.size(); i++) {
-                T t = items.get(i);
-                items.set(i, null);
-                addPadding(out, sectionType.alignment);
-                if (out.offset() != t.offset) {
-                    throw new RuntimeException();
-                }
+        // the string data and the instructions are encoded in a buffer reused from item to item
+        ByteBuffer buff = null;
+        for (int i = 0; i < items.size(); i++) {
+            T t = items.get(i);
+            items.set(i, null);
+            addPadding(out, sectionType.alignment);
+            if (out.offset() != t.offset) {
+                System.err.println("Error for type:" + this.sectionType + ", " + t.index);
+                throw new RuntimeException();
+            }
+            if (sectionType == SectionType.TYPE_STRING_DATA_ITEM) {
                 StringDataItem stringDataItem = (StringDataItem) t;
+                buff = clear(buff, stringDataItem.mutf8Length + 1);
                 stringDataItem.write(out, buff);
-                buff.reset();
-            }
-        } else {
-            for (int i = 0; i < items.size(); i++) {
-                T t = items.get(i);
-                items.set(i, null);
-                addPadding(out, sectionType.alignment);
-                if (out.offset() != t.offset) {
-                    System.err.println("Error for type:" + this.sectionType + ", " + t.index);
-                    throw new RuntimeException();
-                }
+            } else if (sectionType == SectionType.TYPE_CODE_ITEM) {
+                CodeItem codeItem = (CodeItem) t;
+                buff = clear(buff, codeItem.insnSize * 2);
+                codeItem.write(out, buff);
+            } else {
                 t.write(out);
             }
         }
         out.end();
     }
 
+    /**
+     * @return the buffer cleared, or a larger one if it has less than size bytes
+     */
+    private static ByteBuffer clear(ByteBuffer buff, int size) {
+        if (buff == null || buff.capacity() < size) {
+            int capacity = Math.max(size, buff == null ? 1024 : buff.capacity() * 2);
+            return ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        buff.clear();
+        return buff;
+    }
+
     public enum SectionType {
 
         TYPE_HEADER_ITEM(0x0000, 1, 0), //
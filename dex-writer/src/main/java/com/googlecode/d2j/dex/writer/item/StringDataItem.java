@@ -3,10 +3,15 @@ package com.googlecode.d2j.dex.writer.item;
 import com.googlecode.d2j.dex.writer.ann.Alignment;
 import com.googlecode.d2j.dex.writer.io.DataOut;
 import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
 
 @Alignment(1)
 public class StringDataItem extends BaseItem implements Comparable<StringDataItem> {
 
+    /**
+     * @deprecated the string data is encoded to a {@link ByteBuffer}, see {@link #write(DataOut, ByteBuffer)}
+     */
+    @Deprecated
     public static class Buffer extends ByteArrayOutputStream {
 
         public byte[] getBuf() {
@@ -15,21 +20,37 @@ public class StringDataItem extends BaseItem implements Comparable<StringDataIte
 
     }
 
+    /**
+     * @deprecated use {@link #encode(ByteBuffer, String)}
+     */
+    @Deprecated
     public static void encode(ByteArrayOutputStream out, String s) {
+        byte[] bytes = new byte[lengthOfMutf8(s)];
+        encode(ByteBuffer.wrap(bytes), s);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Encodes the string at the position of a buffer backed by an array, the position is moved after it.
+     */
+    public static void encode(ByteBuffer out, String s) {
+        final byte[] buf = out.array();
+        int p = out.arrayOffset() + out.position();
         final int length = s.length();
         for (int i = 0; i < length; i++) {
             char ch = s.charAt(i);
             if (ch != 0 && ch <= 127) { // U+0000 uses two bytes.
-                out.write(ch);
+                buf[p++] = (byte) ch;
             } else if (ch <= 2047) {
-                out.write((0xc0 | (0x1f & (ch >> 6))));
-                out.write((0x80 | (0x3f & ch)));
+                buf[p++] = (byte) (0xc0 | (0x1f & (ch >> 6)));
+                buf[p++] = (byte) (0x80 | (0x3f & ch));
             } else {
-                out.write((0xe0 | (0x0f & (ch >> 12))));
-                out.write((0x80 | (0x3f & (ch >> 6))));
-                out.write((0x80 | (0x3f & ch)));
+                buf[p++] = (byte) (0xe0 | (0x0f & (ch >> 12)));
+                buf[p++] = (byte) (0x80 | (0x3f & (ch >> 6)));
+                buf[p++] = (byte) (0x80 | (0x3f & ch));
             }
         }
+        out.position(p - out.arrayOffset());
     }
 
     public static int lengthOfMutf8(String s) {
@@ -50,6 +71,11 @@ public class StringDataItem extends BaseItem implements Comparable<StringDataIte
 
     public final String string;
 
+    /**
+     * the length of the MUTF-8 bytes, computed by {@link #place(int)}
+     */
+    int mutf8Length;
+
     public StringDataItem(String data) {
         this.string = data;
     }
@@ -61,8 +87,8 @@ public class StringDataItem extends BaseItem implements Comparable<StringDataIte
 
     @Override
     public int place(int offset) {
-        int length = lengthOfMutf8(string);
-        return offset + lengthOfUleb128(string.length()) + length + 1; // 1 for tailing 0
+        mutf8Length = lengthOfMutf8(string);
+        return offset + lengthOfUleb128(string.length()) + mutf8Length + 1; // 1 for tailing 0
     }
 
     @Override
@@ -72,9 +98,24 @@ public class StringDataItem extends BaseItem implements Comparable<StringDataIte
 
     @Override
     public void write(DataOut out) {
-        write(out, new Buffer());
+        write(out, ByteBuffer.allocate(lengthOfMutf8(string) + 1));
+    }
+
+    /**
+     * @param buff a buffer of the MUTF-8 bytes and the tailing 0, cleared
+     */
+    public void write(DataOut out, ByteBuffer buff) {
+        out.uleb128("string_data_length", string.length());
+        encode(buff, string);
+        buff.put((byte) 0);
+        buff.flip();
+        out.bytes("mutf8-string", buff);
     }
 
+    /**
+     * @deprecated use {@link #write(DataOut, ByteBuffer)}
+     */
+    @Deprecated
     public void write(DataOut out, Buffer buff) {
         out.uleb128("string_data_length", string.length());
         encode(buff, string);
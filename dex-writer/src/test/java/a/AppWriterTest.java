@@ -6,15 +6,33 @@ import com.googlecode.d2j.Method;
 import com.googlecode.d2j.Visibility;
 import com.googlecode.d2j.dex.writer.DexFileWriter;
 import com.googlecode.d2j.dex.writer.DexWriteException;
+import com.googlecode.d2j.dex.writer.io.ByteBufferOut;
+import com.googlecode.d2j.dex.writer.io.ChannelOut;
+import com.googlecode.d2j.dex.writer.io.DataOut;
 import com.googlecode.d2j.reader.DexFileReader;
 import com.googlecode.d2j.reader.Op;
 import com.googlecode.d2j.visitors.DexAnnotationVisitor;
 import com.googlecode.d2j.visitors.DexClassVisitor;
 import com.googlecode.d2j.visitors.DexCodeVisitor;
 import com.googlecode.d2j.visitors.DexFieldVisitor;
+import com.googlecode.d2j.visitors.DexFileVisitor;
 import com.googlecode.d2j.visitors.DexMethodVisitor;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -76,4 +94,130 @@ public class AppWriterTest implements DexConstants {
         w.toByteArray();
     }
 
+    @Test
+    public void testSameOutput() throws IOException {
+        DexFileReader source = new DexFileReader(new File("../dex-translator/src/test/resources/dexes/i_jetty.dex"));
+        DexFileWriter w = new DexFileWriter();
+        source.accept(w);
+        byte[] expected = w.toByteArray();
+        w = new DexFileWriter();
+        source.accept(w);
+        assertArrayEquals(expected, w.toByteArray());
+    }
+
+    @Test
+    public void testConcurrent() throws Exception {
+        DexFileReader source = new DexFileReader(new File("../dex-translator/src/test/resources/dexes/i_jetty.dex"));
+        DexFileWriter w = new DexFileWriter();
+        source.accept(w);
+        byte[] expected = w.toByteArray();
+
+        // the classes are added in order, then their members are visited from several threads
+        DexFileWriter concurrent = new DexFileWriter(true);
+        int size = source.getClassNames().size();
+        List<DexClassVisitor> cvs = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            source.accept(new DexFileVisitor() {
+                @Override
+                public DexClassVisitor visit(int access, String className, String superClass,
+                                             String[] interfaceNames) {
+                    cvs.add(concurrent.visit(access, className, superClass, interfaceNames));
+                    return null;
+                }
+            }, i, 0);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                final int classIdx = i;
+                futures.add(executor.submit(() -> source.accept(new DexFileVisitor() {
+                    @Override
+                    public DexClassVisitor visit(int access, String className, String superClass,
+                                                 String[] interfaceNames) {
+                        return cvs.get(classIdx);
+                    }
+                }, classIdx, 0)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        concurrent.visitEnd();
+        assertArrayEquals(expected, concurrent.toByteArray());
+    }
+
+    @Test
+    public void testWriteTo() throws IOException {
+        DexFileReader source = new DexFileReader(new File("../dex-translator/src/test/resources/dexes/i_jetty.dex"));
+        DexFileWriter w = new DexFileWriter();
+        source.accept(w);
+
+        byte[] prefix = {1, 2, 3};
+        Path file = Files.createTempFile("d2j", ".dex");
+        try {
+            // the dex is written and patched after the prefix
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.wrap(prefix));
+                w.writeTo(channel);
+            }
+            byte[] actual = Files.readAllBytes(file);
+            assertArrayEquals(prefix, Arrays.copyOf(actual, prefix.length));
+            byte[] dex = Arrays.copyOfRange(actual, prefix.length, actual.length);
+
+            // the checksums are the ones computed over the whole file
+            ByteBuffer expected = ByteBuffer.wrap(dex.clone()).order(ByteOrder.LITTLE_ENDIAN);
+            DexFileWriter.updateChecksum(expected, dex.length);
+            assertArrayEquals(expected.array(), dex);
+
+            assertEquals(source.getClassNames().size(), new DexFileReader(dex).getClassNames().size());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static void writeSome(DataOut out) {
+        byte[] large = new byte[100];
+        for (int i = 0; i < large.length; i++) {
+            large[i] = (byte) i;
+        }
+        out.uint("a", 0x12345678);
+        out.bytes("small", new byte[]{1, 2, 3});
+        out.bytes("large", ByteBuffer.wrap(large, 10, 80));
+        out.uleb128("b", 300);
+        out.bytes("large", large);
+        out.skip("c", 40);
+        out.ushort("d", 0xabcd);
+    }
+
+    @Test
+    public void testChannelOut() {
+        ByteBuffer expected = ByteBuffer.allocate(1024);
+        writeSome(new ByteBufferOut(expected));
+        expected.flip();
+
+        // the buffer is smaller than the large bytes, which are written straight to the channel
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        ByteArrayOutputStream flushed = new ByteArrayOutputStream();
+        ChannelOut out = new ChannelOut(Channels.newChannel(actual), 16) {
+            @Override
+            protected void onFlush(ByteBuffer bytes, long offset) {
+                assertEquals(flushed.size(), offset);
+                ByteBuffer copy = bytes.duplicate();
+                while (copy.hasRemaining()) {
+                    flushed.write(copy.get());
+                }
+            }
+        };
+        writeSome(out);
+        assertEquals(expected.remaining(), out.offset());
+        out.flush();
+
+        byte[] bytes = new byte[expected.remaining()];
+        expected.get(bytes);
+        assertArrayEquals(bytes, actual.toByteArray());
+        assertArrayEquals(bytes, flushed.toByteArray());
+    }
 }
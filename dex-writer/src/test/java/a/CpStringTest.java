@@ -1,6 +1,10 @@
 package a;
 
+import com.googlecode.d2j.dex.writer.io.ByteBufferOut;
 import com.googlecode.d2j.dex.writer.item.ConstPool;
+import com.googlecode.d2j.dex.writer.item.StringDataItem;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -14,4 +18,26 @@ public class CpStringTest {
         assertTrue(cp.uniqType("Lb;").compareTo(cp.uniqType("La;")) > 0);
     }
 
+    /**
+     * the deprecated stream encoding must write the same string data as the buffer one
+     */
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testStringData() {
+        for (String s : new String[]{"", "abc", "a\0b", "été", "中文", "😀"}) {
+            StringDataItem item = new StringDataItem(s);
+
+            ByteBuffer expected = ByteBuffer.allocate(64);
+            item.write(new ByteBufferOut(expected), ByteBuffer.allocate(64));
+            ByteBuffer actual = ByteBuffer.allocate(64);
+            item.write(new ByteBufferOut(actual), new StringDataItem.Buffer());
+            assertArrayEquals(Arrays.copyOf(expected.array(), expected.position()),
+                    Arrays.copyOf(actual.array(), actual.position()), s);
+
+            StringDataItem.Buffer encoded = new StringDataItem.Buffer();
+            StringDataItem.encode(encoded, s);
+            assertEquals(StringDataItem.lengthOfMutf8(s), encoded.size());
+        }
+    }
+
 }
@@ -0,0 +1,126 @@
+package a;
+
+import com.googlecode.d2j.DexConstants;
+import com.googlecode.d2j.Method;
+import com.googlecode.d2j.dex.writer.MultiDexFileWriter;
+import com.googlecode.d2j.reader.DexFileReader;
+import com.googlecode.d2j.reader.Op;
+import com.googlecode.d2j.visitors.DexClassVisitor;
+import com.googlecode.d2j.visitors.DexCodeVisitor;
+import com.googlecode.d2j.visitors.DexFileVisitor;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MultiDexWriterTest implements DexConstants {
+
+    /**
+     * visits classes of 1000 methods each, {@code count} classes are over the limit of a dex
+     */
+    private static List<String> visitClasses(DexFileVisitor fv, int count) {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String name = "La/C" + i + ";";
+            names.add(name);
+            DexClassVisitor cv = fv.visit(ACC_PUBLIC, name, "Ljava/lang/Object;", null);
+            for (int j = 0; j < 1000; j++) {
+                DexCodeVisitor code = cv.visitMethod(ACC_PUBLIC | ACC_STATIC,
+                        new Method(name, "m" + j, new String[]{}, "V")).visitCode();
+                code.visitRegister(0);
+                code.visitStmt0R(Op.RETURN_VOID);
+                code.visitEnd();
+            }
+            cv.visitEnd();
+        }
+        fv.visitEnd();
+        return names;
+    }
+
+    private static List<String> readClassNames(byte[] dex) {
+        return new DexFileReader(dex).getClassNames();
+    }
+
+    @Test
+    public void testSplit() {
+        MultiDexFileWriter w = new MultiDexFileWriter();
+        List<String> names = visitClasses(w, 100);
+        assertEquals(2, w.getDexCount());
+        assertEquals(65, w.getClassNames().get(0).size());
+
+        List<byte[]> dexes = w.toByteArrays();
+        List<String> actual = new ArrayList<>();
+        for (byte[] dex : dexes) {
+            actual.addAll(readClassNames(dex));
+        }
+        Collections.sort(names);
+        Collections.sort(actual);
+        assertEquals(names, actual);
+    }
+
+    @Test
+    public void testParallel() {
+        MultiDexFileWriter w = new MultiDexFileWriter();
+        visitClasses(w, 140);
+        List<byte[]> expected = w.toByteArrays();
+        assertEquals(3, expected.size());
+
+        w = new MultiDexFileWriter();
+        visitClasses(w, 140);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            List<byte[]> actual = w.toByteArrays(executor);
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertArrayEquals(expected.get(i), actual.get(i));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testMainDexList() throws IOException {
+        DexFileReader source = new DexFileReader(new File("../dex-translator/src/test/resources/dexes/i_jetty.dex"));
+        List<String> names = source.getClassNames();
+        Set<String> mainDexClasses = new HashSet<>(Arrays.asList(names.get(3), names.get(1)));
+        MultiDexFileWriter w = new MultiDexFileWriter(mainDexClasses);
+        source.accept(w);
+
+        Path zip = Files.createTempFile("d2j", ".zip");
+        Files.delete(zip);
+        try {
+            Map<String, String> env = new HashMap<>();
+            env.put("create", "true");
+            try (FileSystem fs = FileSystems.newFileSystem(URI.create("jar:" + zip.toUri()), env)) {
+                w.writeTo(fs.getPath("/"));
+            }
+            try (FileSystem fs = FileSystems.newFileSystem(zip, (ClassLoader) null)) {
+                List<String> main = readClassNames(Files.readAllBytes(fs.getPath("/classes.dex")));
+                assertEquals(mainDexClasses, new HashSet<>(main));
+                List<String> others = readClassNames(Files.readAllBytes(fs.getPath("/classes2.dex")));
+                assertEquals(names.size() - 2, others.size());
+                assertFalse(Files.exists(fs.getPath("/classes3.dex")));
+            }
+        } finally {
+            Files.deleteIfExists(zip);
+        }
+    }
+
+}
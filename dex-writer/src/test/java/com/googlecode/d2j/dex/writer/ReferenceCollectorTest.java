@@ -0,0 +1,77 @@
+package com.googlecode.d2j.dex.writer;
+
+import com.googlecode.d2j.Method;
+import com.googlecode.d2j.node.DexClassNode;
+import com.googlecode.d2j.node.DexFileNode;
+import com.googlecode.d2j.reader.DexFileReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * the ids collected for the classes must be the ones {@link DexFileWriter} writes, or {@link MultiDexFileWriter}
+ * splits at the wrong class
+ */
+public class ReferenceCollectorTest {
+
+    @ParameterizedTest
+    @MethodSource("findDexFiles")
+    public void test(Path dex) throws IOException {
+        DexFileNode fileNode = new DexFileNode();
+        new DexFileReader(Files.readAllBytes(dex)).accept(fileNode);
+
+        Set<String> types = new HashSet<>();
+        Set<String> fields = new HashSet<>();
+        Set<Method> methods = new HashSet<>();
+        for (DexClassNode classNode : fileNode.clzs) {
+            ReferenceCollector refs = new ReferenceCollector();
+            refs.visitClass(classNode.className, classNode.superClass, classNode.interfaceNames);
+            classNode.accept(refs);
+            types.addAll(refs.types);
+            fields.addAll(refs.fields);
+            methods.addAll(refs.methods);
+        }
+
+        // the ids the writer adds to the empty sections
+        if (methods.isEmpty()) {
+            methods.add(new Method("Ljava/lang/Object;", "<init>", new String[0], "V"));
+            types.add("Ljava/lang/Object;");
+            types.add("V");
+        }
+        if (fields.isEmpty()) {
+            fields.add("Ljava/lang/System;->out:Ljava/io/PrintStream;");
+            types.add("Ljava/lang/System;");
+            types.add("Ljava/io/PrintStream;");
+        }
+
+        DexFileWriter writer = new DexFileWriter();
+        fileNode.accept(writer);
+        ByteBuffer header = ByteBuffer.wrap(writer.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(header.getInt(0x40), types.size(), "type_ids_size");
+        assertEquals(header.getInt(0x50), fields.size(), "field_ids_size");
+        assertEquals(header.getInt(0x58), methods.size(), "method_ids_size");
+    }
+
+    public static Stream<Path> findDexFiles() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(
+                Paths.get("../dex-translator/src/test/resources/dexes"), "*.dex")) {
+            ds.forEach(files::add);
+        }
+        return files.stream().sorted();
+    }
+
+}